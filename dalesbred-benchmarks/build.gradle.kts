@@ -0,0 +1,26 @@
+import me.champeau.gradle.JMHPluginExtension
+
+description = "Dalesbred benchmarks"
+
+plugins {
+    id("me.champeau.gradle.jmh") version "0.4.5"
+}
+
+dependencies {
+    "jmh"(project(":dalesbred"))
+    "jmh"("org.jetbrains:annotations")
+    "jmh"("org.hsqldb:hsqldb")
+    "jmh"("com.h2database:h2")
+}
+
+configure<JMHPluginExtension> {
+    jmhVersion = "1.19"
+    fork = 1
+    warmupIterations = 5
+    iterations = 5
+    profilers = listOf("gc")
+
+    // Run only a subset with e.g. ./gradlew jmh -Pjmh.include=RowMapping
+    if (project.hasProperty("jmh.include"))
+        include = listOf(project.property("jmh.include").toString())
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.benchmarks;
+
+import org.dalesbred.dialect.Dialect;
+import org.dalesbred.internal.instantiation.InstantiatorProvider;
+import org.dalesbred.internal.jdbc.ArgumentBinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting arguments to database values and binding them to statements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArgumentBindingBenchmark {
+
+    @Param({"H2", "HSQLDB"})
+    public BenchmarkDatabase database;
+
+    private InstantiatorProvider instantiatorProvider;
+
+    private Connection connection;
+
+    private PreparedStatement statement;
+
+    private final Object[] arguments = {
+            42,
+            "string",
+            new BigDecimal("12.50"),
+            new Timestamp(0),
+            LocalDate.of(2017, 1, 1),
+            null
+    };
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = database.openConnection();
+        instantiatorProvider = new InstantiatorProvider(Dialect.detect(connection));
+        statement = connection.prepareStatement("values (cast(? as int), cast(? as varchar(64)), cast(? as decimal(10,2)), cast(? as timestamp), cast(? as date), cast(? as int))");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        statement.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public Object[] valueToDatabase() {
+        Object[] result = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++)
+            result[i] = instantiatorProvider.valueToDatabase(arguments[i]);
+        return result;
+    }
+
+    @Benchmark
+    public PreparedStatement bindArguments() throws SQLException {
+        for (int i = 0; i < arguments.length; i++)
+            ArgumentBinder.bindArgument(statement, i + 1, instantiatorProvider.valueToDatabase(arguments[i]));
+        return statement;
+    }
+
+    @Benchmark
+    public PreparedStatement bindArgumentsRawJdbc() throws SQLException {
+        for (int i = 0; i < arguments.length; i++)
+            statement.setObject(i + 1, arguments[i] instanceof LocalDate ? java.sql.Date.valueOf((LocalDate) arguments[i]) : arguments[i]);
+        return statement;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.benchmarks;
+
+import org.dalesbred.Database;
+import org.dalesbred.connection.ConnectionProvider;
+import org.dalesbred.dialect.Dialect;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+/**
+ * In-memory databases used by the benchmarks.
+ */
+public enum BenchmarkDatabase {
+
+    H2("jdbc:h2:mem:dalesbred-benchmark;DB_CLOSE_DELAY=-1", "sa", ""),
+    HSQLDB("jdbc:hsqldb:mem:dalesbred-benchmark", "sa", "");
+
+    private final @NotNull String url;
+    private final @NotNull String username;
+    private final @NotNull String password;
+
+    BenchmarkDatabase(@NotNull String url, @NotNull String username, @NotNull String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Creates a database that executes all transactions using given connection, so that the benchmarks
+     * measure the overhead of Dalesbred instead of opening connections, just like the raw JDBC baselines.
+     */
+    @NotNull
+    Database createDatabase(@NotNull Connection connection) {
+        return new Database(new ConnectionProvider() {
+            @Override
+            public @NotNull Connection getConnection() {
+                return connection;
+            }
+
+            @Override
+            public void releaseConnection(@NotNull Connection connection) {
+            }
+        }, Dialect.detect(connection));
+    }
+
+    @NotNull
+    Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    /**
+     * Creates table {@code benchmark_row} and fills it with given amount of rows.
+     */
+    void createRows(@NotNull Database db, int rows) {
+        db.update("drop table if exists benchmark_row");
+        db.update("create table benchmark_row (id int primary key, name varchar(64), amount decimal(10,2), created timestamp)");
+
+        List<List<?>> arguments = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++)
+            arguments.add(asList(i, "name " + i, i * 1.5, new java.sql.Timestamp(i * 1000L)));
+
+        db.updateBatch("insert into benchmark_row (id, name, amount, created) values (?, ?, ?, ?)", arguments);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.benchmarks;
+
+import org.dalesbred.query.SqlQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of SQL with named parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NamedParameterParsingBenchmark {
+
+    private static final String SHORT_SQL = "select id, name from person where id = :id";
+
+    private static final String LONG_SQL =
+            "select p.id, p.name, 'literal :notParameter', a.street -- comment :notParameter\n" +
+            "  from person p\n" +
+            "  join address a on a.person_id = p.id\n" +
+            " where p.name like :name and p.created > :created and a.city = :city and p.status::text = :status\n" +
+            " order by p.name";
+
+    private final Map<String, Object> arguments = new HashMap<>();
+
+    @Setup
+    public void setup() {
+        arguments.put("id", 42);
+        arguments.put("name", "foo%");
+        arguments.put("created", "2017-01-01");
+        arguments.put("city", "Helsinki");
+        arguments.put("status", "ACTIVE");
+    }
+
+    @Benchmark
+    public SqlQuery shortQuery() {
+        return SqlQuery.namedQuery(SHORT_SQL, arguments);
+    }
+
+    @Benchmark
+    public SqlQuery longQuery() {
+        return SqlQuery.namedQuery(LONG_SQL, arguments);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.benchmarks;
+
+import org.dalesbred.Database;
+import org.dalesbred.result.ResultTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping rows with {@code InstantiatorRowMapper} and building {@link ResultTable}s
+ * to mapping the same rows with raw JDBC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RowMappingBenchmark {
+
+    private static final String SQL = "select id, name, amount, created from benchmark_row";
+
+    @Param({"H2", "HSQLDB"})
+    public BenchmarkDatabase database;
+
+    @Param({"1", "100", "1000"})
+    public int rows;
+
+    private Database db;
+
+    private Connection connection;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = database.openConnection();
+        db = database.createDatabase(connection);
+        database.createRows(db, rows);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<BenchmarkRow> instantiatorRowMapper() {
+        return db.findAll(BenchmarkRow.class, SQL);
+    }
+
+    @Benchmark
+    public List<BenchmarkRow> rawJdbc() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(SQL);
+             ResultSet rs = ps.executeQuery()) {
+            List<BenchmarkRow> result = new ArrayList<>();
+            while (rs.next())
+                result.add(new BenchmarkRow(rs.getInt(1), rs.getString(2), rs.getBigDecimal(3), rs.getTimestamp(4)));
+            connection.commit();
+            return result;
+        }
+    }
+
+    @Benchmark
+    public ResultTable resultTable() {
+        return db.findTable(SQL);
+    }
+}
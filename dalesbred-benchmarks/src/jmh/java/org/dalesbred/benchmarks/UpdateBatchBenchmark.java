@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.benchmarks;
+
+import org.dalesbred.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Compares {@link Database#updateBatch(String, List)} to batches executed with raw JDBC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UpdateBatchBenchmark {
+
+    private static final String SQL = "update benchmark_row set name = ?, amount = ? where id = ?";
+
+    @Param({"H2", "HSQLDB"})
+    public BenchmarkDatabase database;
+
+    @Param({"10", "1000"})
+    public int batchSize;
+
+    private Database db;
+
+    private Connection connection;
+
+    private List<List<?>> argumentLists;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = database.openConnection();
+        db = database.createDatabase(connection);
+        database.createRows(db, batchSize);
+
+        argumentLists = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++)
+            argumentLists.add(asList("updated " + i, i * 2.5, i));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int[] updateBatch() {
+        return db.updateBatch(SQL, argumentLists);
+    }
+
+    @Benchmark
+    public int[] rawJdbc() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            for (List<?> arguments : argumentLists) {
+                for (int i = 0; i < arguments.size(); i++)
+                    ps.setObject(i + 1, arguments.get(i));
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            connection.commit();
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.annotation.SQL;
+import org.dalesbred.query.SqlQuery;
+import org.dalesbred.transaction.TransactionCallback;
+import org.dalesbred.transaction.TransactionSettings;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Asynchronous facade for {@link Database}. Each operation is executed as a task in a bounded thread pool
+ * and its result is returned as a {@link CompletableFuture}. Since transactions are bound to threads, each
+ * task runs in its own transaction: tasks don't join a transaction active in the calling thread.
+ *
+ * <p>The pool should be sized according to the connection pool, since each running task holds a connection.
+ * When the queue of waiting tasks is full, new tasks are rejected and their futures complete exceptionally
+ * with {@link RejectedExecutionException}, providing backpressure to callers.
+ *
+ * <p>The thread pool is shut down by {@link #close()}.
+ */
+public final class AsyncDatabase implements AutoCloseable {
+
+    private final @NotNull Database db;
+
+    private final @NotNull ThreadPoolExecutor executor;
+
+    private AsyncDatabase(@NotNull Builder builder) {
+        this.db = builder.db;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, builder.threadNamePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(builder.threads, builder.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(builder.queueCapacity), threadFactory);
+    }
+
+    /**
+     * Returns a builder for an asynchronous facade for given database.
+     *
+     * @see Database#async()
+     */
+    public static @NotNull Builder builder(@NotNull Database db) {
+        return new Builder(db);
+    }
+
+    /**
+     * Executes given function with the database in the thread pool. This can be used for
+     * operations that have no asynchronous counterpart.
+     */
+    public @NotNull <T> CompletableFuture<T> execute(@NotNull Function<Database, T> function) {
+        try {
+            return CompletableFuture.supplyAsync(() -> function.apply(db), executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Executes a block of code within a context of a new transaction, using default settings.
+     */
+    public @NotNull <T> CompletableFuture<T> withTransaction(@NotNull TransactionCallback<T> callback) {
+        return execute(db -> db.withTransaction(callback));
+    }
+
+    /**
+     * Executes a block of code within a context of a new transaction, using given settings.
+     */
+    public @NotNull <T> CompletableFuture<T> withTransaction(@NotNull TransactionSettings settings, @NotNull TransactionCallback<T> callback) {
+        return execute(db -> db.withTransaction(settings, callback));
+    }
+
+    /**
+     * @see Database#findAll(Class, SqlQuery)
+     */
+    public @NotNull <T> CompletableFuture<List<T>> findAll(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return execute(db -> db.findAll(cl, query));
+    }
+
+    /**
+     * @see Database#findAll(Class, String, Object...)
+     */
+    public @NotNull <T> CompletableFuture<List<T>> findAll(@NotNull Class<T> cl, @NotNull @SQL String sql, Object... args) {
+        return findAll(cl, SqlQuery.query(sql, args));
+    }
+
+    /**
+     * @see Database#findUnique(Class, SqlQuery)
+     */
+    public @NotNull <T> CompletableFuture<T> findUnique(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return execute(db -> db.findUnique(cl, query));
+    }
+
+    /**
+     * @see Database#findUnique(Class, String, Object...)
+     */
+    public @NotNull <T> CompletableFuture<T> findUnique(@NotNull Class<T> cl, @NotNull @SQL String sql, Object... args) {
+        return findUnique(cl, SqlQuery.query(sql, args));
+    }
+
+    /**
+     * @see Database#findOptional(Class, SqlQuery)
+     */
+    public @NotNull <T> CompletableFuture<Optional<T>> findOptional(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return execute(db -> db.findOptional(cl, query));
+    }
+
+    /**
+     * @see Database#findOptional(Class, String, Object...)
+     */
+    public @NotNull <T> CompletableFuture<Optional<T>> findOptional(@NotNull Class<T> cl, @NotNull @SQL String sql, Object... args) {
+        return findOptional(cl, SqlQuery.query(sql, args));
+    }
+
+    /**
+     * @see Database#update(SqlQuery)
+     */
+    public @NotNull CompletableFuture<Integer> update(@NotNull SqlQuery query) {
+        return execute(db -> db.update(query));
+    }
+
+    /**
+     * @see Database#update(String, Object...)
+     */
+    public @NotNull CompletableFuture<Integer> update(@NotNull @SQL String sql, Object... args) {
+        return update(SqlQuery.query(sql, args));
+    }
+
+    /**
+     * Returns the amount of tasks waiting for a free thread.
+     */
+    public int getQueuedTaskCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the amount of tasks currently being executed.
+     */
+    public int getActiveTaskCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting new tasks and shuts down the thread pool after the queued tasks have been executed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    public static final class Builder {
+
+        private final @NotNull Database db;
+
+        private int threads = 10;
+
+        private int queueCapacity = 1000;
+
+        private @NotNull String threadNamePrefix = "dalesbred-async-";
+
+        private Builder(@NotNull Database db) {
+            this.db = requireNonNull(db);
+        }
+
+        /**
+         * Sets the amount of threads executing tasks, and therefore the maximum amount of connections used.
+         * The default is 10, regardless of the size of the connection pool: it should be set explicitly if the
+         * pool is smaller, or tasks will wait for connections while holding threads.
+         */
+        public @NotNull Builder threads(int threads) {
+            if (threads <= 0)
+                throw new IllegalArgumentException("threads must be positive, but was " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of tasks waiting for a free thread. Tasks submitted when the queue is full
+         * are rejected. The default is 1000.
+         */
+        public @NotNull Builder queueCapacity(int queueCapacity) {
+            if (queueCapacity <= 0)
+                throw new IllegalArgumentException("queueCapacity must be positive, but was " + queueCapacity);
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the prefix for names of the threads. The default is {@code "dalesbred-async-"}.
+         */
+        public @NotNull Builder threadNamePrefix(@NotNull String threadNamePrefix) {
+            this.threadNamePrefix = requireNonNull(threadNamePrefix);
+            return this;
+        }
+
+        public @NotNull AsyncDatabase build() {
+            return new AsyncDatabase(this);
+        }
+    }
+}
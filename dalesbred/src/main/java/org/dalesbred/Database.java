@@ -23,17 +23,32 @@
 package org.dalesbred;
 
 import org.dalesbred.annotation.SQL;
+import org.dalesbred.cache.ResultCache;
 import org.dalesbred.connection.ConnectionProvider;
 import org.dalesbred.connection.DataSourceConnectionProvider;
 import org.dalesbred.connection.DriverManagerConnectionProvider;
 import org.dalesbred.conversion.TypeConversionRegistry;
+import org.dalesbred.datatype.InList;
+import org.dalesbred.datatype.InputStreamWithSize;
+import org.dalesbred.datatype.ReaderWithSize;
 import org.dalesbred.dialect.Dialect;
 import org.dalesbred.internal.instantiation.InstantiatorProvider;
+import org.dalesbred.internal.jdbc.LargeObjects;
+import org.dalesbred.internal.jdbc.SqlUtils;
+import org.dalesbred.internal.jdbc.StatementResources;
 import org.dalesbred.internal.result.InstantiatorRowMapper;
 import org.dalesbred.internal.result.MapResultSetProcessor;
 import org.dalesbred.internal.result.ResultTableResultSetProcessor;
 import org.dalesbred.internal.utils.JndiUtils;
+import org.dalesbred.internal.utils.SingleFlight;
+import org.dalesbred.internal.utils.StringUtils;
+import org.dalesbred.internal.utils.Throwables;
+import org.dalesbred.internal.utils.TypeUtils;
+import org.dalesbred.monitoring.QueryExecution;
+import org.dalesbred.monitoring.QueryListener;
+import org.dalesbred.monitoring.QueryStatistics;
 import org.dalesbred.query.FetchDirection;
+import org.dalesbred.query.QueryBuilder;
 import org.dalesbred.query.SqlQuery;
 import org.dalesbred.result.*;
 import org.dalesbred.transaction.*;
@@ -43,11 +58,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import javax.xml.transform.Result;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
-
-import static java.lang.System.currentTimeMillis;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.function.UnaryOperator.identity;
 import static org.dalesbred.internal.utils.OptionalUtils.unwrapOptionalAsNull;
 import static org.dalesbred.transaction.TransactionCallback.fromVoidCallback;
 
@@ -64,6 +98,15 @@ import static org.dalesbred.transaction.TransactionCallback.fromVoidCallback;
  */
 public final class Database {
 
+    /** Valid names for tables created by {@link #withIdTable(Collection, String, String, TransactionCallback)} */
+    private static final Pattern ID_TABLE_NAME_PATTERN = Pattern.compile("#?[a-zA-Z_][a-zA-Z0-9_]*");
+
+    /** Valid types for the ids of {@link #withIdTable(Collection, String, String, TransactionCallback)}, e.g. "numeric(10, 2)" */
+    private static final Pattern ID_TYPE_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*( [a-zA-Z_][a-zA-Z0-9_]*)*( ?\\(\\d+( ?, ?\\d+)?\\))?");
+
+    /** Amount of ids inserted in a single batch when the dialect does not support bulk-loading */
+    private static final int ID_TABLE_BATCH_SIZE = 1000;
+
     /** Class responsible for transaction handling */
     private final @NotNull TransactionManager transactionManager;
 
@@ -79,6 +122,30 @@ public final class Database {
     /** Contains the instantiators and data-converters */
     private final @NotNull InstantiatorProvider instantiatorRegistry;
 
+    /** Query timeout for queries that don't specify their own */
+    private @Nullable Duration defaultQueryTimeout;
+
+    /** Maximum amount of rows for queries that don't specify their own */
+    private @Nullable Integer defaultMaxRows;
+
+    /** Listeners notified about executed queries */
+    private final @NotNull CopyOnWriteArrayList<QueryListener> queryListeners = new CopyOnWriteArrayList<>();
+
+    /** Aggregate statistics of executed statements, collected when enabled */
+    private final @NotNull QueryStatistics statistics = new QueryStatistics();
+
+    /** Cache for results of cacheable queries, if caching is enabled */
+    private volatile @Nullable ResultCache resultCache;
+
+    /** Coalesces concurrent executions of identical queries */
+    private final @NotNull SingleFlight<List<?>, Object> singleFlight = new SingleFlight<>();
+
+    /** Should concurrent executions of identical queries outside transactions be coalesced? */
+    private volatile boolean queryCoalescingEnabled = false;
+
+    /** Buffer for updates of current transaction, if buffering is enabled */
+    private final @NotNull ThreadLocal<UpdateBuffer> updateBuffer = new ThreadLocal<>();
+
     /**
      * Returns a new Database that uses given {@link DataSource} to retrieve connections.
      */
@@ -128,11 +195,30 @@ public final class Database {
      * Constructs a new Database that uses given {@link TransactionManager} and {@link Dialect}.
      */
     public Database(@NotNull TransactionManager transactionManager, @NotNull Dialect dialect) {
+        this(transactionManager, dialect, createInstantiatorProvider(dialect));
+    }
+
+    /**
+     * Constructs a new Database that shares the instantiators and type conversions of another database.
+     */
+    Database(@NotNull TransactionManager transactionManager, @NotNull Dialect dialect, @NotNull InstantiatorProvider instantiatorRegistry) {
         this.transactionManager = requireNonNull(transactionManager);
         this.dialect = requireNonNull(dialect);
-        this.instantiatorRegistry = new InstantiatorProvider(dialect);
+        this.instantiatorRegistry = requireNonNull(instantiatorRegistry);
+    }
 
+    private static @NotNull InstantiatorProvider createInstantiatorProvider(@NotNull Dialect dialect) {
+        InstantiatorProvider instantiatorRegistry = new InstantiatorProvider(dialect);
         dialect.registerTypeConversions(instantiatorRegistry.getTypeConversionRegistry());
+        return instantiatorRegistry;
+    }
+
+    /**
+     * Returns a new Database that uses given {@link ConnectionProvider}, but shares the dialect, instantiators
+     * and type conversions of this database.
+     */
+    @NotNull Database withConnectionProvider(@NotNull ConnectionProvider connectionProvider) {
+        return new Database(new DefaultTransactionManager(connectionProvider), dialect, instantiatorRegistry);
     }
 
     /**
@@ -191,8 +277,48 @@ public final class Database {
      */
     public <T> T withTransaction(@NotNull TransactionSettings settings,
                                  @NotNull TransactionCallback<T> callback) {
-
-        return transactionManager.withTransaction(settings, callback, dialect);
+        if (settings.getUpdateBatchSize() == 0 && updateBuffer.get() == null)
+            return transactionManager.withTransaction(settings, callback, dialect);
+
+        flushUpdateBuffer();
+        return transactionManager.withTransaction(settings, withUpdateBuffer(settings.getUpdateBatchSize(), settings.getPropagation(), callback), dialect);
+    }
+
+    /**
+     * Wraps the callback so that it buffers its updates if buffering is enabled, or if it joins
+     * a transaction that buffers its updates. The buffered updates are flushed before the
+     * callback returns, so that they are executed before a nested transaction ends. If a nested
+     * transaction sharing the buffer of its parent fails, the updates it buffered are discarded
+     * along with the rest of its changes.
+     */
+    private @NotNull <T> TransactionCallback<T> withUpdateBuffer(int batchSize, @NotNull Propagation propagation, @NotNull TransactionCallback<T> callback) {
+        return tx -> {
+            UpdateBuffer previous = updateBuffer.get();
+            UpdateBuffer buffer;
+            if (batchSize > 0)
+                buffer = new UpdateBuffer(tx.getConnection(), batchSize);
+            else if (previous != null && previous.getConnection() == tx.getConnection())
+                buffer = previous;
+            else
+                buffer = null;
+
+            updateBuffer.set(buffer);
+            try {
+                T result = callback.execute(tx);
+                flushUpdateBuffer();
+                return result;
+            } catch (Throwable e) {
+                // The buffer was flushed before the transaction started, so it contains only updates of this callback
+                if (buffer != null && buffer == previous && propagation == Propagation.NESTED)
+                    buffer.drain();
+                throw e;
+            } finally {
+                if (previous != null)
+                    updateBuffer.set(previous);
+                else
+                    updateBuffer.remove();
+            }
+        };
     }
 
     /**
@@ -242,6 +368,231 @@ public final class Database {
         return transactionManager.hasActiveTransaction();
     }
 
+    /**
+     * Captures the transaction context of the current thread and returns a task that executes given task
+     * within it, typically on another thread. The task joins the transaction of the caller, if any, and
+     * the queries it executes are reported as those of the transaction. The returned task must not be
+     * executed concurrently with other code using the same transaction, since they share a connection.
+     *
+     * <p>If the transaction buffers its updates, the buffered updates are flushed first, and the task
+     * buffers its updates in the same buffer, so that both see the updates of each other.
+     *
+     * @throws UnsupportedOperationException if the transaction manager can't hand over its transactions
+     * @see TransactionManager#propagate(Supplier)
+     */
+    public @NotNull <T> Supplier<T> propagate(@NotNull Supplier<T> task) {
+        flushUpdateBuffer();
+        UpdateBuffer buffer = updateBuffer.get();
+        DebugContext.QueryHolder queries = DebugContext.getQueryHolder();
+        return transactionManager.propagate(() -> DebugContext.withQueryHolder(queries, () -> withBoundUpdateBuffer(buffer, task)));
+    }
+
+    private <T> T withBoundUpdateBuffer(@Nullable UpdateBuffer buffer, @NotNull Supplier<T> task) {
+        UpdateBuffer previous = updateBuffer.get();
+        updateBuffer.set(buffer);
+        try {
+            T result = task.get();
+            flushUpdateBuffer();
+            return result;
+        } finally {
+            if (previous != null)
+                updateBuffer.set(previous);
+            else
+                updateBuffer.remove();
+        }
+    }
+
+    /**
+     * Returns a builder for an {@link AsyncDatabase} that executes operations of this database in a thread pool.
+     * The size of the pool is not derived from the connection pool, so configure it with
+     * {@link AsyncDatabase.Builder#threads(int)} to match the amount of connections available.
+     */
+    public @NotNull AsyncDatabase.Builder async() {
+        return AsyncDatabase.builder(this);
+    }
+
+    /**
+     * Executes given tasks and returns their results in the same order, returning only after all tasks
+     * have completed. If the current thread has no active transaction, the tasks are executed concurrently
+     * using given executor and each of them uses transactions of its own. Otherwise the tasks are executed
+     * sequentially in the current thread, within the current transaction, since a transaction can't be used
+     * concurrently from several threads.
+     *
+     * <p>If any of the tasks fails, the exception of the first failed task is thrown after the other
+     * tasks have completed.
+     */
+    public @NotNull <T> List<T> fanOut(@NotNull Executor executor, @NotNull List<? extends Supplier<T>> tasks) {
+        if (hasActiveTransaction()) {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Supplier<T> task : tasks)
+                results.add(task.get());
+            return results;
+        }
+
+        return executeConcurrently(executor, tasks);
+    }
+
+    /**
+     * Executes given read-only tasks concurrently using given executor, each in a read-only transaction
+     * of its own, and returns their results in the same order. The total latency is therefore that of
+     * the slowest task instead of the sum of all tasks.
+     *
+     * <p>If the dialect supports exporting snapshots (PostgreSQL), the snapshot of the current transaction,
+     * or a new transaction if there is none, is exported and the tasks are executed in {@code REPEATABLE READ}
+     * transactions using that snapshot, so they all see the same consistent state of the database. Note that
+     * changes made by the current transaction itself are not visible to the tasks. With other databases, the
+     * tasks are independent {@code READ COMMITTED} transactions.
+     *
+     * <p>A snapshot exists only on the server that exported it, but read-only transactions may be routed to
+     * replicas by the connection provider (see {@link org.dalesbred.connection.RoutingConnectionProvider}).
+     * Therefore tasks importing a snapshot are not marked read-only, and if the current transaction is read-only,
+     * the snapshot is exported by a new transaction instead, so that all of them use the primary database.
+     *
+     * <p>Each running task holds a connection of its own, so the executor should be sized according to the
+     * connection pool. The transaction context must be bound to threads, which is the default.
+     */
+    public @NotNull <T> List<T> parallelRead(@NotNull Executor executor, @NotNull List<? extends TransactionCallback<T>> tasks) {
+        if (!dialect.supportsSnapshotExport())
+            return executeConcurrently(executor, parallelReadTasks(tasks, Isolation.READ_COMMITTED, null));
+
+        return withTransaction(Propagation.REQUIRED, tx -> {
+            if (tx.getConnection().isReadOnly())
+                return withTransaction(Propagation.REQUIRES_NEW, newTx -> parallelReadWithSnapshot(executor, tasks, newTx));
+
+            return parallelReadWithSnapshot(executor, tasks, tx);
+        });
+    }
+
+    /**
+     * Exports the snapshot of given transaction and executes the tasks using it. The snapshot is valid
+     * only as long as the exporting transaction is open.
+     */
+    private @NotNull <T> List<T> parallelReadWithSnapshot(@NotNull Executor executor,
+                                                         @NotNull List<? extends TransactionCallback<T>> tasks,
+                                                         @NotNull TransactionContext tx) throws SQLException {
+        String snapshotId = dialect.exportSnapshot(tx.getConnection());
+        return executeConcurrently(executor, parallelReadTasks(tasks, Isolation.REPEATABLE_READ, snapshotId));
+    }
+
+    private @NotNull <T> List<Supplier<T>> parallelReadTasks(@NotNull List<? extends TransactionCallback<T>> tasks,
+                                                            @NotNull Isolation isolation,
+                                                            @Nullable String snapshotId) {
+        TransactionSettings settings = new TransactionSettings();
+        settings.setPropagation(Propagation.REQUIRES_NEW);
+        settings.setIsolation(isolation);
+        settings.setReadOnly(snapshotId == null);
+
+        List<Supplier<T>> result = new ArrayList<>(tasks.size());
+        for (TransactionCallback<T> task : tasks)
+            result.add(() -> withTransaction(settings, tx -> {
+                if (snapshotId != null)
+                    dialect.importSnapshot(tx.getConnection(), snapshotId);
+                return task.execute(tx);
+            }));
+        return result;
+    }
+
+    private @NotNull <T> List<T> executeConcurrently(@NotNull Executor executor, @NotNull List<? extends Supplier<T>> tasks) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks)
+            futures.add(CompletableFuture.supplyAsync(task, executor));
+
+        List<T> results = new ArrayList<>(tasks.size());
+        Throwable failure = null;
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null)
+                    failure = e.getCause() != null ? e.getCause() : e;
+            }
+        }
+
+        if (failure != null)
+            throw Throwables.propagate(failure);
+
+        return results;
+    }
+
+    /**
+     * Loads given ids into a temporary table with a single primary key column {@code id} and executes the callback.
+     * This allows the queries in callback to join against a huge amount of ids efficiently. The ids are loaded with
+     * {@code COPY} on PostgreSQL and batched inserts elsewhere.
+     *
+     * <p>Like queries, the callback is executed within current transaction, or an implicit transaction
+     * if no transaction is active and implicit transactions are allowed.
+     *
+     * <p>If the database removes temporary tables or their rows when the transaction ends (PostgreSQL, HSQLDB
+     * and H2), the table is left for the database to clean up, so that it stays valid for the rest of the
+     * transaction even if the callback was executed in a nested or joined transaction. A table left by an earlier
+     * call in the same transaction is emptied and reused, keeping the id type it was created with. With other
+     * databases the table is dropped after the callback.
+     *
+     * @param ids to load into the table
+     * @param tableName name of the temporary table, must be a plain SQL identifier, prefixed with {@code #} on SQL Server
+     * @param idType database type for the id column, e.g. {@code "bigint"} or {@code "varchar(36)"}
+     * @param callback to execute while the table exists
+     * @throws IllegalArgumentException if table name or id type is not valid
+     * @throws UnsupportedOperationException if the dialect can't create temporary tables without committing
+     * @see Dialect#createTemporaryIdTableSql(String, String)
+     */
+    public <T> T withIdTable(@NotNull Collection<?> ids,
+                             @NotNull String tableName,
+                             @NotNull String idType,
+                             @NotNull TransactionCallback<T> callback) {
+        if (!ID_TABLE_NAME_PATTERN.matcher(tableName).matches())
+            throw new IllegalArgumentException("invalid table name: '" + tableName + '\'');
+        if (!ID_TYPE_PATTERN.matcher(idType).matches())
+            throw new IllegalArgumentException("invalid id type: '" + idType + '\'');
+
+        SqlQuery createQuery = SqlQuery.query(dialect.createTemporaryIdTableSql(tableName, idType));
+        String dropSql = dialect.dropTemporaryIdTableSql(tableName);
+
+        return withCurrentTransaction(createQuery, tx -> {
+            executeUpdateWithoutInvalidation(createQuery);
+
+            if (dropSql == null) {
+                // The table lives until the end of the transaction, so it may contain the ids of an earlier call
+                executeUpdateWithoutInvalidation(SqlQuery.query("delete from " + tableName));
+                if (!dialect.bulkLoadIds(tx.getConnection(), tableName, ids))
+                    insertIds(tableName, ids);
+                return callback.execute(tx);
+            }
+
+            SqlQuery dropQuery = SqlQuery.query(dropSql);
+            T result;
+            try {
+                if (!dialect.bulkLoadIds(tx.getConnection(), tableName, ids))
+                    insertIds(tableName, ids);
+
+                result = callback.execute(tx);
+            } catch (SQLException | RuntimeException | Error e) {
+                try {
+                    executeUpdateWithoutInvalidation(dropQuery);
+                } catch (RuntimeException dropException) {
+                    e.addSuppressed(dropException);
+                }
+                throw e;
+            }
+            executeUpdateWithoutInvalidation(dropQuery);
+            return result;
+        });
+    }
+
+    private void insertIds(@NotNull String tableName, @NotNull Collection<?> ids) {
+        String sql = "insert into " + tableName + " (id) values (?)";
+        List<List<?>> batch = new ArrayList<>(ID_TABLE_BATCH_SIZE);
+        for (Object id : ids) {
+            batch.add(singletonList(id));
+            if (batch.size() == ID_TABLE_BATCH_SIZE) {
+                updateBatch(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            updateBatch(sql, batch);
+    }
+
     /**
      * Executes the block of code within context of current transaction. If there's no transaction in progress
      * throws {@link NoActiveTransactionException} unless implicit transaction are allowed: in this case, starts a new
@@ -251,16 +602,51 @@ public final class Database {
      * @see #setAllowImplicitTransactions(boolean)
      */
     private <T> T withCurrentTransaction(@NotNull SqlQuery query, @NotNull TransactionCallback<T> callback) {
+        flushUpdateBuffer();
+
         SqlQuery oldQuery = DebugContext.getCurrentQuery();
         try {
             DebugContext.setCurrentQuery(query);
             if (allowImplicitTransactions) {
-                return withTransaction(callback);
+                return withTransaction(freeingStatementResources(callback));
             } else {
-                return transactionManager.withCurrentTransaction(callback, dialect);
+                return transactionManager.withCurrentTransaction(freeingStatementResources(callback), dialect);
             }
         } finally {
             DebugContext.setCurrentQuery(oldQuery);
+            closeArgumentsAfterExecution(query.getArguments());
+        }
+    }
+
+    /**
+     * Wraps the callback so that the resources created for its statements are freed when it returns,
+     * while the connection still belongs to the transaction.
+     */
+    private static @NotNull <T> TransactionCallback<T> freeingStatementResources(@NotNull TransactionCallback<T> callback) {
+        return tx -> {
+            List<Object> enclosingResources = StatementResources.begin();
+            try {
+                return callback.execute(tx);
+            } finally {
+                StatementResources.end(enclosingResources);
+            }
+        };
+    }
+
+    /**
+     * Closes the arguments that are to be closed after execution, such as streams opened by
+     * {@link InputStreamWithSize#ofPath(java.nio.file.Path)}.
+     */
+    private void closeArgumentsAfterExecution(@NotNull Collection<?> arguments) {
+        for (Object argument : arguments) {
+            if ((argument instanceof InputStreamWithSize && ((InputStreamWithSize) argument).isClosedAfterExecution())
+                    || (argument instanceof ReaderWithSize && ((ReaderWithSize) argument).isClosedAfterExecution())) {
+                try {
+                    ((Closeable) argument).close();
+                } catch (IOException e) {
+                    log.warn("failed to close argument after execution", e);
+                }
+            }
         }
     }
 
@@ -272,14 +658,22 @@ public final class Database {
         return withCurrentTransaction(query, tx -> {
             logQuery(query);
 
+            QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.QUERY, 1);
             try (PreparedStatement ps = tx.getConnection().prepareStatement(query.getSql())) {
-                prepareStatementFromQuery(ps, query);
+                execution.prepared();
+                prepareStatementFromQuery(ps, query, tx);
+                execution.bound();
 
-                long startTime = currentTimeMillis();
                 try (ResultSet resultSet = ps.executeQuery()) {
-                    logQueryExecution(query, currentTimeMillis() - startTime);
-                    return processor.process(resultSet);
+                    execution.executed();
+                    logQueryExecution(execution);
+                    T result = processor.process(execution.track(resultSet));
+                    execution.processed();
+                    return result;
                 }
+            } catch (SQLException | RuntimeException e) {
+                execution.failed(e);
+                throw e;
             }
         });
     }
@@ -293,6 +687,52 @@ public final class Database {
         return executeQuery(processor, SqlQuery.query(sql, args));
     }
 
+    /**
+     * Executes a query whose result is immutable through {@link #executeCachedQuery(ResultSetProcessor, SqlQuery, Object, UnaryOperator, UnaryOperator)}.
+     */
+    private <T> T executeCachedQuery(@NotNull ResultSetProcessor<T> processor, @NotNull SqlQuery query, @NotNull Object resultType) {
+        return executeCachedQuery(processor, query, resultType, identity(), identity());
+    }
+
+    /**
+     * Executes a query through the result cache if caching is enabled for the query and there is no active
+     * transaction, coalescing concurrent executions of identical queries if coalescing is enabled.
+     * Otherwise just executes the query. Queries executed in transactions are neither cached nor coalesced,
+     * since transactions must see their own changes and must not see those of other transactions.
+     *
+     * @param resultType describes the type of the result for distinguishing different results of same query
+     * @param freeze creates an immutable copy of the result for caching
+     * @param copy creates a copy of a coalesced result for each caller, or null if the result may contain
+     *             mutable objects and therefore must not be coalesced
+     */
+    private <T> T executeCachedQuery(@NotNull ResultSetProcessor<T> processor,
+                                     @NotNull SqlQuery query,
+                                     @NotNull Object resultType,
+                                     @NotNull UnaryOperator<T> freeze,
+                                     @Nullable UnaryOperator<T> copy) {
+        ResultCache cache = resultCache;
+        Set<String> dependencies = query.getCacheDependencies();
+        boolean cacheable = cache != null && dependencies != null;
+        boolean coalesce = queryCoalescingEnabled && copy != null;
+        if ((!cacheable && !coalesce) || hasActiveTransaction())
+            return executeQuery(processor, query);
+
+        List<?> key = asList(query.getSql(), query.getArguments(), query.getMaxRows(), resultType);
+        if (!cacheable)
+            return copy.apply(coalesceQuery(key, () -> executeQuery(processor, query)));
+
+        Supplier<T> loader = coalesce
+                ? () -> coalesceQuery(key, () -> freeze.apply(executeQuery(processor, query)))
+                : () -> freeze.apply(executeQuery(processor, query));
+
+        return cache.get(key, dependencies, loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesceQuery(@NotNull List<?> key, @NotNull Supplier<T> loader) {
+        return (T) singleFlight.execute(key, loader);
+    }
+
     /**
      * Executes a query and processes each row of the result with given {@link RowMapper}
      * to produce a list of results.
@@ -313,7 +753,8 @@ public final class Database {
      * Executes a query and converts the results to instances of given class using default mechanisms.
      */
     public @NotNull <T> List<T> findAll(@NotNull Class<T> cl, @NotNull SqlQuery query) {
-        return executeQuery(resultProcessorForClass(cl), query);
+        return executeCachedQuery(resultProcessorForClass(cl), query, asList(List.class, cl), Collections::unmodifiableList,
+                TypeUtils.isImmutable(cl) ? ArrayList::new : null);
     }
 
     /**
@@ -323,6 +764,174 @@ public final class Database {
         return findAll(cl, SqlQuery.query(sql, args));
     }
 
+    /**
+     * Executes a named query once for each chunk of the collection-valued parameter {@code chunkedParameter}
+     * and concatenates the results. Each chunk is expanded to a list of placeholders as an {@link InList}.
+     * This allows {@code IN}-lists of any size, even though the database limits the size of a single list
+     * (see {@link Dialect#getMaxInListSize()}). The chunks are executed within the same transaction, but
+     * ordering, grouping and row limits apply to each chunk separately.
+     *
+     * @see org.dalesbred.query.QueryBuilder#appendBucketedPlaceholders(Collection, int)
+     */
+    public @NotNull <T> List<T> findAllInChunks(@NotNull RowMapper<T> rowMapper,
+                                                @NotNull @SQL String sql,
+                                                @NotNull Map<String, ?> arguments,
+                                                @NotNull String chunkedParameter) {
+        Object values = arguments.get(chunkedParameter);
+        List<?> list;
+        if (values instanceof InList)
+            list = ((InList) values).getValues();
+        else if (values instanceof Collection<?>)
+            list = new ArrayList<>((Collection<?>) values);
+        else
+            throw new IllegalArgumentException("parameter :" + chunkedParameter + " is not a collection");
+
+        if (list.isEmpty())
+            return new ArrayList<>();
+
+        // Full chunks use exactly the maximum size and the last chunk is padded to a bucket no larger than that
+        int chunkSize = Math.min(dialect.getMaxInListSize(), QueryBuilder.MAX_PLACEHOLDER_BUCKET);
+        Map<String, Object> chunkArguments = new HashMap<>(arguments);
+
+        return withCurrentTransaction(SqlQuery.query(sql), tx -> {
+            List<T> result = new ArrayList<>();
+            for (int start = 0; start < list.size(); start += chunkSize) {
+                chunkArguments.put(chunkedParameter, InList.of(list.subList(start, Math.min(start + chunkSize, list.size())), chunkSize));
+                result.addAll(findAll(rowMapper, SqlQuery.namedQuery(sql, chunkArguments)));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Executes a named query once for each chunk of the collection-valued parameter {@code chunkedParameter}
+     * and converts the concatenated results to instances of given class using default mechanisms.
+     *
+     * @see #findAllInChunks(RowMapper, String, Map, String)
+     */
+    public @NotNull <T> List<T> findAllInChunks(@NotNull Class<T> cl,
+                                                @NotNull @SQL String sql,
+                                                @NotNull Map<String, ?> arguments,
+                                                @NotNull String chunkedParameter) {
+        return findAllInChunks(rowMapperForClass(cl), sql, arguments, chunkedParameter);
+    }
+
+    /**
+     * Executes a query returning a single binary value (e.g. a {@code BLOB}) and streams it to given stream
+     * without reading the whole value into memory. {@link Blob}s are freed after they have been copied.
+     *
+     * @return amount of bytes copied, or -1 if the value was NULL
+     * @throws NonUniqueResultException if there is more then one row
+     * @throws EmptyResultException if there are no rows
+     */
+    public long streamBlob(@NotNull SqlQuery query, @NotNull OutputStream out) {
+        RowMapper<Long> mapper = rs -> LargeObjects.copyBinary(rs, out);
+        return executeQuery(mapper.unique(), query);
+    }
+
+    /**
+     * Executes a query returning a single binary value (e.g. a {@code BLOB}) and streams it to given channel
+     * without reading the whole value into memory. {@link Blob}s are freed after they have been copied.
+     *
+     * @return amount of bytes copied, or -1 if the value was NULL
+     * @throws NonUniqueResultException if there is more then one row
+     * @throws EmptyResultException if there are no rows
+     */
+    public long streamBlob(@NotNull SqlQuery query, @NotNull WritableByteChannel channel) {
+        RowMapper<Long> mapper = rs -> LargeObjects.copyBinary(rs, channel);
+        return executeQuery(mapper.unique(), query);
+    }
+
+    /**
+     * Executes a query returning a single character value (e.g. a {@code CLOB}) and streams it to given writer
+     * without reading the whole value into memory. {@link Clob}s are freed after they have been copied.
+     *
+     * @return amount of characters copied, or -1 if the value was NULL
+     * @throws NonUniqueResultException if there is more then one row
+     * @throws EmptyResultException if there are no rows
+     */
+    public long streamClob(@NotNull SqlQuery query, @NotNull Writer writer) {
+        RowMapper<Long> mapper = rs -> LargeObjects.copyCharacters(rs, writer);
+        return executeQuery(mapper.unique(), query);
+    }
+
+    /**
+     * Executes a query returning a single XML value and streams it to given {@link Result} (e.g. a
+     * {@link javax.xml.transform.sax.SAXResult} or {@link javax.xml.transform.stax.StAXResult}) without
+     * building a DOM tree. The {@link SQLXML} is freed after it has been copied.
+     *
+     * @return true if the value was copied, false if it was NULL
+     * @throws NonUniqueResultException if there is more then one row
+     * @throws EmptyResultException if there are no rows
+     */
+    public boolean streamXml(@NotNull SqlQuery query, @NotNull Result result) {
+        RowMapper<Boolean> mapper = rs -> LargeObjects.copyXml(rs, result);
+        return executeQuery(mapper.unique(), query);
+    }
+
+    /**
+     * Returns a new {@link Pipeline} for executing several queries in a single round trip.
+     */
+    public @NotNull Pipeline pipeline() {
+        return new Pipeline(this);
+    }
+
+    @NotNull List<Object> executePipeline(@NotNull List<SqlQuery> queries, @NotNull List<ResultSetProcessor<?>> processors) {
+        if (queries.size() == 1 || !dialect.supportsMultipleStatements()) {
+            return withCurrentTransaction(SqlQuery.query("<pipeline>"), tx -> {
+                List<Object> results = new ArrayList<>(queries.size());
+                for (int i = 0; i < queries.size(); i++)
+                    results.add(executeQuery(processors.get(i), queries.get(i)));
+                return results;
+            });
+        }
+
+        StringBuilder sql = new StringBuilder();
+        List<Object> arguments = new ArrayList<>();
+        for (SqlQuery query : queries) {
+            // Separate with newlines so that trailing line comments won't swallow the semicolons
+            if (sql.length() != 0)
+                sql.append("\n;\n");
+            sql.append(StringUtils.stripTrailingSemicolons(query.getSql()));
+            arguments.addAll(query.getArguments());
+        }
+        SqlQuery query = SqlQuery.query(sql.toString(), arguments);
+
+        return withCurrentTransaction(query, tx -> {
+            logQuery(query);
+
+            QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.QUERY, 1);
+            try (PreparedStatement ps = tx.getConnection().prepareStatement(query.getSql())) {
+                execution.prepared();
+                prepareStatementFromQuery(ps, query, tx);
+                execution.bound();
+
+                boolean hasResultSet = ps.execute();
+                execution.executed();
+                logQueryExecution(execution);
+
+                List<Object> results = new ArrayList<>(processors.size());
+                for (ResultSetProcessor<?> processor : processors) {
+                    while (!hasResultSet) {
+                        if (ps.getUpdateCount() == -1)
+                            throw new UnexpectedResultException("expected " + processors.size() + " result sets, but got " + results.size());
+                        hasResultSet = ps.getMoreResults();
+                    }
+
+                    try (ResultSet resultSet = ps.getResultSet()) {
+                        results.add(processor.process(execution.track(resultSet)));
+                    }
+                    hasResultSet = ps.getMoreResults();
+                }
+                execution.processed();
+                return results;
+            } catch (SQLException | RuntimeException e) {
+                execution.failed(e);
+                throw e;
+            }
+        });
+    }
+
     /**
      * Finds a unique result from database, using given {@link RowMapper} to convert the row.
      *
@@ -350,7 +959,11 @@ public final class Database {
      * @throws EmptyResultException if there are no rows
      */
     public <T> T findUnique(@NotNull Class<T> cl, @NotNull SqlQuery query) {
-        return executeQuery(rowMapperForClass(cl).unique(), query);
+        // Cached results are shared between callers, so only immutable results can be cached
+        if (!TypeUtils.isImmutable(cl))
+            return executeQuery(rowMapperForClass(cl).unique(), query);
+
+        return executeCachedQuery(rowMapperForClass(cl).unique(), query, cl);
     }
 
     /**
@@ -390,7 +1003,10 @@ public final class Database {
      * @throws NonUniqueResultException if there are multiple result rows
      */
     public @NotNull <T> Optional<T> findOptional(@NotNull Class<T> cl, @NotNull SqlQuery query) {
-        return executeQuery(rowMapperForClass(cl).optional(), query);
+        if (!TypeUtils.isImmutable(cl))
+            return executeQuery(rowMapperForClass(cl).optional(), query);
+
+        return executeCachedQuery(rowMapperForClass(cl).optional(), query, asList(Optional.class, cl));
     }
 
     /**
@@ -501,7 +1117,7 @@ public final class Database {
      * @throws EmptyResultException if there are no rows
      */
     public boolean findUniqueBoolean(@NotNull SqlQuery query) {
-        return executeQuery(rowMapperForClass(boolean.class).unique(), query);
+        return executeCachedQuery(rowMapperForClass(boolean.class).unique(), query, boolean.class);
     }
 
     /**
@@ -521,7 +1137,7 @@ public final class Database {
      * @throws EmptyResultException if there are no rows
      */
     public int findUniqueInt(@NotNull SqlQuery query) {
-        return executeQuery(rowMapperForClass(int.class).unique(), query);
+        return executeCachedQuery(rowMapperForClass(int.class).unique(), query, int.class);
     }
 
     /**
@@ -541,7 +1157,7 @@ public final class Database {
      * @throws EmptyResultException if there are no rows
      */
     public long findUniqueLong(@NotNull SqlQuery query) {
-        return executeQuery(rowMapperForClass(long.class).unique(), query);
+        return executeCachedQuery(rowMapperForClass(long.class).unique(), query, long.class);
     }
 
     /**
@@ -563,7 +1179,9 @@ public final class Database {
     public @NotNull <K,V> Map<K, V> findMap(@NotNull Class<K> keyType,
                                    @NotNull Class<V> valueType,
                                    @NotNull SqlQuery query) {
-        return executeQuery(new MapResultSetProcessor<>(keyType, valueType, instantiatorRegistry), query);
+        return executeCachedQuery(new MapResultSetProcessor<>(keyType, valueType, instantiatorRegistry), query,
+                asList(Map.class, keyType, valueType), map -> unmodifiableMap(new LinkedHashMap<>(map)),
+                TypeUtils.isImmutable(keyType) && TypeUtils.isImmutable(valueType) ? LinkedHashMap::new : null);
     }
 
     /**
@@ -583,6 +1201,7 @@ public final class Database {
      * Executes a query and creates a {@link ResultTable} from the results.
      */
     public @NotNull ResultTable findTable(@NotNull SqlQuery query) {
+        // Tables may contain mutable values such as byte arrays, so they are never shared between callers
         return executeQuery(new ResultTableResultSetProcessor(), query);
     }
 
@@ -595,24 +1214,63 @@ public final class Database {
 
     /**
      * Executes an update against the database and returns the amount of affected rows.
+     * If the transaction buffers its updates, the update is buffered and
+     * {@link Statement#SUCCESS_NO_INFO} is returned instead.
+     *
+     * @see TransactionSettings#setUpdateBatchSize(int)
      */
     public int update(@NotNull SqlQuery query) {
+        UpdateBuffer buffer = updateBuffer.get();
+        if (buffer == null)
+            return executeUpdate(query);
+
+        if (!buffer.accepts(query))
+            flushUpdateBuffer();
+
+        buffer.add(query);
+        if (buffer.isFull())
+            flushUpdateBuffer();
+
+        return Statement.SUCCESS_NO_INFO;
+    }
+
+    private int executeUpdate(@NotNull SqlQuery query) {
+        int count = executeUpdateWithoutInvalidation(query);
+        invalidateResultCache(query.getSql());
+        return count;
+    }
+
+    /**
+     * Executes an update that can't affect cached results, such as DDL of temporary tables.
+     */
+    private int executeUpdateWithoutInvalidation(@NotNull SqlQuery query) {
         return withCurrentTransaction(query, tx -> {
             logQuery(query);
 
+            QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.UPDATE, 1);
             try (PreparedStatement ps = tx.getConnection().prepareStatement(query.getSql())) {
-                prepareStatementFromQuery(ps, query);
-
-                long startTime = currentTimeMillis();
-                int count = ps.executeUpdate();
-                logQueryExecution(query, currentTimeMillis() - startTime);
-                return count;
+                execution.prepared();
+                prepareStatementFromQuery(ps, query, tx);
+                execution.bound();
+
+                int result = ps.executeUpdate();
+                execution.executed(result);
+                logQueryExecution(execution);
+                execution.processed();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                execution.failed(e);
+                throw e;
             }
         });
     }
 
     /**
      * Executes an update against the database and returns the amount of affected rows.
+     * If the transaction buffers its updates, the update is buffered and
+     * {@link Statement#SUCCESS_NO_INFO} is returned instead.
+     *
+     * @see TransactionSettings#setUpdateBatchSize(int)
      */
     public int update(@NotNull @SQL String sql, Object... args) {
         return update(SqlQuery.query(sql, args));
@@ -620,11 +1278,12 @@ public final class Database {
 
     /**
      * Execute an update against the database and assert that a single row will be modified.
+     * The update is never buffered, since the amount of modified rows is needed.
      *
      * @throws NonUniqueUpdateException if zero or more then one rows were updated
      */
     public void updateUnique(@NotNull SqlQuery query) {
-        int modifiedRows = update(query);
+        int modifiedRows = executeUpdate(query);
         if (modifiedRows != 1)
             throw new NonUniqueUpdateException(modifiedRows);
     }
@@ -648,21 +1307,31 @@ public final class Database {
      * @return Result of processing the results with {@code generatedKeysProcessor}.
      */
     public <T> T updateAndProcessGeneratedKeys(@NotNull ResultSetProcessor<T> generatedKeysProcessor, @NotNull List<String> columnNames, @NotNull SqlQuery query) {
-        return withCurrentTransaction(query, tx -> {
+        T keys = withCurrentTransaction(query, tx -> {
             logQuery(query);
 
+            QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.UPDATE_WITH_GENERATED_KEYS, 1);
             try (PreparedStatement ps = prepareStatement(tx.getConnection(), query.getSql(), columnNames)) {
-                prepareStatementFromQuery(ps, query);
+                execution.prepared();
+                prepareStatementFromQuery(ps, query, tx);
+                execution.bound();
 
-                long startTime = currentTimeMillis();
-                ps.executeUpdate();
-                logQueryExecution(query, currentTimeMillis() - startTime);
+                execution.executed(ps.executeUpdate());
+                logQueryExecution(execution);
 
                 try (ResultSet rs = ps.getGeneratedKeys()) {
-                    return generatedKeysProcessor.process(rs);
+                    T result = generatedKeysProcessor.process(execution.track(rs));
+                    execution.processed();
+                    return result;
                 }
+            } catch (SQLException | RuntimeException e) {
+                execution.failed(e);
+                throw e;
             }
         });
+
+        invalidateResultCache(query.getSql());
+        return keys;
     }
 
     private static @NotNull PreparedStatement prepareStatement(@NotNull Connection connection, @NotNull String sql, @NotNull List<String> columnNames) throws SQLException {
@@ -679,6 +1348,58 @@ public final class Database {
         return updateAndProcessGeneratedKeys(generatedKeysProcessor, columnNames, SqlQuery.query(sql, args));
     }
 
+    /**
+     * Executes an update with a {@code RETURNING} clause (e.g. {@code insert ... returning *} on PostgreSQL)
+     * and processes the returned rows with given processor. Unlike {@link #updateAndProcessGeneratedKeys},
+     * this returns complete rows in a single round trip without relying on {@link Statement#getGeneratedKeys()}.
+     */
+    public <T> T updateReturning(@NotNull ResultSetProcessor<T> processor, @NotNull SqlQuery query) {
+        T rows = withCurrentTransaction(query, tx -> {
+            logQuery(query);
+
+            QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.UPDATE_RETURNING, 1);
+            try (PreparedStatement ps = tx.getConnection().prepareStatement(query.getSql())) {
+                execution.prepared();
+                prepareStatementFromQuery(ps, query, tx);
+                execution.bound();
+
+                try (ResultSet resultSet = ps.executeQuery()) {
+                    execution.executed();
+                    logQueryExecution(execution);
+                    T result = processor.process(execution.track(resultSet));
+                    execution.processed();
+                    return result;
+                }
+            } catch (SQLException | RuntimeException e) {
+                execution.failed(e);
+                throw e;
+            }
+        });
+
+        invalidateResultCache(query.getSql());
+        return rows;
+    }
+
+    /**
+     * Executes an update with a {@code RETURNING} clause and converts the returned rows to instances of
+     * given class using default mechanisms.
+     *
+     * @see #updateReturning(ResultSetProcessor, SqlQuery)
+     */
+    public @NotNull <T> List<T> updateReturning(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return updateReturning(resultProcessorForClass(cl), query);
+    }
+
+    /**
+     * Executes an update with a {@code RETURNING} clause and converts the returned rows to instances of
+     * given class using default mechanisms.
+     *
+     * @see #updateReturning(ResultSetProcessor, SqlQuery)
+     */
+    public @NotNull <T> List<T> updateReturning(@NotNull Class<T> cl, @NotNull @SQL String sql, Object... args) {
+        return updateReturning(cl, SqlQuery.query(sql, args));
+    }
+
     /**
      * Executes a batch update against the database, returning an array of modification
      * counts for each argument list.
@@ -686,21 +1407,37 @@ public final class Database {
     public int[] updateBatch(@SQL @NotNull String sql, @NotNull List<? extends  List<?>> argumentLists) {
         SqlQuery query = SqlQuery.query(sql, "<batch-update>");
 
-        return withCurrentTransaction(query, tx -> {
-            logQuery(query);
-
-            try (PreparedStatement ps = tx.getConnection().prepareStatement(sql)) {
-                bindQueryParameters(ps, query);
-                for (List<?> arguments : argumentLists) {
-                    bindArguments(ps, arguments);
-                    ps.addBatch();
+        int[] counts;
+        try {
+            counts = withCurrentTransaction(query, tx -> {
+                logQuery(query);
+
+                QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.BATCH_UPDATE, argumentLists.size());
+                try (PreparedStatement ps = tx.getConnection().prepareStatement(sql)) {
+                    execution.prepared();
+                    bindQueryParameters(ps, query, tx);
+                    for (List<?> arguments : argumentLists) {
+                        bindArguments(ps, arguments);
+                        ps.addBatch();
+                    }
+                    execution.bound();
+
+                    int[] result = ps.executeBatch();
+                    execution.executed(result);
+                    logQueryExecution(execution);
+                    execution.processed();
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    execution.failed(e);
+                    throw e;
                 }
-                long startTime = currentTimeMillis();
-                int[] counts = ps.executeBatch();
-                logQueryExecution(query, currentTimeMillis() - startTime);
-                return counts;
-            }
-        });
+            });
+        } finally {
+            argumentLists.forEach(this::closeArgumentsAfterExecution);
+        }
+
+        invalidateResultCache(sql);
+        return counts;
     }
 
     /**
@@ -719,41 +1456,151 @@ public final class Database {
                                                     @NotNull List<? extends List<?>> argumentLists) {
         SqlQuery query = SqlQuery.query(sql, "<batch-update>");
 
-        return withCurrentTransaction(query, tx -> {
-            logQuery(query);
-
-            try (PreparedStatement ps = prepareStatement(tx.getConnection(), sql, columnNames)) {
-                bindQueryParameters(ps, query);
-                for (List<?> arguments : argumentLists) {
-                    bindArguments(ps, arguments);
-                    ps.addBatch();
+        T keys;
+        try {
+            keys = withCurrentTransaction(query, tx -> {
+                logQuery(query);
+
+                QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.BATCH_UPDATE_WITH_GENERATED_KEYS, argumentLists.size());
+                try (PreparedStatement ps = prepareStatement(tx.getConnection(), sql, columnNames)) {
+                    execution.prepared();
+                    bindQueryParameters(ps, query, tx);
+                    for (List<?> arguments : argumentLists) {
+                        bindArguments(ps, arguments);
+                        ps.addBatch();
+                    }
+                    execution.bound();
+
+                    execution.executed(ps.executeBatch());
+                    logQueryExecution(execution);
+
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        T result = generatedKeysProcessor.process(execution.track(rs));
+                        execution.processed();
+                        return result;
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    execution.failed(e);
+                    throw e;
                 }
+            });
+        } finally {
+            argumentLists.forEach(this::closeArgumentsAfterExecution);
+        }
 
-                long startTime = currentTimeMillis();
-                ps.executeBatch();
-                logQueryExecution(query, currentTimeMillis() - startTime);
+        invalidateResultCache(sql);
+        return keys;
+    }
 
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    return generatedKeysProcessor.process(rs);
+    /**
+     * Executes a batch of updates with a {@code RETURNING} clause and converts the rows returned by all items
+     * of the batch to instances of given class using default mechanisms. The rows are read through
+     * {@link Statement#getGeneratedKeys()}, which the PostgreSQL driver implements by returning the
+     * rows of the {@code RETURNING} clause.
+     *
+     * @see #updateReturning(ResultSetProcessor, SqlQuery)
+     */
+    public @NotNull <T> List<T> updateBatchReturning(@NotNull Class<T> cl,
+                                                     @NotNull @SQL String sql,
+                                                     @NotNull List<? extends List<?>> argumentLists) {
+        return updateBatchAndProcessGeneratedKeys(resultProcessorForClass(cl), emptyList(), sql, argumentLists);
+    }
+
+    private void flushUpdateBuffer() {
+        UpdateBuffer buffer = updateBuffer.get();
+        if (buffer != null && !buffer.isEmpty())
+            executeBufferedUpdates(buffer.drain());
+    }
+
+    private void executeBufferedUpdates(@NotNull List<SqlQuery> queries) {
+        String sql = queries.get(0).getSql();
+        SqlQuery query = SqlQuery.query(sql, "<buffered-update>");
+
+        try {
+            withCurrentTransaction(query, tx -> {
+                logQuery(query);
+
+                QueryExecutionTracker execution = startExecution(query, QueryExecution.Type.BATCH_UPDATE, queries.size());
+                try (PreparedStatement ps = tx.getConnection().prepareStatement(sql)) {
+                    execution.prepared();
+                    bindQueryParameters(ps, queries.get(0), tx);
+                    for (SqlQuery bufferedQuery : queries) {
+                        bindArguments(ps, bufferedQuery.getArguments());
+                        ps.addBatch();
+                    }
+                    execution.bound();
+
+                    int[] result = ps.executeBatch();
+                    execution.executed(result);
+                    logQueryExecution(execution);
+                    execution.processed();
+                    return null;
+                } catch (BatchUpdateException e) {
+                    execution.failed(e);
+
+                    // Report the error for the update that caused it instead of the whole batch
+                    SqlQuery failedQuery = findFailedQuery(queries, e);
+                    if (failedQuery != null)
+                        DebugContext.setCurrentQuery(failedQuery);
+                    throw e;
+                } catch (SQLException | RuntimeException e) {
+                    execution.failed(e);
+                    throw e;
                 }
-            }
-        });
+            });
+        } finally {
+            for (SqlQuery bufferedQuery : queries)
+                closeArgumentsAfterExecution(bufferedQuery.getArguments());
+        }
+
+        invalidateResultCache(sql);
+    }
+
+    private static @Nullable SqlQuery findFailedQuery(@NotNull List<SqlQuery> queries, @NotNull BatchUpdateException e) {
+        int[] counts = e.getUpdateCounts();
+        if (counts == null)
+            return null;
+
+        // Drivers either stop at the first failure or continue and mark the failed items
+        for (int i = 0; i < counts.length && i < queries.size(); i++)
+            if (counts[i] == Statement.EXECUTE_FAILED)
+                return queries.get(i);
+
+        return counts.length < queries.size() ? queries.get(counts.length) : null;
+    }
+
+    private void invalidateResultCache(@NotNull String sql) {
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.invalidateForStatement(sql);
+
+            // Results loaded outside of the transaction while it's open may be cached again with old
+            // values, so the invalidation is repeated after the transaction has ended. This is done by the
+            // transaction manager, so that it works for transactions started outside of this database as well.
+            if (transactionManager.hasActiveTransaction())
+                transactionManager.afterCompletion(new CacheInvalidation(cache, sql));
+        }
     }
 
     private void logQuery(@NotNull SqlQuery query) {
         log.debug("executing query {}", query);
     }
 
-    private void logQueryExecution(@NotNull SqlQuery query, long millis) {
-        log.debug("executed query in {} ms: {}", millis, query);
+    private void logQueryExecution(@NotNull QueryExecution execution) {
+        if (log.isDebugEnabled())
+            log.debug("executed query in {} ms: {}", NANOSECONDS.toMillis(execution.getExecuteNanos()), execution.getQuery());
+    }
+
+    private @NotNull QueryExecutionTracker startExecution(@NotNull SqlQuery query, @NotNull QueryExecution.Type type, int batchSize) {
+        return new QueryExecutionTracker(query, type, batchSize, queryListeners);
     }
 
-    private void prepareStatementFromQuery(@NotNull PreparedStatement ps, @NotNull SqlQuery query) throws SQLException {
-        bindQueryParameters(ps, query);
+    private void prepareStatementFromQuery(@NotNull PreparedStatement ps, @NotNull SqlQuery query, @NotNull TransactionContext tx) throws SQLException {
+        bindQueryParameters(ps, query, tx);
         bindArguments(ps, query.getArguments());
     }
 
-    private static void bindQueryParameters(@NotNull PreparedStatement ps, @NotNull SqlQuery query) throws SQLException {
+    private void bindQueryParameters(@NotNull PreparedStatement ps, @NotNull SqlQuery query, @NotNull TransactionContext tx) throws SQLException {
         FetchDirection direction = query.getFetchDirection();
         if (direction != null)
             ps.setFetchDirection(direction.getJdcbCode());
@@ -761,6 +1608,33 @@ public final class Database {
         Integer fetchSize = query.getFetchSize();
         if (fetchSize != null)
             ps.setFetchSize(fetchSize);
+
+        Duration timeout = effectiveQueryTimeout(query, tx);
+        if (timeout != null)
+            ps.setQueryTimeout(SqlUtils.timeoutSeconds(timeout));
+
+        Integer maxRows = query.getMaxRows() != null ? query.getMaxRows() : defaultMaxRows;
+        if (maxRows != null)
+            ps.setMaxRows(maxRows);
+    }
+
+    /**
+     * Returns the timeout of the query, shortened to the remaining time of the transaction if the
+     * transaction has a deadline.
+     *
+     * @throws TransactionTimeoutException if the deadline of the transaction has already passed
+     */
+    private @Nullable Duration effectiveQueryTimeout(@NotNull SqlQuery query, @NotNull TransactionContext tx) {
+        Duration timeout = query.getQueryTimeout() != null ? query.getQueryTimeout() : defaultQueryTimeout;
+
+        Duration remaining = tx.getRemainingTime().orElse(null);
+        if (remaining == null)
+            return timeout;
+
+        if (remaining.isNegative() || remaining.isZero())
+            throw new TransactionTimeoutException("Transaction deadline exceeded by " + remaining.negated().toMillis() + " ms");
+
+        return (timeout == null || remaining.compareTo(timeout) < 0) ? remaining : timeout;
     }
 
     private void bindArguments(@NotNull PreparedStatement ps, @NotNull Iterable<?> args) throws SQLException {
@@ -774,10 +1648,95 @@ public final class Database {
         return rowMapperForClass(cl).list();
     }
 
-    private @NotNull <T> RowMapper<T> rowMapperForClass(@NotNull Class<T> cl) {
+    @NotNull <T> RowMapper<T> rowMapperForClass(@NotNull Class<T> cl) {
         return new InstantiatorRowMapper<>(cl, instantiatorRegistry);
     }
 
+    /**
+     * Registers a listener to be notified about all queries executed through this database.
+     */
+    public void addQueryListener(@NotNull QueryListener listener) {
+        queryListeners.add(requireNonNull(listener));
+    }
+
+    /**
+     * Removes a listener previously registered with {@link #addQueryListener(QueryListener)}.
+     */
+    public void removeQueryListener(@NotNull QueryListener listener) {
+        queryListeners.remove(listener);
+    }
+
+    /**
+     * Returns the cache used for results of cacheable queries, or null if caching is disabled.
+     */
+    public @Nullable ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the cache used for results of cacheable queries. Null disables caching, which is the default.
+     *
+     * @see SqlQuery#setCacheDependencies(Set)
+     */
+    public void setResultCache(@Nullable ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Returns the aggregate statistics of statements executed while statistics were enabled.
+     *
+     * @see #setStatisticsEnabled(boolean)
+     */
+    public @NotNull QueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns true if statistics of executed statements are collected.
+     */
+    public boolean isStatisticsEnabled() {
+        return queryListeners.contains(statistics);
+    }
+
+    /**
+     * Enables or disables collecting statistics of executed statements. Statistics are disabled by default.
+     * Disabling does not clear collected statistics.
+     *
+     * @see #getStatistics()
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        if (statisticsEnabled)
+            queryListeners.addIfAbsent(statistics);
+        else
+            queryListeners.remove(statistics);
+    }
+
+    /**
+     * Returns true if concurrent executions of identical queries are coalesced.
+     */
+    public boolean isQueryCoalescingEnabled() {
+        return queryCoalescingEnabled;
+    }
+
+    /**
+     * Enables or disables coalescing concurrent executions of identical queries. When enabled, the typed
+     * {@code findAll}, {@code findUnique}, {@code findOptional} and {@code findMap} methods executed outside of
+     * transactions share the result of an identical query already in flight instead of executing the query again.
+     * Queries are identical if their SQL, arguments, maximum rows and result type are equal. Since the values of
+     * the result are shared, only queries producing immutable values such as strings, numbers and dates are
+     * coalesced, and each caller receives a list or map of its own. Coalescing is disabled by default.
+     */
+    public void setQueryCoalescingEnabled(boolean queryCoalescingEnabled) {
+        this.queryCoalescingEnabled = queryCoalescingEnabled;
+    }
+
+    /**
+     * Returns the dialect of the database.
+     */
+    public @NotNull Dialect getDialect() {
+        return dialect;
+    }
+
     /**
      * Returns {@link TypeConversionRegistry} that can be used to register new type-conversions.
      */
@@ -785,6 +1744,46 @@ public final class Database {
         return instantiatorRegistry.getTypeConversionRegistry();
     }
 
+    /**
+     * Returns the query timeout used for queries that don't specify their own timeout.
+     */
+    public @Nullable Duration getDefaultQueryTimeout() {
+        return defaultQueryTimeout;
+    }
+
+    /**
+     * Sets the query timeout used for queries that don't specify their own timeout. Null means
+     * that no timeout is set, which is the default.
+     *
+     * @throws IllegalArgumentException if timeout is not positive
+     * @see SqlQuery#setQueryTimeout(Duration)
+     */
+    public void setDefaultQueryTimeout(@Nullable Duration defaultQueryTimeout) {
+        if (defaultQueryTimeout != null && (defaultQueryTimeout.isNegative() || defaultQueryTimeout.isZero()))
+            throw new IllegalArgumentException("Illegal query timeout " + defaultQueryTimeout + ". Timeout must be null or positive");
+        this.defaultQueryTimeout = defaultQueryTimeout;
+    }
+
+    /**
+     * Returns the maximum amount of rows for queries that don't specify their own limit.
+     */
+    public @Nullable Integer getDefaultMaxRows() {
+        return defaultMaxRows;
+    }
+
+    /**
+     * Sets the maximum amount of rows for queries that don't specify their own limit. Null means
+     * that the driver default is used, which is the default.
+     *
+     * @throws IllegalArgumentException if maxRows is < 0
+     * @see SqlQuery#setMaxRows(Integer)
+     */
+    public void setDefaultMaxRows(@Nullable Integer defaultMaxRows) {
+        if (defaultMaxRows != null && defaultMaxRows < 0)
+            throw new IllegalArgumentException("Illegal max rows " + defaultMaxRows + ". Max rows must be null or >= 0");
+        this.defaultMaxRows = defaultMaxRows;
+    }
+
     /**
      * If flag is set to true (by default it's false) queries without active transaction will
      * not throw exception but will start a fresh transaction.
@@ -808,4 +1807,37 @@ public final class Database {
     public @NotNull String toString() {
         return "Database [dialect=" + dialect + ", allowImplicitTransactions=" + allowImplicitTransactions + ']';
     }
+
+    /**
+     * Invalidates the results of a statement. Equal to invalidations of the same statement, so that
+     * a transaction executing the same statement repeatedly invalidates the results only once after completion.
+     */
+    private static final class CacheInvalidation implements Runnable {
+
+        private final @NotNull ResultCache cache;
+
+        private final @NotNull String sql;
+
+        CacheInvalidation(@NotNull ResultCache cache, @NotNull String sql) {
+            this.cache = cache;
+            this.sql = sql;
+        }
+
+        @Override
+        public void run() {
+            cache.invalidateForStatement(sql);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheInvalidation)) return false;
+            CacheInvalidation other = (CacheInvalidation) obj;
+            return cache == other.cache && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(cache) * 31 + sql.hashCode();
+        }
+    }
 }
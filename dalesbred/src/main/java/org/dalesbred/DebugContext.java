@@ -23,19 +23,84 @@
 package org.dalesbred;
 
 import org.dalesbred.query.SqlQuery;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.function.Supplier;
+
 final class DebugContext {
 
-    private static final ThreadLocal<SqlQuery> currentQuery = new ThreadLocal<>();
+    private static final ThreadLocal<QueryHolder> queryHolder = ThreadLocal.withInitial(QueryHolder::new);
 
     private DebugContext() { }
 
     static @Nullable SqlQuery getCurrentQuery() {
-        return currentQuery.get();
+        return queryHolder.get().currentQuery;
     }
 
     static void setCurrentQuery(@Nullable SqlQuery query) {
-        currentQuery.set(query);
+        QueryHolder holder = queryHolder.get();
+        holder.currentQuery = query;
+        if (query != null && holder.watchers != 0)
+            holder.lastQuery = query;
+    }
+
+    /**
+     * Returns the holder for the queries of current thread, which can be read from other threads.
+     */
+    static @NotNull QueryHolder getQueryHolder() {
+        return queryHolder.get();
+    }
+
+    /**
+     * Executes given action with given holder bound to the current thread, so that the queries of a task
+     * propagated to another thread are recorded in the holder of the thread that started the transaction.
+     */
+    static <T> T withQueryHolder(@NotNull QueryHolder holder, @NotNull Supplier<T> action) {
+        QueryHolder previous = queryHolder.get();
+        queryHolder.set(holder);
+        try {
+            return action.get();
+        } finally {
+            queryHolder.set(previous);
+        }
+    }
+
+    static final class QueryHolder {
+
+        private volatile @Nullable SqlQuery currentQuery;
+
+        /**
+         * The last query is retained only while a transaction of the thread is being watched,
+         * so that queries and their arguments are not kept alive by idle threads.
+         */
+        private volatile @Nullable SqlQuery lastQuery;
+
+        /** Amount of watched transactions of the owning thread, modified only by that thread or its propagated tasks */
+        private volatile int watchers;
+
+        /**
+         * Returns the query being executed, or the last executed query if no query is being executed.
+         */
+        @Nullable SqlQuery getQuery() {
+            SqlQuery query = currentQuery;
+            return query != null ? query : lastQuery;
+        }
+
+        /**
+         * Starts retaining the last query, forgetting the queries of earlier transactions.
+         */
+        void startWatching() {
+            if (watchers++ == 0)
+                lastQuery = null;
+        }
+
+        /**
+         * Stops retaining the last query when no transaction of the thread is watched anymore.
+         */
+        void stopWatching() {
+            if (--watchers == 0)
+                lastQuery = null;
+        }
     }
 }
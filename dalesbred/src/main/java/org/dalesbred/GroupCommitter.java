@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.transaction.Propagation;
+import org.dalesbred.transaction.TransactionCallback;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Executes small write transactions of concurrent callers in shared transactions, so that the cost of
+ * a commit is paid once per group instead of once per caller. Each callback is executed in a nested
+ * transaction of the group, so a failing callback rolls back only its own changes. The future of a
+ * callback completes after the group has been committed, or exceptionally if the callback or the commit
+ * fails.
+ *
+ * <p>A group is committed when it is full or when the maximum delay has elapsed since its first callback
+ * was submitted. Since callbacks share a transaction, they should be short and must not depend on
+ * seeing changes of other transactions that are not yet committed. The callbacks are executed
+ * sequentially in a single background thread, which is stopped by {@link #close()}.
+ */
+public final class GroupCommitter implements AutoCloseable {
+
+    private final @NotNull Database db;
+
+    private final int maxGroupSize;
+
+    private final long maxDelayNanos;
+
+    private final @NotNull BlockingQueue<Task<?>> queue;
+
+    private final @NotNull Thread worker;
+
+    private final @NotNull LongAdder committedGroups = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    /** Marker for stopping the worker thread */
+    private static final @NotNull Task<Void> STOP = new Task<>(tx -> null);
+
+    private GroupCommitter(@NotNull Builder builder) {
+        this.db = builder.db;
+        this.maxGroupSize = builder.maxGroupSize;
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.queue = new LinkedBlockingQueue<>(builder.queueCapacity);
+        this.worker = new Thread(this::run, builder.threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static @NotNull Builder builder(@NotNull Database db) {
+        return new Builder(db);
+    }
+
+    /**
+     * Submits a callback to be executed in the next group. If the queue of waiting callbacks is full or
+     * the committer has been closed, the returned future completes exceptionally with
+     * {@link RejectedExecutionException}.
+     */
+    public @NotNull <T> CompletableFuture<T> submit(@NotNull TransactionCallback<T> callback) {
+        Task<T> task = new Task<>(requireNonNull(callback));
+        if (closed)
+            task.future.completeExceptionally(new RejectedExecutionException("GroupCommitter is closed"));
+        else if (!queue.offer(task))
+            task.future.completeExceptionally(new RejectedExecutionException("queue of GroupCommitter is full"));
+        return task.future;
+    }
+
+    /**
+     * Returns the amount of callbacks waiting to be executed.
+     */
+    public int getQueuedTaskCount() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the amount of groups committed so far.
+     */
+    public long getCommittedGroupCount() {
+        return committedGroups.sum();
+    }
+
+    /**
+     * Stops accepting new callbacks and waits until the already submitted callbacks have been committed.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!closed) {
+                closed = true;
+                queue.put(STOP);
+            }
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Task<?>> group = new ArrayList<>(maxGroupSize);
+        try {
+            boolean stopped = false;
+            while (!stopped) {
+                Task<?> first = queue.take();
+                if (first == STOP)
+                    break;
+
+                group.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxGroupSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Task<?> task = remaining > 0 ? queue.poll(remaining, NANOSECONDS) : queue.poll();
+                    if (task == null)
+                        break;
+                    if (task == STOP) {
+                        stopped = true;
+                        break;
+                    }
+                    group.add(task);
+                }
+
+                executeGroup(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Reject the callbacks that raced with close() or were waiting when the thread was interrupted
+            RejectedExecutionException rejected = new RejectedExecutionException("GroupCommitter is closed");
+            for (Task<?> task : group)
+                task.future.completeExceptionally(rejected);
+            for (Task<?> task = queue.poll(); task != null; task = queue.poll())
+                task.future.completeExceptionally(rejected);
+        }
+    }
+
+    private void executeGroup(@NotNull List<Task<?>> group) {
+        List<Task<?>> succeeded = new ArrayList<>(group.size());
+        try {
+            db.withTransaction(Propagation.REQUIRED, tx -> {
+                for (Task<?> task : group)
+                    if (task.executeNested(db))
+                        succeeded.add(task);
+                return null;
+            });
+        } catch (Throwable e) {
+            // The group may have failed before or in the middle of executing the callbacks,
+            // so fail every task that has not already been completed by its own failure.
+            for (Task<?> task : group)
+                task.future.completeExceptionally(e);
+            return;
+        }
+
+        committedGroups.increment();
+        for (Task<?> task : succeeded)
+            task.complete();
+    }
+
+    private static final class Task<T> {
+
+        private final @NotNull TransactionCallback<T> callback;
+
+        private final @NotNull CompletableFuture<T> future = new CompletableFuture<>();
+
+        private @Nullable T result;
+
+        Task(@NotNull TransactionCallback<T> callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * Executes the callback in a nested transaction, returning true if it succeeded. Exceptions
+         * complete the future immediately, since the changes have already been rolled back. Errors
+         * are propagated to fail the whole group.
+         */
+        boolean executeNested(@NotNull Database db) {
+            try {
+                result = db.withTransaction(Propagation.NESTED, callback);
+                return true;
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return false;
+            }
+        }
+
+        void complete() {
+            future.complete(result);
+        }
+    }
+
+    public static final class Builder {
+
+        private final @NotNull Database db;
+
+        private int maxGroupSize = 100;
+
+        private @NotNull Duration maxDelay = Duration.ofMillis(5);
+
+        private int queueCapacity = 10000;
+
+        private @NotNull String threadName = "dalesbred-group-commit";
+
+        private Builder(@NotNull Database db) {
+            this.db = requireNonNull(db);
+        }
+
+        /**
+         * Sets the maximum amount of callbacks executed in a single transaction. The default is 100.
+         */
+        public @NotNull Builder maxGroupSize(int maxGroupSize) {
+            if (maxGroupSize <= 0)
+                throw new IllegalArgumentException("maxGroupSize must be positive, but was " + maxGroupSize);
+            this.maxGroupSize = maxGroupSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time that the first callback of a group waits for other callbacks
+         * before the group is executed. The default is 5 milliseconds.
+         */
+        public @NotNull Builder maxDelay(@NotNull Duration maxDelay) {
+            if (maxDelay.isNegative())
+                throw new IllegalArgumentException("maxDelay must not be negative, but was " + maxDelay);
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of callbacks waiting to be executed. Callbacks submitted when the queue
+         * is full are rejected. The default is 10000.
+         */
+        public @NotNull Builder queueCapacity(int queueCapacity) {
+            if (queueCapacity <= 0)
+                throw new IllegalArgumentException("queueCapacity must be positive, but was " + queueCapacity);
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the name of the background thread. The default is {@code "dalesbred-group-commit"}.
+         */
+        public @NotNull Builder threadName(@NotNull String threadName) {
+            this.threadName = requireNonNull(threadName);
+            return this;
+        }
+
+        public @NotNull GroupCommitter build() {
+            return new GroupCommitter(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.query.SqlQuery;
+import org.dalesbred.result.EmptyResultException;
+import org.dalesbred.result.NonUniqueResultException;
+import org.dalesbred.result.ResultSetProcessor;
+import org.dalesbred.result.RowMapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collects several queries to be executed together. On databases that support multiple statements in a single
+ * {@link java.sql.PreparedStatement} (see {@link org.dalesbred.dialect.Dialect#supportsMultipleStatements()}),
+ * the queries are sent to the database in a single round trip. On other databases they are executed one after
+ * another in the same transaction.
+ *
+ * <pre>
+ * Pipeline pipeline = db.pipeline();
+ * Supplier&lt;List&lt;Employee&gt;&gt; employees = pipeline.findAll(Employee.class, query("select * from employee"));
+ * Supplier&lt;Department&gt; department = pipeline.findUnique(Department.class, query("select * from department where id=?", id));
+ * pipeline.execute();
+ * </pre>
+ *
+ * <p>Since the queries are combined to a single statement, only the database-wide defaults for query
+ * timeout and max rows apply to them: the settings of individual queries are ignored.
+ *
+ * @see Database#pipeline()
+ */
+public final class Pipeline {
+
+    private final @NotNull Database db;
+
+    private final @NotNull List<SqlQuery> queries = new ArrayList<>();
+
+    private final @NotNull List<ResultSetProcessor<?>> processors = new ArrayList<>();
+
+    private final @NotNull List<PipelinedResult<?>> results = new ArrayList<>();
+
+    private boolean executed = false;
+
+    Pipeline(@NotNull Database db) {
+        this.db = requireNonNull(db);
+    }
+
+    /**
+     * Adds a query whose results are processed with given {@link ResultSetProcessor}. The returned
+     * supplier provides the result after the pipeline has been executed.
+     */
+    public @NotNull <T> Supplier<T> add(@NotNull ResultSetProcessor<T> processor, @NotNull SqlQuery query) {
+        if (executed) throw new IllegalStateException("pipeline has already been executed");
+
+        PipelinedResult<T> result = new PipelinedResult<>();
+        queries.add(requireNonNull(query));
+        processors.add(requireNonNull(processor));
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Adds a query whose rows are converted with given {@link RowMapper}.
+     */
+    public @NotNull <T> Supplier<List<T>> findAll(@NotNull RowMapper<T> rowMapper, @NotNull SqlQuery query) {
+        return add(rowMapper.list(), query);
+    }
+
+    /**
+     * Adds a query whose rows are converted to instances of given class using default mechanisms.
+     */
+    public @NotNull <T> Supplier<List<T>> findAll(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return findAll(db.rowMapperForClass(cl), query);
+    }
+
+    /**
+     * Adds a query that returns a single row, which is converted to instance of given class using
+     * default mechanisms. If the query does not return exactly one row, {@link #execute()} throws
+     * {@link NonUniqueResultException} or {@link EmptyResultException}.
+     */
+    public @NotNull <T> Supplier<T> findUnique(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return add(db.rowMapperForClass(cl).unique(), query);
+    }
+
+    /**
+     * Executes all added queries and makes their results available through the returned suppliers.
+     *
+     * @throws IllegalStateException if the pipeline has already been executed or if it is empty
+     */
+    public void execute() {
+        if (executed) throw new IllegalStateException("pipeline has already been executed");
+        if (queries.isEmpty()) throw new IllegalStateException("no queries to execute");
+
+        executed = true;
+        List<Object> values = db.executePipeline(queries, processors);
+        for (int i = 0; i < values.size(); i++)
+            results.get(i).complete(values.get(i));
+    }
+
+    private static final class PipelinedResult<T> implements Supplier<T> {
+
+        private boolean completed = false;
+
+        private T value;
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value) {
+            this.value = (T) value;
+            this.completed = true;
+        }
+
+        @Override
+        public T get() {
+            if (!completed) throw new IllegalStateException("pipeline has not been executed");
+            return value;
+        }
+    }
+}
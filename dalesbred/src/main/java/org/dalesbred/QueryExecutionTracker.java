@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.internal.jdbc.RowCountingResultSet;
+import org.dalesbred.monitoring.QueryExecution;
+import org.dalesbred.monitoring.QueryListener;
+import org.dalesbred.query.SqlQuery;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks the phases of a single execution and notifies registered {@link QueryListener}s about them.
+ */
+final class QueryExecutionTracker implements QueryExecution {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryExecutionTracker.class);
+
+    private final @NotNull SqlQuery query;
+
+    private final @NotNull Type type;
+
+    private final int batchSize;
+
+    private final @NotNull List<QueryListener> listeners;
+
+    private final long startTime = nanoTime();
+
+    private long lastMark = startTime;
+
+    private long prepareNanos;
+
+    private long bindNanos;
+
+    private long executeNanos;
+
+    private long processNanos;
+
+    private long returnedRows;
+
+    private long affectedRows;
+
+    private boolean finished;
+
+    private @Nullable RowCountingResultSet resultSet;
+
+    QueryExecutionTracker(@NotNull SqlQuery query, @NotNull Type type, int batchSize, @NotNull List<QueryListener> listeners) {
+        this.query = requireNonNull(query);
+        this.type = requireNonNull(type);
+        this.batchSize = batchSize;
+        this.listeners = requireNonNull(listeners);
+    }
+
+    void prepared() {
+        prepareNanos = mark();
+    }
+
+    void bound() {
+        bindNanos = mark();
+        notifyListeners(listener -> listener.beforeExecution(this));
+    }
+
+    void executed() {
+        executeNanos = mark();
+        notifyListeners(listener -> listener.afterExecution(this));
+    }
+
+    void executed(int updateCount) {
+        if (updateCount >= 0)
+            affectedRows = updateCount;
+        executed();
+    }
+
+    void executed(@NotNull int[] updateCounts) {
+        for (int count : updateCounts)
+            if (count >= 0)
+                affectedRows += count;
+        executed();
+    }
+
+    /**
+     * Returns given result set wrapped so that fetched rows are counted. Counting is only
+     * done when there are listeners interested in it. If the statement returns several
+     * result sets, the rows of all of them are counted.
+     */
+    @NotNull
+    ResultSet track(@NotNull ResultSet rs) {
+        if (listeners.isEmpty())
+            return rs;
+
+        if (resultSet != null)
+            returnedRows += resultSet.getRowCount();
+        resultSet = new RowCountingResultSet(rs);
+        return resultSet;
+    }
+
+    void processed() {
+        processNanos = mark();
+        if (resultSet != null)
+            returnedRows += resultSet.getRowCount();
+        finished = true;
+        notifyListeners(listener -> listener.afterResultProcessing(this));
+    }
+
+    void failed(@NotNull Throwable exception) {
+        if (finished)
+            return;
+
+        mark();
+        finished = true;
+        notifyListeners(listener -> listener.onError(this, exception));
+    }
+
+    private long mark() {
+        long now = nanoTime();
+        long elapsed = now - lastMark;
+        lastMark = now;
+        return elapsed;
+    }
+
+    private void notifyListeners(@NotNull Consumer<QueryListener> callback) {
+        for (QueryListener listener : listeners) {
+            try {
+                callback.accept(listener);
+            } catch (RuntimeException e) {
+                log.warn("QueryListener " + listener + " threw exception", e);
+            }
+        }
+    }
+
+    @Override
+    public @NotNull SqlQuery getQuery() {
+        return query;
+    }
+
+    @Override
+    public @NotNull Type getType() {
+        return type;
+    }
+
+    @Override
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    @Override
+    public long getBindNanos() {
+        return bindNanos;
+    }
+
+    @Override
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    @Override
+    public long getProcessNanos() {
+        return processNanos;
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return lastMark - startTime;
+    }
+
+    @Override
+    public long getReturnedRows() {
+        return returnedRows;
+    }
+
+    @Override
+    public long getAffectedRows() {
+        return affectedRows;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "QueryExecution [type=" + type + ", totalNanos=" + getTotalNanos() + ", query=" + query + ']';
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.annotation.SQL;
+import org.dalesbred.connection.ConnectionProvider;
+import org.dalesbred.conversion.TypeConversionRegistry;
+import org.dalesbred.dialect.Dialect;
+import org.dalesbred.internal.utils.Throwables;
+import org.dalesbred.query.SqlQuery;
+import org.dalesbred.result.RowMapper;
+import org.dalesbred.transaction.TransactionSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Facade for data that is partitioned across several databases. Operations on a single key are routed to
+ * the shard selected by the shard function, while scatter-gather queries are executed on all shards in
+ * parallel and their results are merged.
+ *
+ * <p>Shards added as {@link ConnectionProvider}s share the dialect, instantiators and type conversions of the
+ * first shard, so mapping metadata is built only once and type conversions registered through
+ * {@link #getTypeConversionRegistry()} apply to all of them.
+ *
+ * <p>Scatter-gather queries are executed in a thread pool that is shut down by {@link #close()}. If a shard
+ * timeout is configured, each shard executes the query in a transaction with the timeout, so that the remaining
+ * time is set as the query timeout of its statements and the database cancels queries that take too long.
+ *
+ * @param <K> type of the shard keys
+ */
+public final class ShardedDatabase<K> implements AutoCloseable {
+
+    private final @NotNull List<Database> shards;
+
+    private final @NotNull ToIntFunction<? super K> shardFunction;
+
+    private final @Nullable Duration shardTimeout;
+
+    private final @NotNull ExecutorService executor;
+
+    private ShardedDatabase(@NotNull Builder<K> builder) {
+        this.shards = unmodifiableList(new ArrayList<>(builder.shards));
+        int shardCount = shards.size();
+        this.shardFunction = builder.shardFunction != null ? builder.shardFunction : key -> Math.floorMod(key.hashCode(), shardCount);
+        this.shardTimeout = builder.shardTimeout;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        int threads = builder.threads != 0 ? builder.threads : shards.size();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dalesbred-shard-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static @NotNull <K> Builder<K> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the shards in order of their indices.
+     */
+    public @NotNull List<Database> getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the shard for given key.
+     *
+     * @throws IllegalStateException if the shard function returns an index that is out of bounds
+     */
+    public @NotNull Database shardFor(@NotNull K key) {
+        int index = shardFunction.applyAsInt(key);
+        if (index < 0 || index >= shards.size())
+            throw new IllegalStateException("shard function returned index " + index + " for key " + key + ", but there are " + shards.size() + " shards");
+        return shards.get(index);
+    }
+
+    /**
+     * Returns the registry of type conversions shared by the shards that were added as connection providers.
+     */
+    public @NotNull TypeConversionRegistry getTypeConversionRegistry() {
+        return shards.get(0).getTypeConversionRegistry();
+    }
+
+    /**
+     * Executes given function on all shards in parallel and returns the results in order of the shards.
+     * If a shard timeout is configured, the function is executed in a transaction with the timeout.
+     *
+     * @throws ShardTimeoutException if a shard does not complete within the shard timeout
+     * @see TransactionSettings#setTimeout(Duration)
+     */
+    public @NotNull <T> List<T> scatter(@NotNull Function<Database, T> function) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        try {
+            for (Database shard : shards)
+                futures.add(executor.submit(() -> executeOnShard(shard, function)));
+
+            long deadline = shardTimeout != null ? System.nanoTime() + shardTimeout.toNanos() : 0;
+            List<T> results = new ArrayList<>(shards.size());
+            for (int i = 0; i < futures.size(); i++) {
+                Future<T> future = futures.get(i);
+                try {
+                    results.add(shardTimeout != null ? future.get(deadline - System.nanoTime(), NANOSECONDS) : future.get());
+                } catch (TimeoutException e) {
+                    throw new ShardTimeoutException("shard " + i + " did not complete within " + shardTimeout);
+                } catch (ExecutionException e) {
+                    throw Throwables.propagate(e.getCause());
+                }
+            }
+            return results;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted while waiting for shards", e);
+        } finally {
+            for (Future<T> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private <T> T executeOnShard(@NotNull Database shard, @NotNull Function<Database, T> function) {
+        if (shardTimeout == null)
+            return function.apply(shard);
+
+        // Unlike cancelling the future, a query timeout makes the database stop executing the query
+        TransactionSettings settings = new TransactionSettings();
+        settings.setTimeout(shardTimeout);
+        return shard.withTransaction(settings, tx -> function.apply(shard));
+    }
+
+    /**
+     * Executes a query on all shards in parallel and concatenates the results in order of the shards.
+     */
+    public @NotNull <T> List<T> findAll(@NotNull RowMapper<T> rowMapper, @NotNull SqlQuery query) {
+        return concat(scatter(db -> db.findAll(rowMapper, query)));
+    }
+
+    /**
+     * Executes a query on all shards in parallel and concatenates the results in order of the shards.
+     */
+    public @NotNull <T> List<T> findAll(@NotNull Class<T> cl, @NotNull SqlQuery query) {
+        return concat(scatter(db -> db.findAll(cl, query)));
+    }
+
+    /**
+     * Executes a query on all shards in parallel and concatenates the results in order of the shards.
+     */
+    public @NotNull <T> List<T> findAll(@NotNull Class<T> cl, @NotNull @SQL String sql, Object... args) {
+        return findAll(cl, SqlQuery.query(sql, args));
+    }
+
+    /**
+     * Executes a query on all shards in parallel and merges the results using given comparator.
+     * The query should return the rows of each shard sorted in the same order as the comparator, so
+     * that the results can be merged without sorting them again.
+     */
+    public @NotNull <T> List<T> findAllOrdered(@NotNull RowMapper<T> rowMapper, @NotNull Comparator<? super T> comparator, @NotNull SqlQuery query) {
+        return mergeSorted(scatter(db -> db.findAll(rowMapper, query)), comparator);
+    }
+
+    /**
+     * Executes a query on all shards in parallel and merges the results using given comparator.
+     * The query should return the rows of each shard sorted in the same order as the comparator, so
+     * that the results can be merged without sorting them again.
+     */
+    public @NotNull <T> List<T> findAllOrdered(@NotNull Class<T> cl, @NotNull Comparator<? super T> comparator, @NotNull SqlQuery query) {
+        return mergeSorted(scatter(db -> db.findAll(cl, query)), comparator);
+    }
+
+    /**
+     * Executes a query on all shards in parallel and merges the results using given comparator.
+     *
+     * @see #findAllOrdered(Class, Comparator, SqlQuery)
+     */
+    public @NotNull <T> List<T> findAllOrdered(@NotNull Class<T> cl, @NotNull Comparator<? super T> comparator, @NotNull @SQL String sql, Object... args) {
+        return findAllOrdered(cl, comparator, SqlQuery.query(sql, args));
+    }
+
+    /**
+     * Stops the thread pool used for scatter-gather queries.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static @NotNull <T> List<T> concat(@NotNull List<List<T>> lists) {
+        List<T> result = new ArrayList<>(totalSize(lists));
+        for (List<T> list : lists)
+            result.addAll(list);
+        return result;
+    }
+
+    private static int totalSize(@NotNull List<? extends List<?>> lists) {
+        int size = 0;
+        for (List<?> list : lists)
+            size += list.size();
+        return size;
+    }
+
+    /**
+     * Merges lists that are sorted by given comparator into a single sorted list. Elements of
+     * earlier lists come first when they compare equal.
+     */
+    static @NotNull <T> List<T> mergeSorted(@NotNull List<List<T>> lists, @NotNull Comparator<? super T> comparator) {
+        List<T> result = new ArrayList<>(totalSize(lists));
+
+        PriorityQueue<Cursor<T>> queue = new PriorityQueue<>(Math.max(1, lists.size()), (c1, c2) -> {
+            int comparison = comparator.compare(c1.current(), c2.current());
+            return comparison != 0 ? comparison : Integer.compare(c1.index, c2.index);
+        });
+        for (int i = 0; i < lists.size(); i++)
+            if (!lists.get(i).isEmpty())
+                queue.add(new Cursor<>(i, lists.get(i)));
+
+        while (!queue.isEmpty()) {
+            Cursor<T> cursor = queue.poll();
+            result.add(cursor.current());
+            if (cursor.advance())
+                queue.add(cursor);
+        }
+        return result;
+    }
+
+    private static final class Cursor<T> {
+
+        private final int index;
+
+        private final @NotNull List<T> list;
+
+        private int position = 0;
+
+        Cursor(int index, @NotNull List<T> list) {
+            this.index = index;
+            this.list = list;
+        }
+
+        T current() {
+            return list.get(position);
+        }
+
+        boolean advance() {
+            return ++position < list.size();
+        }
+    }
+
+    public static final class Builder<K> {
+
+        private final @NotNull List<Database> shards = new ArrayList<>();
+
+        private @Nullable Dialect dialect;
+
+        private @Nullable ToIntFunction<? super K> shardFunction;
+
+        private @Nullable Duration shardTimeout;
+
+        private int threads = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a shard using given connection provider. The shard shares the dialect, instantiators and type
+         * conversions of the first shard.
+         */
+        public @NotNull Builder<K> addShard(@NotNull ConnectionProvider connectionProvider) {
+            if (shards.isEmpty())
+                shards.add(dialect != null ? new Database(connectionProvider, dialect) : new Database(connectionProvider));
+            else
+                shards.add(shards.get(0).withConnectionProvider(connectionProvider));
+            return this;
+        }
+
+        /**
+         * Adds an existing database as a shard. The database keeps its own instantiators and type conversions.
+         */
+        public @NotNull Builder<K> addShard(@NotNull Database database) {
+            shards.add(requireNonNull(database));
+            return this;
+        }
+
+        /**
+         * Sets the dialect of shards added as connection providers. By default, the dialect is detected.
+         * Must be set before the first shard is added.
+         */
+        public @NotNull Builder<K> dialect(@NotNull Dialect dialect) {
+            if (!shards.isEmpty())
+                throw new IllegalStateException("dialect must be set before shards are added");
+            this.dialect = requireNonNull(dialect);
+            return this;
+        }
+
+        /**
+         * Sets the function for mapping keys to indices of shards. By default, the hash code of the key
+         * modulo the amount of shards is used.
+         */
+        public @NotNull Builder<K> shardFunction(@NotNull ToIntFunction<? super K> shardFunction) {
+            this.shardFunction = requireNonNull(shardFunction);
+            return this;
+        }
+
+        /**
+         * Sets the maximum time to wait for the shards to complete a scatter-gather query. The timeout is also
+         * used as the deadline of the transaction executing the query on each shard, so that the database
+         * cancels its statements when the time runs out. By default, there is no limit.
+         */
+        public @NotNull Builder<K> shardTimeout(@Nullable Duration shardTimeout) {
+            if (shardTimeout != null && (shardTimeout.isNegative() || shardTimeout.isZero()))
+                throw new IllegalArgumentException("shardTimeout must be positive, but was " + shardTimeout);
+            this.shardTimeout = shardTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the amount of threads for executing scatter-gather queries. By default, there is one thread for each shard.
+         */
+        public @NotNull Builder<K> threads(int threads) {
+            if (threads <= 0)
+                throw new IllegalArgumentException("threads must be positive, but was " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        public @NotNull ShardedDatabase<K> build() {
+            if (shards.isEmpty())
+                throw new IllegalStateException("no shards were added");
+            return new ShardedDatabase<>(this);
+        }
+    }
+}
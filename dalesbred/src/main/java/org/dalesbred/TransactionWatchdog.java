@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.monitoring.TransactionExecution;
+import org.dalesbred.monitoring.TransactionListener;
+import org.dalesbred.query.SqlQuery;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Detects transactions that hold their connection longer than a threshold. Each such transaction is reported
+ * once, together with the query it is executing or the last query it executed, which helps diagnosing pool
+ * starvation. By default, the transactions are logged as warnings.
+ *
+ * <p>The watchdog is a {@link TransactionListener} that should be registered with
+ * {@link org.dalesbred.transaction.DefaultTransactionManager#addTransactionListener(TransactionListener)}.
+ * Its background thread is stopped by {@link #close()}.
+ */
+public final class TransactionWatchdog implements TransactionListener, AutoCloseable {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(TransactionWatchdog.class);
+
+    private final long thresholdNanos;
+
+    private final @NotNull BiConsumer<TransactionExecution, SqlQuery> handler;
+
+    private final @NotNull Map<TransactionExecution, ActiveTransaction> activeTransactions = new ConcurrentHashMap<>();
+
+    private final @NotNull ScheduledExecutorService scheduler;
+
+    private TransactionWatchdog(@NotNull Builder builder) {
+        this.thresholdNanos = builder.threshold.toNanos();
+        this.handler = builder.handler;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dalesbred-transaction-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long intervalNanos = builder.checkInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::check, intervalNanos, intervalNanos, NANOSECONDS);
+    }
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void afterBegin(@NotNull TransactionExecution execution) {
+        DebugContext.QueryHolder queries = DebugContext.getQueryHolder();
+        queries.startWatching();
+        activeTransactions.put(execution, new ActiveTransaction(queries));
+    }
+
+    @Override
+    public void afterCompletion(@NotNull TransactionExecution execution) {
+        ActiveTransaction transaction = activeTransactions.remove(execution);
+        if (transaction != null)
+            transaction.queries.stopWatching();
+    }
+
+    /**
+     * Returns the amount of transactions currently being watched.
+     */
+    public int getActiveTransactionCount() {
+        return activeTransactions.size();
+    }
+
+    /**
+     * Checks the active transactions, reporting the ones that have exceeded the threshold.
+     * This is called periodically by the background thread.
+     */
+    void check() {
+        for (Map.Entry<TransactionExecution, ActiveTransaction> entry : activeTransactions.entrySet()) {
+            TransactionExecution execution = entry.getKey();
+            ActiveTransaction transaction = entry.getValue();
+            if (!transaction.reported && execution.getHoldNanos() > thresholdNanos) {
+                transaction.reported = true;
+                try {
+                    handler.accept(execution, transaction.queries.getQuery());
+                } catch (RuntimeException e) {
+                    log.warn("handler of long transaction threw exception", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static void logLongTransaction(@NotNull TransactionExecution execution, @Nullable SqlQuery query) {
+        log.warn("transaction of thread {} has held its connection for {} ms, query: {}",
+                execution.getThread().getName(), NANOSECONDS.toMillis(execution.getHoldNanos()), query);
+    }
+
+    private static final class ActiveTransaction {
+
+        private final @NotNull DebugContext.QueryHolder queries;
+
+        /** Accessed only by the background thread */
+        private boolean reported = false;
+
+        ActiveTransaction(@NotNull DebugContext.QueryHolder queries) {
+            this.queries = queries;
+        }
+    }
+
+    public static final class Builder {
+
+        private @NotNull Duration threshold = Duration.ofSeconds(30);
+
+        private @NotNull Duration checkInterval = Duration.ofSeconds(1);
+
+        private @NotNull BiConsumer<TransactionExecution, SqlQuery> handler = TransactionWatchdog::logLongTransaction;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the time after which a transaction holding its connection is reported. The default is 30 seconds.
+         */
+        public @NotNull Builder threshold(@NotNull Duration threshold) {
+            if (threshold.isNegative() || threshold.isZero())
+                throw new IllegalArgumentException("threshold must be positive, but was " + threshold);
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the interval of checking the active transactions. The default is one second.
+         */
+        public @NotNull Builder checkInterval(@NotNull Duration checkInterval) {
+            if (checkInterval.isNegative() || checkInterval.isZero())
+                throw new IllegalArgumentException("checkInterval must be positive, but was " + checkInterval);
+            this.checkInterval = checkInterval;
+            return this;
+        }
+
+        /**
+         * Sets the handler for long transactions, replacing the default handler that logs a warning.
+         * The handler is called on the background thread with the transaction and its current or last
+         * query, which may be null.
+         */
+        public @NotNull Builder handler(@NotNull BiConsumer<TransactionExecution, SqlQuery> handler) {
+            this.handler = requireNonNull(handler);
+            return this;
+        }
+
+        public @NotNull TransactionWatchdog build() {
+            return new TransactionWatchdog(this);
+        }
+    }
+}
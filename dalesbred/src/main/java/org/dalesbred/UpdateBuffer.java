@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred;
+
+import org.dalesbred.query.SqlQuery;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Buffer of updates with identical SQL, waiting to be executed as a batch.
+ *
+ * @see org.dalesbred.transaction.TransactionSettings#setUpdateBatchSize(int)
+ */
+final class UpdateBuffer {
+
+    /** Connection of the transaction that the buffer belongs to */
+    private final @NotNull Connection connection;
+
+    private final int maxSize;
+
+    private @Nullable String sql;
+
+    private @NotNull List<SqlQuery> queries = new ArrayList<>();
+
+    UpdateBuffer(@NotNull Connection connection, int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("non-positive maxSize: " + maxSize);
+
+        this.connection = requireNonNull(connection);
+        this.maxSize = maxSize;
+    }
+
+    @NotNull Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns true if given query can be added to the buffer without flushing it first.
+     */
+    boolean accepts(@NotNull SqlQuery query) {
+        return queries.isEmpty() || query.getSql().equals(sql);
+    }
+
+    void add(@NotNull SqlQuery query) {
+        if (!accepts(query)) throw new IllegalStateException("buffer contains updates with different SQL");
+
+        sql = query.getSql();
+        queries.add(query);
+    }
+
+    boolean isFull() {
+        return queries.size() >= maxSize;
+    }
+
+    boolean isEmpty() {
+        return queries.isEmpty();
+    }
+
+    /**
+     * Removes and returns the buffered queries.
+     */
+    @NotNull List<SqlQuery> drain() {
+        List<SqlQuery> result = queries;
+        queries = new ArrayList<>();
+        sql = null;
+        return result;
+    }
+}
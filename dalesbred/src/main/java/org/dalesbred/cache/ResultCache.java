@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.cache;
+
+import org.dalesbred.annotation.SQL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Bounded cache for results of queries, with expiration and invalidation based on the tables
+ * that the results depend on.
+ *
+ * <p>Only queries that declare their dependencies with
+ * {@link org.dalesbred.query.SqlQuery#setCacheDependencies(Set)} are cached, and only when
+ * they are executed outside of active transactions, so that transactions always see their own
+ * changes. Updates executed through the database invalidate the results depending on tables
+ * modified by the update, and again after the enclosing transaction has ended. If the modified
+ * table can't be determined from the SQL, the whole cache is invalidated. Changes made by other
+ * means need to be invalidated with
+ * {@link #invalidate(String)}.
+ *
+ * <p>Cached lists and maps are returned as unmodifiable copies. The objects contained in them
+ * are shared between callers and should therefore be immutable.
+ *
+ * @see org.dalesbred.Database#setResultCache(ResultCache)
+ */
+public final class ResultCache {
+
+    private static final Pattern MODIFIED_TABLE_PATTERN = Pattern.compile(
+            "^\\s*(?:insert\\s+into|update|delete\\s+from|merge\\s+into|truncate\\s+table|truncate)\\s+([\\w.\"`\\[\\]]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final int maximumSize;
+
+    private final @Nullable Duration timeToLive;
+
+    private final @NotNull Map<Object, Entry> entries;
+
+    /**
+     * Incremented on every invalidation so that results loaded concurrently with an
+     * invalidation are not stored.
+     */
+    private long generation = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private ResultCache(@NotNull Builder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.timeToLive = builder.timeToLive;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > maximumSize || eldest.getValue().isExpired(nanoTime())) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a builder for creating caches.
+     */
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the cached value for given key, or loads and caches it using given loader.
+     *
+     * @param key key of the value, which must implement {@code equals} and {@code hashCode}
+     * @param dependencies tables that the value depends on
+     * @param loader used for loading the value if it's not cached
+     */
+    public <T> T get(@NotNull Object key, @NotNull Set<String> dependencies, @NotNull Supplier<T> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(nanoTime())) {
+                    hits.increment();
+                    @SuppressWarnings("unchecked")
+                    T value = (T) entry.value;
+                    return value;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+            misses.increment();
+            loadGeneration = generation;
+        }
+
+        T value = loader.get();
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                long expiresAt = timeToLive != null ? nanoTime() + timeToLive.toNanos() : Long.MAX_VALUE;
+                entries.put(key, new Entry(value, normalizeTableNames(dependencies), expiresAt));
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes all cached results that depend on given table.
+     */
+    public synchronized void invalidate(@NotNull String table) {
+        String normalized = normalizeTableName(table);
+        generation++;
+        entries.values().removeIf(entry -> {
+            boolean matches = entry.dependencies.contains(normalized);
+            if (matches)
+                invalidations.increment();
+            return matches;
+        });
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * Invalidates the results depending on the table modified by given statement. If the table
+     * can't be determined, invalidates all results.
+     */
+    public void invalidateForStatement(@NotNull @SQL String sql) {
+        Matcher matcher = MODIFIED_TABLE_PATTERN.matcher(sql);
+        if (matcher.lookingAt())
+            invalidate(matcher.group(1));
+        else
+            invalidateAll();
+    }
+
+    private static @NotNull Set<String> normalizeTableNames(@NotNull Set<String> tables) {
+        Set<String> result = new HashSet<>(tables.size());
+        for (String table : tables)
+            result.add(normalizeTableName(table));
+        return result;
+    }
+
+    /**
+     * Normalizes table name by removing the schema and quotes, so that different references
+     * to the same table will match.
+     */
+    static @NotNull String normalizeTableName(@NotNull String table) {
+        String name = table.substring(table.lastIndexOf('.') + 1);
+        return name.replaceAll("[\"`\\[\\]]", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the amount of cached results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the amount of lookups that were served from the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the amount of lookups that had to be loaded from the database.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to all lookups, or zero if there have been no lookups.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the amount of results removed because of the size limit or expiration.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the amount of results removed because of invalidation.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "ResultCache [maximumSize=" + maximumSize + ", timeToLive=" + timeToLive + ", size=" + size() + ", hitRate=" + getHitRate() + ']';
+    }
+
+    private static final class Entry {
+        private final @Nullable Object value;
+        private final @NotNull Set<String> dependencies;
+        private final long expiresAt;
+
+        Entry(@Nullable Object value, @NotNull Set<String> dependencies, long expiresAt) {
+            this.value = value;
+            this.dependencies = dependencies;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Builder for {@link ResultCache}s.
+     */
+    public static final class Builder {
+
+        private int maximumSize = 1000;
+
+        private @Nullable Duration timeToLive;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum amount of cached results. When the limit is exceeded, least recently used results
+         * are evicted. The default is 1000.
+         */
+        public @NotNull Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0)
+                throw new IllegalArgumentException("maximumSize must be positive, but was " + maximumSize);
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the time after which cached results expire. By default results don't expire, but are
+         * only removed when invalidated or evicted.
+         */
+        public @NotNull Builder timeToLive(@NotNull Duration timeToLive) {
+            if (timeToLive.isNegative() || timeToLive.isZero())
+                throw new IllegalArgumentException("timeToLive must be positive, but was " + timeToLive);
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        public @NotNull ResultCache build() {
+            return new ResultCache(this);
+        }
+    }
+}
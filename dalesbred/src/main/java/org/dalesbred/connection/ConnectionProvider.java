@@ -35,5 +35,17 @@ public interface ConnectionProvider {
     @NotNull
     Connection getConnection() throws SQLException;
 
+    /**
+     * Returns a connection for a transaction that is either read-only or read-write. Providers that
+     * can serve read-only transactions from a different source (e.g. a read replica) should override
+     * this. By default the same connection as {@link #getConnection()} is returned.
+     *
+     * @see RoutingConnectionProvider
+     */
+    @NotNull
+    default Connection getConnection(boolean readOnly) throws SQLException {
+        return getConnection();
+    }
+
     void releaseConnection(@NotNull Connection connection) throws SQLException;
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.connection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ConnectionProvider} that sends read-write transactions to a primary database and
+ * read-only transactions to a set of replicas. If there are no replicas, all transactions
+ * use the primary.
+ *
+ * @see org.dalesbred.transaction.TransactionSettings#setReadOnly(boolean)
+ */
+public final class RoutingConnectionProvider implements ConnectionProvider {
+
+    /**
+     * Strategies for selecting the replica for a read-only transaction.
+     */
+    public enum Balancing {
+
+        /** Use the replicas in turns */
+        ROUND_ROBIN,
+
+        /** Use the replica that has the least connections handed out at the moment */
+        LEAST_OUTSTANDING
+    }
+
+    private final @NotNull ConnectionProvider primary;
+
+    private final @NotNull List<Replica> replicas;
+
+    private final @NotNull Balancing balancing;
+
+    private final @NotNull AtomicInteger counter = new AtomicInteger();
+
+    /** Replicas of the connections currently handed out, so that we know where to release them */
+    private final @NotNull Map<Connection, Replica> replicaConnections = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a provider that balances read-only transactions between replicas in round-robin fashion.
+     */
+    public RoutingConnectionProvider(@NotNull ConnectionProvider primary, @NotNull Collection<? extends ConnectionProvider> replicas) {
+        this(primary, replicas, Balancing.ROUND_ROBIN);
+    }
+
+    /**
+     * Constructs a provider that balances read-only transactions between replicas using given strategy.
+     */
+    public RoutingConnectionProvider(@NotNull ConnectionProvider primary,
+                                     @NotNull Collection<? extends ConnectionProvider> replicas,
+                                     @NotNull Balancing balancing) {
+        this.primary = requireNonNull(primary);
+        this.balancing = requireNonNull(balancing);
+        this.replicas = new ArrayList<>(replicas.size());
+
+        for (ConnectionProvider replica : replicas)
+            this.replicas.add(new Replica(replica));
+    }
+
+    @Override
+    public @NotNull Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    @Override
+    public @NotNull Connection getConnection(boolean readOnly) throws SQLException {
+        if (!readOnly || replicas.isEmpty())
+            return primary.getConnection();
+
+        Replica replica = selectReplica();
+
+        // Reserve the slot before opening the connection so that concurrent callers see it.
+        replica.outstanding.incrementAndGet();
+        try {
+            Connection connection = replica.provider.getConnection();
+            replicaConnections.put(connection, replica);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            replica.outstanding.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void releaseConnection(@NotNull Connection connection) throws SQLException {
+        Replica replica = replicaConnections.remove(connection);
+        if (replica != null) {
+            try {
+                replica.provider.releaseConnection(connection);
+            } finally {
+                replica.outstanding.decrementAndGet();
+            }
+        } else {
+            primary.releaseConnection(connection);
+        }
+    }
+
+    private @NotNull Replica selectReplica() {
+        int count = replicas.size();
+        int start = Math.floorMod(counter.getAndIncrement(), count);
+
+        if (balancing == Balancing.ROUND_ROBIN)
+            return replicas.get(start);
+
+        // Start scanning from a rotating offset so that ties are spread evenly among replicas.
+        Replica best = replicas.get(start);
+        for (int i = 1; i < count; i++) {
+            Replica candidate = replicas.get((start + i) % count);
+            if (candidate.outstanding.get() < best.outstanding.get())
+                best = candidate;
+        }
+        return best;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "RoutingConnectionProvider [primary=" + primary + ", replicas=" + replicas.size() + ", balancing=" + balancing + ']';
+    }
+
+    private static final class Replica {
+
+        private final @NotNull ConnectionProvider provider;
+
+        private final @NotNull AtomicInteger outstanding = new AtomicInteger();
+
+        Replica(@NotNull ConnectionProvider provider) {
+            this.provider = requireNonNull(provider);
+        }
+    }
+}
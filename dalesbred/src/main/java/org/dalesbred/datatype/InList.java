@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.datatype;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Wrapper for a collection of values that are to be expanded to a list of placeholders when used as
+ * a parameter of a named query, e.g. {@code id in (:ids)}. Other collections are bound as single
+ * arguments.
+ *
+ * <p>The placeholder list is padded to a bucket size by repeating the last value, so that statements
+ * are shared between collections of similar size. Padding is only safe where duplicate values don't
+ * change the result, e.g. in {@code IN}-lists.
+ *
+ * @see org.dalesbred.query.SqlQuery#namedQuery(String, java.util.Map)
+ * @see org.dalesbred.query.QueryBuilder#appendBucketedPlaceholders(Collection, int)
+ */
+public final class InList {
+
+    private final @NotNull List<?> values;
+
+    private final int maxSize;
+
+    private InList(@NotNull Collection<?> values, int maxSize) {
+        if (values.isEmpty()) throw new IllegalArgumentException("can't create IN-list of empty collection");
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive, but was " + maxSize);
+
+        this.values = unmodifiableList(new ArrayList<>(values));
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns an IN-list of given values.
+     *
+     * @throws IllegalArgumentException if the collection is empty
+     */
+    public static @NotNull InList of(@NotNull Collection<?> values) {
+        return new InList(values, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns an IN-list of given values, whose padding is limited to {@code maxSize} placeholders.
+     *
+     * @throws IllegalArgumentException if the collection is empty
+     */
+    public static @NotNull InList of(@NotNull Collection<?> values, int maxSize) {
+        return new InList(values, maxSize);
+    }
+
+    public @NotNull List<?> getValues() {
+        return values;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (!(obj instanceof InList)) return false;
+
+        InList other = (InList) obj;
+        return values.equals(other.values) && maxSize == other.maxSize;
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode() * 31 + maxSize;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "InList" + values;
+    }
+}
@@ -24,8 +24,14 @@ package org.dalesbred.datatype;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedInputStream;
 import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * InputStream that also knows the length of its input. When this kind of stream is
@@ -35,15 +41,47 @@ public final class InputStreamWithSize extends FilterInputStream {
 
     private final long size;
 
+    private final boolean closedAfterExecution;
+
+    /** Size of the blocks in which files are read */
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
     public InputStreamWithSize(@NotNull InputStream in, long size) {
+        this(in, size, false);
+    }
+
+    private InputStreamWithSize(@NotNull InputStream in, long size, boolean closedAfterExecution) {
         super(in);
 
         if (size < 0) throw new IllegalArgumentException("negative size: " + size);
 
         this.size = size;
+        this.closedAfterExecution = closedAfterExecution;
+    }
+
+    /**
+     * Opens a stream for reading given file. The file is read through a {@link FileChannel} in large blocks
+     * and the stream is closed automatically after the statement it's bound to has been executed.
+     */
+    public static @NotNull InputStreamWithSize ofPath(@NotNull Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), FILE_BUFFER_SIZE);
+            return new InputStreamWithSize(in, channel.size(), true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
     }
 
     public long getSize() {
         return size;
     }
+
+    /**
+     * Returns true if this stream is closed automatically after the statement it's bound to has been executed.
+     */
+    public boolean isClosedAfterExecution() {
+        return closedAfterExecution;
+    }
 }
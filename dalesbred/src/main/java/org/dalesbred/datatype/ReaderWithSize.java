@@ -24,8 +24,14 @@ package org.dalesbred.datatype;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedReader;
 import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Reader that also knows the length of its input. When this kind of Reader is
@@ -35,15 +41,55 @@ public final class ReaderWithSize extends FilterReader {
 
     private final long size;
 
+    private final boolean closedAfterExecution;
+
+    /** Size of the blocks in which files are read */
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
     public ReaderWithSize(@NotNull Reader reader, long size) {
+        this(reader, size, false);
+    }
+
+    private ReaderWithSize(@NotNull Reader reader, long size, boolean closedAfterExecution) {
         super(reader);
 
         if (size < 0) throw new IllegalArgumentException("negative size: " + size);
 
         this.size = size;
+        this.closedAfterExecution = closedAfterExecution;
+    }
+
+    /**
+     * Opens a reader for reading given file in given charset. The reader is closed automatically after the
+     * statement it's bound to has been executed.
+     *
+     * <p>Since the amount of characters can't be derived from the size of the file, the file is decoded
+     * once in advance to count the characters. The contents are not kept in memory.
+     */
+    public static @NotNull ReaderWithSize ofPath(@NotNull Path path, @NotNull Charset charset) throws IOException {
+        long size = 0;
+        try (Reader reader = openFile(path, charset)) {
+            char[] buffer = new char[FILE_BUFFER_SIZE];
+            int n;
+            while ((n = reader.read(buffer)) != -1)
+                size += n;
+        }
+
+        return new ReaderWithSize(openFile(path, charset), size, true);
+    }
+
+    private static @NotNull Reader openFile(@NotNull Path path, @NotNull Charset charset) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(path), charset), FILE_BUFFER_SIZE);
     }
 
     public long getSize() {
         return size;
     }
+
+    /**
+     * Returns true if this reader is closed automatically after the statement it's bound to has been executed.
+     */
+    public boolean isClosedAfterExecution() {
+        return closedAfterExecution;
+    }
 }
@@ -23,13 +23,12 @@
 package org.dalesbred.datatype;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.lang.reflect.Array;
+import java.util.*;
 
 import static java.util.Arrays.asList;
-import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -41,12 +40,17 @@ public final class SqlArray {
     /** Database specific type name of the array */
     private final @NotNull String type;
 
-    /** Values for the array */
+    /** Values for the array, as a view of an array of primitives or an Object[] */
     private final @NotNull List<?> values;
 
-    private SqlArray(@NotNull String type, @NotNull Collection<?> values) {
+    /** Values boxed to Object[], computed lazily for arrays of primitives */
+    private volatile @Nullable Object[] elements;
+
+    private SqlArray(@NotNull String type, @NotNull Object array) {
         this.type = requireNonNull(type);
-        this.values = unmodifiableList(new ArrayList<>(values));
+        this.values = new ArrayView(array);
+        if (array instanceof Object[])
+            this.elements = (Object[]) array;
     }
 
     /**
@@ -56,7 +60,7 @@ public final class SqlArray {
      * @param values for the array
      */
     public static @NotNull SqlArray of(@NotNull String type, @NotNull Collection<?> values) {
-        return new SqlArray(type, values);
+        return new SqlArray(type, values.toArray());
     }
 
     /**
@@ -66,7 +70,37 @@ public final class SqlArray {
      * @param values for the array
      */
     public static @NotNull SqlArray of(@NotNull String type, @NotNull Object[] values) {
-        return of(type, asList(values));
+        return new SqlArray(type, values.clone());
+    }
+
+    /**
+     * Constructs integer array of given values. PostgreSQL binds the values without boxing them,
+     * other databases box them once when the array is bound.
+     */
+    public static @NotNull SqlArray ints(@NotNull int... values) {
+        return new SqlArray("integer", values.clone());
+    }
+
+    /**
+     * Constructs bigint array of given values. PostgreSQL binds the values without boxing them,
+     * other databases box them once when the array is bound.
+     */
+    public static @NotNull SqlArray longs(@NotNull long... values) {
+        return new SqlArray("bigint", values.clone());
+    }
+
+    /**
+     * Constructs uuid array of given values.
+     */
+    public static @NotNull SqlArray uuids(@NotNull Collection<UUID> values) {
+        return of("uuid", values);
+    }
+
+    /**
+     * Constructs uuid array of given values.
+     */
+    public static @NotNull SqlArray uuids(@NotNull UUID... values) {
+        return of("uuid", values);
     }
 
     /**
@@ -97,8 +131,53 @@ public final class SqlArray {
         return values;
     }
 
+    /**
+     * Returns the underlying {@code int[]} or {@code long[]} if this array was constructed with {@link #ints(int...)}
+     * or {@link #longs(long...)}, otherwise null. This allows dialects to bind the values without boxing them.
+     * The returned array is shared and must not be modified.
+     */
+    public @Nullable Object getPrimitiveArray() {
+        Object array = ((ArrayView) values).array;
+        return array instanceof Object[] ? null : array;
+    }
+
+    /**
+     * Returns the values as an array suitable for {@link java.sql.Connection#createArrayOf(String, Object[])}.
+     * Arrays of primitives are boxed only once. The returned array is shared and must not be modified.
+     */
+    public @NotNull Object[] getElements() {
+        Object[] result = elements;
+        if (result == null) {
+            result = values.toArray();
+            elements = result;
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         return "SQLArray[type=" + type + ", values=" + values + ']';
     }
+
+    /**
+     * Unmodifiable list view of the underlying array.
+     */
+    private static final class ArrayView extends AbstractList<Object> implements RandomAccess {
+
+        private final @NotNull Object array;
+
+        ArrayView(@NotNull Object array) {
+            this.array = array;
+        }
+
+        @Override
+        public Object get(int index) {
+            return Array.get(array, index);
+        }
+
+        @Override
+        public int size() {
+            return Array.getLength(array);
+        }
+    }
 }
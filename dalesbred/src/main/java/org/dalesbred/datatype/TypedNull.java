@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.datatype;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.JDBCType;
+import java.sql.SQLType;
+import java.sql.Types;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Null value of a specific SQL type. Some databases and drivers need to know the type of
+ * a null argument, in which case using this instead of a plain {@code null} binds the argument
+ * with {@link java.sql.PreparedStatement#setNull(int, int)}.
+ */
+public final class TypedNull {
+
+    private final @NotNull SQLType type;
+
+    private TypedNull(@NotNull SQLType type) {
+        this.type = requireNonNull(type);
+    }
+
+    /**
+     * Returns a null of given type.
+     */
+    public static @NotNull TypedNull of(@NotNull SQLType type) {
+        return new TypedNull(type);
+    }
+
+    /**
+     * Returns a null of given type.
+     *
+     * @param sqlType type code from {@link java.sql.Types}
+     */
+    public static @NotNull TypedNull of(int sqlType) {
+        return new TypedNull(JDBCType.valueOf(sqlType));
+    }
+
+    /**
+     * Returns the type of this null.
+     */
+    public @NotNull SQLType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the type code of this null, as defined in {@link java.sql.Types}.
+     */
+    public int getSqlType() {
+        Integer code = type.getVendorTypeNumber();
+        return code != null ? code : Types.OTHER;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || (obj instanceof TypedNull && type.equals(((TypedNull) obj).type));
+    }
+
+    @Override
+    public int hashCode() {
+        return type.hashCode();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "NULL::" + type.getName();
+    }
+}
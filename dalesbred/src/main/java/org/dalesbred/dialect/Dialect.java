@@ -42,6 +42,7 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.function.Function;
 
 /**
@@ -53,10 +54,99 @@ public abstract class Dialect {
 
     private static final Logger log = LoggerFactory.getLogger(Dialect.class);
 
+    private final @NotNull ArgumentBinder argumentBinder = new ArgumentBinder();
+
     public @NotNull Object valueToDatabase(@NotNull Object value) {
         return value;
     }
 
+    /**
+     * Returns the maximum amount of values that can be used in a single {@code IN}-list, limited either
+     * by the maximum length of the list or the maximum amount of parameters in a statement.
+     *
+     * @see org.dalesbred.Database#findAllInChunks
+     */
+    public int getMaxInListSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns an SQL fragment that tests whether the preceding expression is one of the elements of an
+     * array bound to a single placeholder, or null if the dialect does not support such tests.
+     *
+     * @param elementType database type of the array elements
+     * @see org.dalesbred.query.QueryBuilder#appendIn(Dialect, org.dalesbred.datatype.SqlArray)
+     */
+    public @Nullable String arrayMembershipPredicate(@NotNull String elementType) {
+        return null;
+    }
+
+    /**
+     * Returns true if the database can execute several statements separated by semicolons in a single
+     * {@link PreparedStatement}, returning their results through {@link PreparedStatement#getMoreResults()}.
+     *
+     * @see org.dalesbred.Database#pipeline()
+     */
+    public boolean supportsMultipleStatements() {
+        return false;
+    }
+
+    /**
+     * Returns the SQL for creating a temporary table with a single primary key column {@code id}.
+     * The table should be visible only to the current connection and creating it should not
+     * commit the current transaction. If {@link #dropTemporaryIdTableSql(String)} returns null,
+     * the statement must succeed if the table already exists.
+     *
+     * @throws UnsupportedOperationException if the database can't create such tables
+     * @see org.dalesbred.Database#withIdTable
+     */
+    public @NotNull String createTemporaryIdTableSql(@NotNull String table, @NotNull String idType) {
+        return "create temporary table " + table + " (id " + idType + " primary key)";
+    }
+
+    /**
+     * Returns the SQL for dropping a table created with {@link #createTemporaryIdTableSql(String, String)},
+     * or null if the database drops the table or deletes its rows when the transaction ends, in which case
+     * the table is left for the database to clean up.
+     */
+    public @Nullable String dropTemporaryIdTableSql(@NotNull String table) {
+        return "drop table " + table;
+    }
+
+    /**
+     * Loads ids into a table created with {@link #createTemporaryIdTableSql(String, String)} using
+     * a bulk-loading mechanism specific to the database. Returns false if there is no such mechanism,
+     * in which case the ids are inserted with batched inserts.
+     */
+    public boolean bulkLoadIds(@NotNull Connection connection, @NotNull String table, @NotNull Collection<?> ids) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Returns true if the dialect supports {@link #exportSnapshot(Connection)} and {@link #importSnapshot(Connection, String)}.
+     *
+     * @see org.dalesbred.Database#parallelRead
+     */
+    public boolean supportsSnapshotExport() {
+        return false;
+    }
+
+    /**
+     * Exports the snapshot of the transaction of given connection so that other transactions can use it
+     * with {@link #importSnapshot(Connection, String)}.
+     */
+    public @NotNull String exportSnapshot(@NotNull Connection connection) throws SQLException {
+        throw new UnsupportedOperationException("exporting snapshots is not supported by " + this);
+    }
+
+    /**
+     * Makes the transaction of given connection use a snapshot returned by {@link #exportSnapshot(Connection)}.
+     * This is called before any other statements are executed in the transaction.
+     */
+    public void importSnapshot(@NotNull Connection connection, @NotNull String snapshotId) throws SQLException {
+        throw new UnsupportedOperationException("importing snapshots is not supported by " + this);
+    }
+
     public @NotNull <T extends Enum<T>, K> TypeConversionPair<Object,T> createNativeEnumConversions(@NotNull Class<T> enumType, @NotNull String typeName, @NotNull Function<T,K> keyFunction) {
         throw new UnsupportedOperationException("native enums are not supported by " + getClass().getName());
     }
@@ -153,6 +243,15 @@ public abstract class Dialect {
      * @throws SQLException if something fails
      */
     public void bindArgument(@NotNull PreparedStatement ps, int index, @Nullable Object value) throws SQLException {
-        ArgumentBinder.bindArgument(ps, index, value);
+        argumentBinder.bind(ps, index, value);
+    }
+
+    /**
+     * Registers a setter used by {@link #bindArgument(PreparedStatement, int, Object)} for binding arguments
+     * of given type and its subtypes. Overrides the default setters and setters previously registered for
+     * the same type.
+     */
+    protected final <T> void registerArgumentSetter(@NotNull Class<T> type, @NotNull ArgumentSetter<? super T> setter) {
+        argumentBinder.register(type, setter);
     }
 }
@@ -22,8 +22,26 @@
 
 package org.dalesbred.dialect;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 /**
  * Support for H2.
  */
 public class H2Dialect extends Dialect {
+
+    @Override
+    public @NotNull String arrayMembershipPredicate(@NotNull String elementType) {
+        return "IN (SELECT * FROM TABLE(x " + elementType + " = ?))";
+    }
+
+    @Override
+    public @NotNull String createTemporaryIdTableSql(@NotNull String table, @NotNull String idType) {
+        return "create local temporary table if not exists " + table + " (id " + idType + " primary key) on commit drop transactional";
+    }
+
+    @Override
+    public @Nullable String dropTemporaryIdTableSql(@NotNull String table) {
+        return null;
+    }
 }
@@ -22,8 +22,29 @@
 
 package org.dalesbred.dialect;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 /**
  * Support for HSQLDB.
  */
 public class HsqldbDialect extends Dialect {
+
+    @Override
+    public @NotNull String arrayMembershipPredicate(@NotNull String elementType) {
+        return "IN (UNNEST(?))";
+    }
+
+    @Override
+    public @NotNull String createTemporaryIdTableSql(@NotNull String table, @NotNull String idType) {
+        return "declare local temporary table if not exists " + table + " (id " + idType + " primary key) on commit delete rows";
+    }
+
+    /**
+     * Returns null: the declared table is kept by the session and its rows are deleted when the transaction ends.
+     */
+    @Override
+    public @Nullable String dropTemporaryIdTableSql(@NotNull String table) {
+        return null;
+    }
 }
@@ -22,8 +22,18 @@
 
 package org.dalesbred.dialect;
 
+import org.jetbrains.annotations.NotNull;
+
 /**
  * Support for MySQL.
  */
 public class MySQLDialect extends Dialect {
+
+    /**
+     * Plain {@code drop table} commits the transaction implicitly, {@code drop temporary table} does not.
+     */
+    @Override
+    public @NotNull String dropTemporaryIdTableSql(@NotNull String table) {
+        return "drop temporary table " + table;
+    }
 }
@@ -24,8 +24,8 @@ package org.dalesbred.dialect;
 
 import org.dalesbred.DatabaseException;
 import org.dalesbred.datatype.SqlArray;
+import org.dalesbred.internal.jdbc.StatementResources;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -38,14 +38,25 @@ import java.sql.SQLException;
  */
 public class OracleDialect extends Dialect {
 
+    public OracleDialect() {
+        registerArgumentSetter(SqlArray.class, (ps, index, value) -> ps.setArray(index, createOracleArray(ps, value)));
+    }
+
+    /**
+     * Oracle limits the amount of expressions in an {@code IN}-list to 1000.
+     */
     @Override
-    public void bindArgument(@NotNull PreparedStatement ps, int index, @Nullable  Object value) throws SQLException {
-        if (value instanceof SqlArray) {
-            ps.setArray(index, createOracleArray(ps, (SqlArray) value));
+    public int getMaxInListSize() {
+        return 1000;
+    }
 
-        } else {
-            super.bindArgument(ps, index, value);
-        }
+    /**
+     * Oracle commits the current transaction on DDL, and its global temporary tables are shared
+     * between sessions, so there is no safe way to create tables for single transactions.
+     */
+    @Override
+    public @NotNull String createTemporaryIdTableSql(@NotNull String table, @NotNull String idType) {
+        throw new UnsupportedOperationException("temporary id tables are not supported by Oracle, because DDL commits the transaction");
     }
 
     private static @NotNull Array createOracleArray(@NotNull  PreparedStatement ps, @NotNull  SqlArray arr) throws SQLException {
@@ -62,7 +73,9 @@ public class OracleDialect extends Dialect {
             Method createArrayMethod = oracleConnectionClass.getMethod("createARRAY", String.class, Object.class);
 
             Object oracleConnection = ps.getConnection().unwrap(oracleConnectionClass);
-            return (Array) createArrayMethod.invoke(oracleConnection, arr.getType(), arr.getValues().toArray());
+            Array array = (Array) createArrayMethod.invoke(oracleConnection, arr.getType(), arr.getElements());
+            StatementResources.freeAfterExecution(array);
+            return array;
 
         } catch (ClassNotFoundException | NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
             throw new DatabaseException(e);
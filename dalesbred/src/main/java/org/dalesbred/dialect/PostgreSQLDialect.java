@@ -24,20 +24,43 @@ package org.dalesbred.dialect;
 
 import org.dalesbred.conversion.TypeConversionPair;
 import org.dalesbred.conversion.TypeConversionRegistry;
+import org.dalesbred.datatype.SqlArray;
+import org.dalesbred.internal.jdbc.StatementResources;
 import org.dalesbred.internal.utils.EnumUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.jdbc.PgArray;
 import org.postgresql.util.PGobject;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Date;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 
 /**
  * Support for PostgreSQL.
  */
 public class PostgreSQLDialect extends Dialect {
 
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern SNAPSHOT_ID_PATTERN = Pattern.compile("[0-9A-Fa-f-]+");
+
+    public PostgreSQLDialect() {
+        registerArgumentSetter(SqlArray.class, (ps, index, value) -> ps.setArray(index, createArray(ps.getConnection(), value)));
+    }
+
     @Override
     public @NotNull <T extends Enum<T>, K> TypeConversionPair<Object,T> createNativeEnumConversions(@NotNull Class<T> enumType, @NotNull String typeName, @NotNull Function<T,K> keyFunction) {
         return new TypeConversionPair<Object, T>() {
@@ -65,6 +88,146 @@ public class PostgreSQLDialect extends Dialect {
         }
     }
 
+    /**
+     * Creates arrays of primitives directly from the primitive values, since the driver would need them boxed
+     * for {@link Connection#createArrayOf(String, Object[])}. Other arrays are created normally.
+     */
+    private static @NotNull Array createArray(@NotNull Connection connection, @NotNull SqlArray value) throws SQLException {
+        Array array = null;
+
+        Object primitives = value.getPrimitiveArray();
+        if (primitives != null && connection.isWrapperFor(BaseConnection.class)) {
+            BaseConnection pgConnection = connection.unwrap(BaseConnection.class);
+            int oid = pgConnection.getTypeInfo().getPGArrayType(value.getType());
+            if (oid != Oid.UNSPECIFIED)
+                array = new PgArray(pgConnection, oid, primitiveArrayLiteral(primitives));
+        }
+
+        if (array == null)
+            array = connection.createArrayOf(value.getType(), value.getElements());
+
+        StatementResources.freeAfterExecution(array);
+        return array;
+    }
+
+    private static @NotNull String primitiveArrayLiteral(@NotNull Object primitives) {
+        StringBuilder sb = new StringBuilder("{");
+        if (primitives instanceof int[]) {
+            for (int v : (int[]) primitives)
+                sb.append(v).append(',');
+        } else if (primitives instanceof long[]) {
+            for (long v : (long[]) primitives)
+                sb.append(v).append(',');
+        } else {
+            throw new IllegalArgumentException("unsupported array type: " + primitives.getClass().getName());
+        }
+
+        if (sb.length() > 1)
+            sb.setLength(sb.length() - 1);
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public @NotNull String arrayMembershipPredicate(@NotNull String elementType) {
+        return "= ANY(?)";
+    }
+
+    @Override
+    public boolean supportsMultipleStatements() {
+        return true;
+    }
+
+    @Override
+    public @NotNull String createTemporaryIdTableSql(@NotNull String table, @NotNull String idType) {
+        return "create temporary table if not exists " + table + " (id " + idType + " primary key) on commit drop";
+    }
+
+    @Override
+    public @Nullable String dropTemporaryIdTableSql(@NotNull String table) {
+        return null;
+    }
+
+    /**
+     * Loads the ids using {@code COPY FROM STDIN} if the connection can be unwrapped to {@link PGConnection}.
+     */
+    @Override
+    public boolean bulkLoadIds(@NotNull Connection connection, @NotNull String table, @NotNull Collection<?> ids) throws SQLException {
+        if (!connection.isWrapperFor(PGConnection.class))
+            return false;
+
+        CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn("COPY " + table + " (id) FROM STDIN");
+        try {
+            StringBuilder sb = new StringBuilder(COPY_BUFFER_SIZE + 256);
+            for (Object id : ids) {
+                appendCopyValue(sb, id);
+                if (sb.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copy, sb);
+                    sb.setLength(0);
+                }
+            }
+            writeToCopy(copy, sb);
+            copy.endCopy();
+            return true;
+        } finally {
+            if (copy.isActive())
+                copy.cancelCopy();
+        }
+    }
+
+    @Override
+    public boolean supportsSnapshotExport() {
+        return true;
+    }
+
+    @Override
+    public @NotNull String exportSnapshot(@NotNull Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select pg_export_snapshot()")) {
+            if (!rs.next())
+                throw new SQLException("pg_export_snapshot() returned no rows");
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * Imports the snapshot with {@code SET TRANSACTION SNAPSHOT}, which requires the transaction to
+     * be {@code REPEATABLE READ} or {@code SERIALIZABLE}.
+     */
+    @Override
+    public void importSnapshot(@NotNull Connection connection, @NotNull String snapshotId) throws SQLException {
+        if (!SNAPSHOT_ID_PATTERN.matcher(snapshotId).matches())
+            throw new IllegalArgumentException("invalid snapshot id: '" + snapshotId + '\'');
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET TRANSACTION SNAPSHOT '" + snapshotId + '\'');
+        }
+    }
+
+    private static void appendCopyValue(@NotNull StringBuilder sb, @Nullable Object value) {
+        if (value == null) {
+            sb.append("\\N\n");
+            return;
+        }
+
+        String s = value.toString();
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default: sb.append(c);
+            }
+        }
+        sb.append('\n');
+    }
+
+    private static void writeToCopy(@NotNull CopyIn copy, @NotNull CharSequence data) throws SQLException {
+        byte[] bytes = data.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+    }
+
     @Override
     public void registerTypeConversions(@NotNull TypeConversionRegistry typeConversionRegistry) {
         typeConversionRegistry.registerConversionToDatabase(Date.class, v -> new Timestamp(v.getTime()));
@@ -22,8 +22,35 @@
 
 package org.dalesbred.dialect;
 
+import org.jetbrains.annotations.NotNull;
+
 /**
  * Support for Microsoft SQL Server.
  */
 public class SQLServerDialect extends Dialect {
+
+    /**
+     * SQL Server supports at most 2100 parameters per statement, leave some for the rest of the query.
+     */
+    @Override
+    public int getMaxInListSize() {
+        return 2000;
+    }
+
+    @Override
+    public boolean supportsMultipleStatements() {
+        return true;
+    }
+
+    /**
+     * SQL Server creates local temporary tables for names starting with {@code #}, so the name
+     * used by the queries must have the prefix as well.
+     */
+    @Override
+    public @NotNull String createTemporaryIdTableSql(@NotNull String table, @NotNull String idType) {
+        if (!table.startsWith("#"))
+            throw new IllegalArgumentException("temporary tables of SQL Server must be named with prefix '#', but got '" + table + '\'');
+
+        return "create table " + table + " (id " + idType + " primary key)";
+    }
 }
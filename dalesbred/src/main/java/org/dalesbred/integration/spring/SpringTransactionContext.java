@@ -24,9 +24,14 @@ package org.dalesbred.integration.spring;
 
 import org.dalesbred.transaction.TransactionContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.ResourceHolderSupport;
 
 import java.sql.Connection;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
 
@@ -36,9 +41,17 @@ final class SpringTransactionContext implements TransactionContext {
 
     private final @NotNull Connection connection;
 
+    /** Holder of Spring's transactional resources, tracking the transaction timeout */
+    private final @Nullable ResourceHolderSupport resourceHolder;
+
     SpringTransactionContext(@NotNull TransactionStatus status, @NotNull Connection connection) {
+        this(status, connection, null);
+    }
+
+    SpringTransactionContext(@NotNull TransactionStatus status, @NotNull Connection connection, @Nullable ResourceHolderSupport resourceHolder) {
         this.status = requireNonNull(status);
         this.connection = requireNonNull(connection);
+        this.resourceHolder = resourceHolder;
     }
 
     @Override
@@ -55,4 +68,13 @@ final class SpringTransactionContext implements TransactionContext {
     public boolean isRollbackOnly() {
         return status.isRollbackOnly();
     }
+
+    @Override
+    public @NotNull Optional<Duration> getRemainingTime() {
+        Date deadline = resourceHolder != null ? resourceHolder.getDeadline() : null;
+        if (deadline == null)
+            return Optional.empty();
+
+        return Optional.of(Duration.ofMillis(deadline.getTime() - System.currentTimeMillis()));
+    }
 }
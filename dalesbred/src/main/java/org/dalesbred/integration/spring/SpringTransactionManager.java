@@ -24,19 +24,23 @@ package org.dalesbred.integration.spring;
 
 import org.dalesbred.connection.ConnectionProvider;
 import org.dalesbred.dialect.Dialect;
+import org.dalesbred.internal.jdbc.SqlUtils;
 import org.dalesbred.transaction.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.jdbc.datasource.ConnectionHolder;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 
 import static java.util.Objects.requireNonNull;
 
@@ -67,7 +71,27 @@ public final class SpringTransactionManager implements TransactionManager {
 
     @Override
     public <T> T withTransaction(@NotNull TransactionSettings settings, @NotNull TransactionCallback<T> callback, @NotNull Dialect dialect) {
-        return execute(callback, dialect, settingsToSpringDefinition(settings));
+        DefaultTransactionDefinition df = settingsToSpringDefinition(settings);
+
+        // Only retry if we are going to start a new physical transaction
+        RetryPolicy retryPolicy = settings.getRetryPolicy();
+        if (retryPolicy != null && (settings.getPropagation() == Propagation.REQUIRES_NEW || !hasActiveTransaction()))
+            return retryPolicy.execute(settings.getTimeout(), remaining -> execute(callback, dialect, withTimeout(df, remaining)));
+        else
+            return execute(callback, dialect, df);
+    }
+
+    /**
+     * Returns a copy of given definition with the timeout reduced to the time remaining, so that retries
+     * don't restart the timeout of the whole transaction.
+     */
+    private static @NotNull DefaultTransactionDefinition withTimeout(@NotNull DefaultTransactionDefinition df, @Nullable Duration remaining) {
+        if (remaining == null)
+            return df;
+
+        DefaultTransactionDefinition copy = new DefaultTransactionDefinition(df);
+        copy.setTimeout(SqlUtils.timeoutSeconds(remaining));
+        return copy;
     }
 
     private <T> T execute(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect, @NotNull DefaultTransactionDefinition df) {
@@ -76,7 +100,8 @@ public final class SpringTransactionManager implements TransactionManager {
             try {
                 Connection connection = DataSourceUtils.getConnection(dataSource);
                 try {
-                    return callback.execute(new SpringTransactionContext(status, connection));
+                    ConnectionHolder holder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+                    return callback.execute(new SpringTransactionContext(status, connection, holder));
                 } finally {
                     DataSourceUtils.releaseConnection(connection, dataSource);
                 }
@@ -86,6 +111,18 @@ public final class SpringTransactionManager implements TransactionManager {
         });
     }
 
+    /**
+     * Registers the action as a synchronization of the current Spring transaction, so that it's executed
+     * even if the transaction was started outside of Dalesbred.
+     */
+    @Override
+    public void afterCompletion(@NotNull Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.registerSynchronization(new CompletionSynchronization(action));
+        else
+            action.run();
+    }
+
     @Override
     public boolean hasActiveTransaction() {
         ConnectionHolder conHolder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
@@ -113,10 +150,43 @@ public final class SpringTransactionManager implements TransactionManager {
         throw new IllegalArgumentException("unknown propagation: " + propagation);
     }
 
+    /**
+     * Executes an action after completion. Equal to synchronizations with equal actions, so that Spring
+     * registers each action only once.
+     */
+    private static final class CompletionSynchronization extends TransactionSynchronizationAdapter {
+
+        private final @NotNull Runnable action;
+
+        CompletionSynchronization(@NotNull Runnable action) {
+            this.action = requireNonNull(action);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            action.run();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CompletionSynchronization && action.equals(((CompletionSynchronization) obj).action);
+        }
+
+        @Override
+        public int hashCode() {
+            return action.hashCode();
+        }
+    }
+
     private static @NotNull DefaultTransactionDefinition settingsToSpringDefinition(@NotNull TransactionSettings settings) {
         DefaultTransactionDefinition df = new DefaultTransactionDefinition();
         df.setIsolationLevel(springIsolationCode(settings.getIsolation()));
         df.setPropagationBehavior(springPropagationCode(settings.getPropagation()));
+        df.setReadOnly(settings.isReadOnly());
+
+        Duration timeout = settings.getTimeout();
+        if (timeout != null)
+            df.setTimeout(SqlUtils.timeoutSeconds(timeout));
         return df;
     }
 }
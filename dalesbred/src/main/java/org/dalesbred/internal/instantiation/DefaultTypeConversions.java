@@ -25,10 +25,14 @@ package org.dalesbred.internal.instantiation;
 import org.dalesbred.DatabaseException;
 import org.dalesbred.DatabaseSQLException;
 import org.dalesbred.conversion.TypeConversionRegistry;
+import org.dalesbred.internal.jdbc.SqlUtils;
+import org.dalesbred.internal.jdbc.StatementResources;
 import org.jetbrains.annotations.NotNull;
 import org.w3c.dom.Document;
 
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stax.StAXSource;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -68,6 +72,7 @@ final class DefaultTypeConversions {
         registry.registerConversionFromDatabase(Blob.class, byte[].class, DefaultTypeConversions::convertBlobToByteArray);
         registry.registerConversionFromDatabase(Blob.class, InputStream.class, DefaultTypeConversions::convertBlobToInputStream);
         registry.registerConversionFromDatabase(SQLXML.class, Document.class, DefaultTypeConversions::convertSQLXMLToDocument);
+        registry.registerConversionFromDatabase(SQLXML.class, XMLStreamReader.class, DefaultTypeConversions::convertSQLXMLToXMLStreamReader);
 
         registry.registerConversionToDatabase(BigInteger.class, BigDecimal::new);
 
@@ -170,7 +175,20 @@ final class DefaultTypeConversions {
 
     private static @NotNull Document convertSQLXMLToDocument(@NotNull SQLXML value) {
         try {
-            return (Document) value.getSource(DOMSource.class).getNode();
+            try {
+                return (Document) value.getSource(DOMSource.class).getNode();
+            } finally {
+                SqlUtils.freeSQLXML(value);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseSQLException(e);
+        }
+    }
+
+    private static @NotNull XMLStreamReader convertSQLXMLToXMLStreamReader(@NotNull SQLXML value) {
+        try {
+            StatementResources.freeAfterExecution(value);
+            return value.getSource(StAXSource.class).getXMLStreamReader();
         } catch (SQLException e) {
             throw new DatabaseSQLException(e);
         }
@@ -22,42 +22,133 @@
 
 package org.dalesbred.internal.jdbc;
 
+import org.dalesbred.DatabaseException;
 import org.dalesbred.datatype.InputStreamWithSize;
 import org.dalesbred.datatype.ReaderWithSize;
 import org.dalesbred.datatype.SqlArray;
+import org.dalesbred.datatype.TypedNull;
+import org.dalesbred.dialect.ArgumentSetter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Document;
 
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamResult;
 import java.io.InputStream;
 import java.io.Reader;
-import java.sql.Array;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLXML;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binds arguments to {@link PreparedStatement}s using the typed setter of each argument's class.
+ *
+ * <p>Setters are looked up first by the exact class of the argument and then by the registered
+ * supertypes, latest registration first. The resolved setter is cached per class, so the
+ * lookup is done only once for each class. Arguments without a registered setter are bound
+ * with {@link PreparedStatement#setObject(int, Object)}.
+ */
 public final class ArgumentBinder {
 
-    private ArgumentBinder() {
+    private static final ArgumentBinder DEFAULT = new ArgumentBinder();
+
+    private static final ArgumentSetter<Object> SET_OBJECT = PreparedStatement::setObject;
+
+    /** Registered setters, in order of registration. Replaced by a new copy on each registration. */
+    private volatile @NotNull Map<Class<?>, ArgumentSetter<?>> setters = new LinkedHashMap<>();
+
+    /** Resolved setters for each class seen, cleared whenever new setters are registered */
+    private final @NotNull ConcurrentMap<Class<?>, ArgumentSetter<Object>> resolvedSetters = new ConcurrentHashMap<>();
+
+    public ArgumentBinder() {
+        register(String.class, PreparedStatement::setString);
+        register(Integer.class, PreparedStatement::setInt);
+        register(Long.class, PreparedStatement::setLong);
+        register(Short.class, PreparedStatement::setShort);
+        register(Byte.class, PreparedStatement::setByte);
+        register(Boolean.class, PreparedStatement::setBoolean);
+        register(Double.class, PreparedStatement::setDouble);
+        register(Float.class, PreparedStatement::setFloat);
+        register(BigDecimal.class, PreparedStatement::setBigDecimal);
+        register(byte[].class, PreparedStatement::setBytes);
+        register(Timestamp.class, PreparedStatement::setTimestamp);
+        register(Date.class, PreparedStatement::setDate);
+        register(Time.class, PreparedStatement::setTime);
+        register(TypedNull.class, (ps, index, value) -> ps.setNull(index, value.getSqlType()));
+        register(InputStream.class, ArgumentBinder::bindInputStream);
+        register(Reader.class, ArgumentBinder::bindReader);
+        register(Source.class, ArgumentBinder::bindXmlSource);
+        register(Document.class, ArgumentBinder::bindXmlDocument);
+        register(SqlArray.class, ArgumentBinder::bindArray);
     }
 
+    /**
+     * Binds argument using the default setters.
+     */
     public static void bindArgument(@NotNull PreparedStatement ps, int index, @Nullable Object value) throws SQLException {
-        if (value instanceof InputStream) {
-            bindInputStream(ps, index, (InputStream) value);
+        DEFAULT.bind(ps, index, value);
+    }
 
-        } else if (value instanceof Reader) {
-            bindReader(ps, index, (Reader) value);
+    /**
+     * Registers a setter for arguments of given type and its subtypes, replacing any previous
+     * setter of the same type.
+     */
+    public synchronized <T> void register(@NotNull Class<T> type, @NotNull ArgumentSetter<? super T> setter) {
+        Map<Class<?>, ArgumentSetter<?>> newSetters = new LinkedHashMap<>(setters);
+        newSetters.remove(type);
+        newSetters.put(requireNonNull(type), requireNonNull(setter));
+        setters = newSetters;
+        resolvedSetters.clear();
+    }
 
-        } else if (value instanceof Document) {
-            bindXmlDocument(ps, index, (Document) value);
+    public void bind(@NotNull PreparedStatement ps, int index, @Nullable Object value) throws SQLException {
+        if (value == null) {
+            ps.setObject(index, null);
+        } else {
+            ArgumentSetter<Object> setter = resolvedSetters.get(value.getClass());
+            if (setter == null)
+                setter = resolveAndCache(value.getClass());
 
-        } else if (value instanceof SqlArray) {
-            bindArray(ps, index, (SqlArray) value);
+            setter.setArgument(ps, index, value);
+        }
+    }
 
-        } else {
-            ps.setObject(index, value);
+    /**
+     * Resolves the setter without holding any locks. If setters were registered concurrently,
+     * the resolved setter might be stale, so it is removed from the cache again.
+     */
+    private @NotNull ArgumentSetter<Object> resolveAndCache(@NotNull Class<?> type) {
+        Map<Class<?>, ArgumentSetter<?>> snapshot = setters;
+        ArgumentSetter<Object> setter = resolveSetter(snapshot, type);
+
+        ArgumentSetter<Object> existing = resolvedSetters.putIfAbsent(type, setter);
+        if (snapshot != setters) {
+            resolvedSetters.remove(type, setter);
+            return setter;
         }
+        return existing != null ? existing : setter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static @NotNull ArgumentSetter<Object> resolveSetter(@NotNull Map<Class<?>, ArgumentSetter<?>> setters, @NotNull Class<?> type) {
+        ArgumentSetter<?> exact = setters.get(type);
+        if (exact != null)
+            return (ArgumentSetter<Object>) exact;
+
+        ArgumentSetter<?> result = SET_OBJECT;
+        for (Map.Entry<Class<?>, ArgumentSetter<?>> entry : setters.entrySet())
+            if (entry.getKey().isAssignableFrom(type))
+                result = entry.getValue();
+
+        return (ArgumentSetter<Object>) result;
     }
 
     private static void bindInputStream(@NotNull PreparedStatement ps, int index, @NotNull InputStream stream) throws SQLException {
@@ -96,16 +187,31 @@ public final class ArgumentBinder {
 
     private static void bindXmlDocument(@NotNull PreparedStatement ps, int index, @NotNull Document doc) throws SQLException {
         SQLXML sqlxml = ps.getConnection().createSQLXML();
-        // TODO: arrange for the object to be freed after the PreparedStatement has been executed
+        StatementResources.freeAfterExecution(sqlxml);
 
         sqlxml.setResult(DOMResult.class).setNode(doc);
 
         ps.setSQLXML(index, sqlxml);
     }
 
-    private static void bindArray(PreparedStatement ps, int index, SqlArray value) throws SQLException {
-        // TODO: arrange for the array to be freed after the PreparedStatement has been executed
-        Array array = ps.getConnection().createArrayOf(value.getType(), value.getValues().toArray());
+    private static void bindXmlSource(@NotNull PreparedStatement ps, int index, @NotNull Source source) throws SQLException {
+        // Stream the source to the SQLXML using an identity transform, so that SAX, StAX and stream
+        // sources are bound without building a DOM tree.
+        SQLXML sqlxml = ps.getConnection().createSQLXML();
+        StatementResources.freeAfterExecution(sqlxml);
+
+        try {
+            TransformerFactory.newInstance().newTransformer().transform(source, sqlxml.setResult(StreamResult.class));
+        } catch (TransformerException e) {
+            throw new DatabaseException("failed to bind XML source", e);
+        }
+
+        ps.setSQLXML(index, sqlxml);
+    }
+
+    private static void bindArray(@NotNull PreparedStatement ps, int index, @NotNull SqlArray value) throws SQLException {
+        Array array = ps.getConnection().createArrayOf(value.getType(), value.getElements());
+        StatementResources.freeAfterExecution(array);
         ps.setArray(index, array);
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.internal.jdbc;
+
+import org.dalesbred.DatabaseException;
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.*;
+
+/**
+ * Streams large objects and XML from result sets without materializing them in memory.
+ */
+public final class LargeObjects {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Copy buffers reused by the copies of each thread. A buffer is taken out while it's in use, so that
+     * a copy started from the destination of another copy allocates a buffer of its own.
+     */
+    private static final ThreadLocal<byte[]> byteBuffers = new ThreadLocal<>();
+
+    private static final ThreadLocal<char[]> charBuffers = new ThreadLocal<>();
+
+    private LargeObjects() { }
+
+    /**
+     * Copies the binary value of first column of current row to given stream.
+     *
+     * @return amount of bytes copied, or -1 if the value was NULL
+     */
+    public static long copyBinary(@NotNull ResultSet rs, @NotNull OutputStream out) throws SQLException {
+        byte[] buffer = takeByteBuffer();
+        try {
+            return copyBinary(rs, (buf, count) -> out.write(buf, 0, count), buffer);
+        } finally {
+            byteBuffers.set(buffer);
+        }
+    }
+
+    /**
+     * Copies the binary value of first column of current row to given channel.
+     *
+     * @return amount of bytes copied, or -1 if the value was NULL
+     */
+    public static long copyBinary(@NotNull ResultSet rs, @NotNull WritableByteChannel channel) throws SQLException {
+        byte[] buffer = takeByteBuffer();
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            return copyBinary(rs, (buf, count) -> {
+                byteBuffer.clear().limit(count);
+                while (byteBuffer.hasRemaining())
+                    channel.write(byteBuffer);
+            }, buffer);
+        } finally {
+            byteBuffers.set(buffer);
+        }
+    }
+
+    /**
+     * Copies the character value of first column of current row to given writer.
+     *
+     * @return amount of characters copied, or -1 if the value was NULL
+     */
+    public static long copyCharacters(@NotNull ResultSet rs, @NotNull Writer out) throws SQLException {
+        int type = rs.getMetaData().getColumnType(1);
+        if (type == Types.CLOB || type == Types.NCLOB) {
+            Clob clob = rs.getClob(1);
+            if (clob == null)
+                return -1;
+
+            try {
+                return copy(clob.getCharacterStream(), out);
+            } finally {
+                freeClob(clob);
+            }
+        } else {
+            Reader reader = rs.getCharacterStream(1);
+            return reader != null ? copy(reader, out) : -1;
+        }
+    }
+
+    /**
+     * Copies the XML value of first column of current row to given result using an identity transform.
+     *
+     * @return true if the value was copied, false if it was NULL
+     */
+    public static boolean copyXml(@NotNull ResultSet rs, @NotNull Result result) throws SQLException {
+        SQLXML xml = rs.getSQLXML(1);
+        if (xml == null)
+            return false;
+
+        try {
+            TransformerFactory.newInstance().newTransformer().transform(xml.getSource(StreamSource.class), result);
+            return true;
+        } catch (TransformerException e) {
+            throw new DatabaseException("failed to stream XML", e);
+        } finally {
+            SqlUtils.freeSQLXML(xml);
+        }
+    }
+
+    private static long copyBinary(@NotNull ResultSet rs, @NotNull ChunkWriter writer, @NotNull byte[] buffer) throws SQLException {
+        if (rs.getMetaData().getColumnType(1) == Types.BLOB) {
+            Blob blob = rs.getBlob(1);
+            if (blob == null)
+                return -1;
+
+            try {
+                return copy(blob.getBinaryStream(), writer, buffer);
+            } finally {
+                freeBlob(blob);
+            }
+        } else {
+            InputStream in = rs.getBinaryStream(1);
+            return in != null ? copy(in, writer, buffer) : -1;
+        }
+    }
+
+    private static long copy(@NotNull InputStream input, @NotNull ChunkWriter writer, @NotNull byte[] buffer) {
+        try (InputStream in = input) {
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                writer.write(buffer, n);
+                total += n;
+            }
+            return total;
+        } catch (IOException e) {
+            throw new DatabaseException("failed to stream binary data", e);
+        }
+    }
+
+    private static long copy(@NotNull Reader input, @NotNull Writer out) {
+        char[] buffer = charBuffers.get();
+        if (buffer != null)
+            charBuffers.remove();
+        else
+            buffer = new char[BUFFER_SIZE];
+
+        try (Reader in = input) {
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                total += n;
+            }
+            return total;
+        } catch (IOException e) {
+            throw new DatabaseException("failed to stream character data", e);
+        } finally {
+            charBuffers.set(buffer);
+        }
+    }
+
+    private static @NotNull byte[] takeByteBuffer() {
+        byte[] buffer = byteBuffers.get();
+        if (buffer == null)
+            return new byte[BUFFER_SIZE];
+
+        byteBuffers.remove();
+        return buffer;
+    }
+
+    private static void freeBlob(@NotNull Blob blob) throws SQLException {
+        try {
+            blob.free();
+        } catch (SQLFeatureNotSupportedException ignored) {
+        }
+    }
+
+    private static void freeClob(@NotNull Clob clob) throws SQLException {
+        try {
+            clob.free();
+        } catch (SQLFeatureNotSupportedException ignored) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void write(@NotNull byte[] buffer, int count) throws IOException;
+    }
+}
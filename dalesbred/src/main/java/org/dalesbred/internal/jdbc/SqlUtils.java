@@ -27,15 +27,33 @@ import org.jetbrains.annotations.NotNull;
 import java.sql.Array;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLXML;
+import java.time.Duration;
 
 public final class SqlUtils {
 
     private SqlUtils() { }
 
+    /**
+     * Converts timeout to whole seconds used by JDBC and other APIs. Rounds up so that the
+     * timeout is never shortened and never becomes zero, which would mean no timeout at all.
+     */
+    public static int timeoutSeconds(@NotNull Duration timeout) {
+        long seconds = (timeout.toMillis() + 999) / 1000;
+        return (int) Math.min(Math.max(seconds, 1), Integer.MAX_VALUE);
+    }
+
     public static void freeArray(@NotNull Array array) throws SQLException {
         try {
             array.free();
         } catch (SQLFeatureNotSupportedException ignored) {
         }
     }
+
+    public static void freeSQLXML(@NotNull SQLXML xml) throws SQLException {
+        try {
+            xml.free();
+        } catch (SQLFeatureNotSupportedException ignored) {
+        }
+    }
 }
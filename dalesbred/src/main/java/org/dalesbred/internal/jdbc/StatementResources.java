@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.internal.jdbc;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of JDBC objects created while binding arguments of a statement, so that they
+ * can be freed after the statement has been executed.
+ *
+ * <p>Resources are tracked per thread between {@link #begin()} and {@link #end(List)}. Outside
+ * of such a scope registered resources are not tracked at all. A statement is bound and executed
+ * synchronously on one thread, so the resources are not part of the transaction context.
+ */
+public final class StatementResources {
+
+    private static final ThreadLocal<List<Object>> currentResources = new ThreadLocal<>();
+
+    private static final Logger log = LoggerFactory.getLogger(StatementResources.class);
+
+    private StatementResources() { }
+
+    /**
+     * Starts tracking resources of a new statement and returns the resources of the enclosing
+     * statement, to be passed to {@link #end(List)}.
+     */
+    public static @Nullable List<Object> begin() {
+        List<Object> old = currentResources.get();
+        currentResources.set(new ArrayList<>());
+        return old;
+    }
+
+    /**
+     * Frees the resources registered since the matching {@link #begin()} and restores the
+     * resources of the enclosing statement.
+     */
+    public static void end(@Nullable List<Object> enclosingResources) {
+        List<Object> resources = currentResources.get();
+        if (enclosingResources != null)
+            currentResources.set(enclosingResources);
+        else
+            currentResources.remove();
+
+        if (resources != null)
+            for (Object resource : resources)
+                free(resource);
+    }
+
+    public static void freeAfterExecution(@NotNull Array array) {
+        register(array);
+    }
+
+    public static void freeAfterExecution(@NotNull SQLXML xml) {
+        register(xml);
+    }
+
+    private static void register(@NotNull Object resource) {
+        List<Object> resources = currentResources.get();
+        if (resources != null)
+            resources.add(resource);
+    }
+
+    private static void free(@NotNull Object resource) {
+        try {
+            if (resource instanceof Array)
+                SqlUtils.freeArray((Array) resource);
+            else if (resource instanceof SQLXML)
+                SqlUtils.freeSQLXML((SQLXML) resource);
+        } catch (SQLException e) {
+            log.warn("failed to free " + resource, e);
+        }
+    }
+}
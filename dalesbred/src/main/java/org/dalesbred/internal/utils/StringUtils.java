@@ -67,6 +67,16 @@ public final class StringUtils {
         return s.substring(0, length - suffix.length()) + suffix;
     }
 
+    /**
+     * Returns given SQL without trailing semicolons and whitespace.
+     */
+    public static @NotNull String stripTrailingSemicolons(@NotNull String sql) {
+        int end = sql.length();
+        while (end > 0 && (sql.charAt(end - 1) == ';' || Character.isWhitespace(sql.charAt(end - 1))))
+            end--;
+        return sql.substring(0, end);
+    }
+
     /**
      * Returns true if two strings are equal, apart from case differences and underscores.
      * Underscores in both sides are totally ignored.
@@ -26,9 +26,24 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.util.Arrays.asList;
 
 public final class TypeUtils {
 
+    /** Final classes whose instances are known to be immutable, in addition to primitives and enums */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(asList(
+            Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            String.class, BigDecimal.class, BigInteger.class, UUID.class,
+            Instant.class, LocalDate.class, LocalTime.class, LocalDateTime.class, OffsetDateTime.class, ZonedDateTime.class,
+            Duration.class, ZoneId.class, ZoneOffset.class));
+
     private TypeUtils() { }
 
     public static @NotNull Class<?> rawType(@NotNull Type type) {
@@ -69,6 +84,14 @@ public final class TypeUtils {
         return (type instanceof Class<?>) && ((Class<?>) type).isPrimitive();
     }
 
+    /**
+     * Returns true if all instances of given class are known to be immutable, so that they can be
+     * shared freely. Returns false for classes that are not known to be immutable.
+     */
+    public static boolean isImmutable(@NotNull Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || IMMUTABLE_TYPES.contains(type);
+    }
+
     public static @NotNull Class<?> arrayType(@NotNull Class<?> type) {
         return Array.newInstance(type, 0).getClass();
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.dalesbred.query.SqlQuery;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Information about a single execution of a query, passed to {@link QueryListener}s.
+ *
+ * <p>Timings are measured with {@link System#nanoTime()}. Phases that have not been reached
+ * yet report zero.
+ */
+public interface QueryExecution {
+
+    /**
+     * Returns the query being executed. For batches, the arguments of individual items are not included.
+     */
+    @NotNull
+    SqlQuery getQuery();
+
+    /**
+     * Returns the type of the statement being executed.
+     */
+    @NotNull
+    Type getType();
+
+    /**
+     * Returns the time it took to prepare the statement.
+     */
+    long getPrepareNanos();
+
+    /**
+     * Returns the time it took to bind the parameters of the statement.
+     */
+    long getBindNanos();
+
+    /**
+     * Returns the time it took to execute the statement.
+     */
+    long getExecuteNanos();
+
+    /**
+     * Returns the time it took to fetch and map the results of the statement.
+     */
+    long getProcessNanos();
+
+    /**
+     * Returns the total time spent in the execution so far.
+     */
+    long getTotalNanos();
+
+    /**
+     * Returns the amount of rows fetched from the results, including generated keys.
+     */
+    long getReturnedRows();
+
+    /**
+     * Returns the amount of rows affected by an update, or sum of the counts of a batch.
+     * Statements for which the driver did not report a count are not included.
+     */
+    long getAffectedRows();
+
+    /**
+     * Returns the amount of items in a batch, or 1 for statements that are not batches.
+     */
+    int getBatchSize();
+
+    /**
+     * Types of statement executions.
+     */
+    enum Type {
+        QUERY,
+        UPDATE,
+        UPDATE_WITH_GENERATED_KEYS,
+        BATCH_UPDATE,
+        BATCH_UPDATE_WITH_GENERATED_KEYS,
+        UPDATE_RETURNING
+    }
+}
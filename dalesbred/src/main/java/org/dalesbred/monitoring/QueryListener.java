@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener that is notified about the different phases of query execution. Listeners can be registered
+ * using {@link org.dalesbred.Database#addQueryListener(QueryListener)}.
+ *
+ * <p>Callbacks are invoked synchronously on the thread executing the query, so implementations should be
+ * fast and thread-safe. Exceptions thrown by listeners are logged and otherwise ignored.
+ */
+public interface QueryListener {
+
+    /**
+     * Called after the statement has been prepared and its parameters bound, just before it is executed.
+     */
+    default void beforeExecution(@NotNull QueryExecution execution) {
+    }
+
+    /**
+     * Called after the statement has been executed, but before its results have been processed.
+     */
+    default void afterExecution(@NotNull QueryExecution execution) {
+    }
+
+    /**
+     * Called after the results of the statement have been processed. This is the last callback
+     * for successful executions, including updates which have no results to process.
+     */
+    default void afterResultProcessing(@NotNull QueryExecution execution) {
+    }
+
+    /**
+     * Called when the execution fails in any of its phases.
+     */
+    default void onError(@NotNull QueryExecution execution, @NotNull Throwable exception) {
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Client-side aggregate statistics of executed statements, keyed by normalized SQL.
+ *
+ * <p>Counters are updated without locking, so collecting statistics is cheap enough to
+ * be left enabled in production. The amount of distinct statements is bounded: once
+ * {@link #getMaxStatements()} is reached, executions of new statements are aggregated
+ * under {@link #OTHER_STATEMENTS}.
+ *
+ * @see org.dalesbred.Database#getStatistics()
+ */
+public final class QueryStatistics implements QueryListener, QueryStatisticsMXBean {
+
+    /**
+     * Key used for statements that did not fit in the registry.
+     */
+    public static final String OTHER_STATEMENTS = "<other statements>";
+
+    private static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+    private final int maxStatements;
+
+    /** Counters by raw SQL, so that the normal path does not need to normalize the SQL */
+    private final @NotNull ConcurrentMap<String, StatementCounters> countersBySql = new ConcurrentHashMap<>();
+
+    /** Counters by normalized SQL */
+    private final @NotNull ConcurrentMap<String, StatementCounters> countersByNormalizedSql = new ConcurrentHashMap<>();
+
+    public QueryStatistics() {
+        this(DEFAULT_MAX_STATEMENTS);
+    }
+
+    public QueryStatistics(int maxStatements) {
+        if (maxStatements <= 0)
+            throw new IllegalArgumentException("maxStatements must be positive, but was " + maxStatements);
+
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void afterResultProcessing(@NotNull QueryExecution execution) {
+        countersFor(execution.getQuery().getSql()).recordSuccess(execution);
+    }
+
+    @Override
+    public void onError(@NotNull QueryExecution execution, @NotNull Throwable exception) {
+        countersFor(execution.getQuery().getSql()).recordError();
+    }
+
+    private @NotNull StatementCounters countersFor(@NotNull String sql) {
+        StatementCounters counters = countersBySql.get(sql);
+        if (counters != null)
+            return counters;
+
+        if (countersBySql.size() >= maxStatements * 2)
+            return countersByNormalizedSql.computeIfAbsent(OTHER_STATEMENTS, StatementCounters::new);
+
+        String normalized = normalize(sql);
+        if (countersByNormalizedSql.size() >= maxStatements && !countersByNormalizedSql.containsKey(normalized))
+            normalized = OTHER_STATEMENTS;
+
+        counters = countersByNormalizedSql.computeIfAbsent(normalized, StatementCounters::new);
+        StatementCounters existing = countersBySql.putIfAbsent(sql, counters);
+        return existing != null ? existing : counters;
+    }
+
+    /**
+     * Normalizes SQL by collapsing all whitespace to single spaces.
+     */
+    static @NotNull String normalize(@NotNull String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        boolean pendingSpace = false;
+        for (int i = 0, len = sql.length(); i < len; i++) {
+            char ch = sql.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                pendingSpace = sb.length() != 0;
+            } else {
+                if (pendingSpace)
+                    sb.append(' ');
+                pendingSpace = false;
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of all statements, ordered by total time descending.
+     */
+    public @NotNull List<StatementStatistics> getStatements() {
+        return countersByNormalizedSql.values().stream()
+                .map(StatementCounters::snapshot)
+                .sorted(comparing(StatementStatistics::getTotalTime).reversed())
+                .collect(toList());
+    }
+
+    /**
+     * Returns a snapshot of the statistics of given statement, if it has been executed.
+     */
+    public @NotNull Optional<StatementStatistics> getStatement(@NotNull String sql) {
+        return Optional.ofNullable(countersByNormalizedSql.get(normalize(sql))).map(StatementCounters::snapshot);
+    }
+
+    /**
+     * Returns the maximum amount of distinct statements tracked.
+     */
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    @Override
+    public int getStatementCount() {
+        return countersByNormalizedSql.size();
+    }
+
+    @Override
+    public long getTotalCalls() {
+        return getStatements().stream().mapToLong(StatementStatistics::getCalls).sum();
+    }
+
+    @Override
+    public long getTotalErrors() {
+        return getStatements().stream().mapToLong(StatementStatistics::getErrors).sum();
+    }
+
+    @Override
+    public Map<String, Long> getCallsBySql() {
+        return bySql(StatementStatistics::getCalls);
+    }
+
+    @Override
+    public Map<String, Long> getErrorsBySql() {
+        return bySql(StatementStatistics::getErrors);
+    }
+
+    @Override
+    public Map<String, Long> getTotalTimeMillisBySql() {
+        return bySql(s -> s.getTotalTime().toMillis());
+    }
+
+    @Override
+    public Map<String, Long> getMaxTimeMillisBySql() {
+        return bySql(s -> s.getMaxTime().toMillis());
+    }
+
+    @Override
+    public Map<String, Long> getP99TimeMillisBySql() {
+        return bySql(s -> s.getPercentile(99).toMillis());
+    }
+
+    @Override
+    public Map<String, Long> getReturnedRowsBySql() {
+        return bySql(StatementStatistics::getReturnedRows);
+    }
+
+    private @NotNull Map<String, Long> bySql(@NotNull Function<StatementStatistics, Long> function) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (StatementStatistics statistics : getStatements())
+            result.put(statistics.getSql(), function.apply(statistics));
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        countersBySql.clear();
+        countersByNormalizedSql.clear();
+    }
+
+    /**
+     * Registers this registry to the platform MBean server with given name.
+     *
+     * @return the registered name, which can be used for unregistering the bean
+     */
+    public @NotNull ObjectName registerMBean(@NotNull String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "QueryStatistics [statements=" + getStatementCount() + ']';
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link QueryStatistics}. Times are reported in milliseconds.
+ */
+public interface QueryStatisticsMXBean {
+
+    /**
+     * Returns the amount of distinct statements tracked.
+     */
+    int getStatementCount();
+
+    /**
+     * Returns the amount of successful executions over all statements.
+     */
+    long getTotalCalls();
+
+    /**
+     * Returns the amount of failed executions over all statements.
+     */
+    long getTotalErrors();
+
+    /**
+     * Returns the amount of successful executions per statement.
+     */
+    Map<String, Long> getCallsBySql();
+
+    /**
+     * Returns the amount of failed executions per statement.
+     */
+    Map<String, Long> getErrorsBySql();
+
+    /**
+     * Returns the total execution time per statement.
+     */
+    Map<String, Long> getTotalTimeMillisBySql();
+
+    /**
+     * Returns the longest execution time per statement.
+     */
+    Map<String, Long> getMaxTimeMillisBySql();
+
+    /**
+     * Returns the estimated 99th percentile of execution times per statement.
+     */
+    Map<String, Long> getP99TimeMillisBySql();
+
+    /**
+     * Returns the amount of rows returned per statement.
+     */
+    Map<String, Long> getReturnedRowsBySql();
+
+    /**
+     * Clears all collected statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Mutable counters of a single statement. Updated concurrently by executing threads
+ * without locking.
+ */
+final class StatementCounters {
+
+    private final @NotNull String sql;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder processNanos = new LongAdder();
+    private final LongAdder returnedRows = new LongAdder();
+    private final LongAdder affectedRows = new LongAdder();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    StatementCounters(@NotNull String sql) {
+        this.sql = requireNonNull(sql);
+    }
+
+    void recordSuccess(@NotNull QueryExecution execution) {
+        long nanos = execution.getTotalNanos();
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        processNanos.add(execution.getProcessNanos());
+        returnedRows.add(execution.getReturnedRows());
+        affectedRows.add(execution.getAffectedRows());
+        histogram.record(nanos);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    @NotNull
+    StatementStatistics snapshot() {
+        return new StatementStatistics(sql, calls.sum(), errors.sum(), totalNanos.sum(), maxNanos.get(),
+                processNanos.sum(), returnedRows.sum(), affectedRows.sum(), histogram.snapshot());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Snapshot of the aggregate statistics of a single statement.
+ *
+ * @see QueryStatistics#getStatements()
+ */
+public final class StatementStatistics {
+
+    private final @NotNull String sql;
+    private final long calls;
+    private final long errors;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long processNanos;
+    private final long returnedRows;
+    private final long affectedRows;
+    private final @NotNull long[] histogram;
+
+    StatementStatistics(@NotNull String sql, long calls, long errors, long totalNanos, long maxNanos,
+                        long processNanos, long returnedRows, long affectedRows, @NotNull long[] histogram) {
+        this.sql = requireNonNull(sql);
+        this.calls = calls;
+        this.errors = errors;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.processNanos = processNanos;
+        this.returnedRows = returnedRows;
+        this.affectedRows = affectedRows;
+        this.histogram = requireNonNull(histogram);
+    }
+
+    /**
+     * Returns the normalized SQL of the statement.
+     */
+    public @NotNull String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the amount of successful executions.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the amount of failed executions.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the total time spent in successful executions.
+     */
+    public @NotNull Duration getTotalTime() {
+        return Duration.ofNanos(totalNanos);
+    }
+
+    /**
+     * Returns the longest time spent in a single successful execution.
+     */
+    public @NotNull Duration getMaxTime() {
+        return Duration.ofNanos(maxNanos);
+    }
+
+    /**
+     * Returns the mean time of successful executions.
+     */
+    public @NotNull Duration getMeanTime() {
+        return calls == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos / calls);
+    }
+
+    /**
+     * Returns the total time spent fetching and mapping results.
+     */
+    public @NotNull Duration getProcessingTime() {
+        return Duration.ofNanos(processNanos);
+    }
+
+    /**
+     * Returns the total amount of rows returned.
+     */
+    public long getReturnedRows() {
+        return returnedRows;
+    }
+
+    /**
+     * Returns the total amount of rows affected by updates.
+     */
+    public long getAffectedRows() {
+        return affectedRows;
+    }
+
+    /**
+     * Returns an estimate of given percentile of execution times. The result is the upper bound
+     * of the histogram bucket containing the percentile, so it may overestimate the real value by 25%.
+     *
+     * @param percentile percentile between 0 and 100
+     */
+    public @NotNull Duration getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100, but was " + percentile);
+
+        long count = 0;
+        for (long bucket : histogram)
+            count += bucket;
+
+        if (count == 0)
+            return Duration.ZERO;
+
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target)
+                return Duration.ofNanos(Math.min(maxNanos, LatencyHistogram.bucketUpperBound(i) * 1000 + 999));
+        }
+
+        return Duration.ofNanos(maxNanos);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "StatementStatistics [sql=" + sql + ", calls=" + calls + ", errors=" + errors + ", totalTime=" + getTotalTime() + ", maxTime=" + getMaxTime() + ']';
+    }
+}
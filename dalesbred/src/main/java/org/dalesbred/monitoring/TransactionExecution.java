@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Information about a single physical transaction of {@link org.dalesbred.transaction.DefaultTransactionManager},
+ * passed to {@link TransactionListener}s.
+ *
+ * <p>Timings are measured with {@link System#nanoTime()}. Phases that have not been reached
+ * yet report zero.
+ */
+public interface TransactionExecution {
+
+    /**
+     * Returns the thread executing the transaction.
+     */
+    @NotNull
+    Thread getThread();
+
+    /**
+     * Returns the time it took to acquire the connection, including time spent waiting for the pool.
+     */
+    long getAcquireNanos();
+
+    /**
+     * Returns the time spent executing the transaction callback.
+     */
+    long getCallbackNanos();
+
+    /**
+     * Returns the time it took to commit or roll back the transaction.
+     */
+    long getCompletionNanos();
+
+    /**
+     * Returns the time that the connection has been held so far, or in total after it has been released.
+     */
+    long getHoldNanos();
+
+    /**
+     * Returns true if the transaction has been committed.
+     */
+    boolean isCommitted();
+
+    /**
+     * Returns true if the transaction has been rolled back, either because of an exception or because it
+     * was marked as rollback-only.
+     */
+    boolean isRolledBack();
+
+    /**
+     * Returns the amount of nested transactions (savepoints) created within the transaction.
+     */
+    int getSavepointCount();
+
+    /**
+     * Returns the amount of nested transactions that were rolled back to their savepoints.
+     */
+    int getRolledBackSavepointCount();
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener that is notified about the lifecycle of physical transactions. Listeners can be registered using
+ * {@link org.dalesbred.transaction.DefaultTransactionManager#addTransactionListener(TransactionListener)}.
+ *
+ * <p>Callbacks are invoked synchronously on the thread executing the transaction, so implementations should be
+ * fast and thread-safe. Exceptions thrown by listeners are logged and otherwise ignored.
+ */
+public interface TransactionListener {
+
+    /**
+     * Called after the connection for the transaction has been acquired, before the callback is executed.
+     */
+    default void afterBegin(@NotNull TransactionExecution execution) {
+    }
+
+    /**
+     * Called after the transaction has been committed or rolled back and its connection released.
+     * This is called even if acquiring, committing or releasing the connection fails.
+     */
+    default void afterCompletion(@NotNull TransactionExecution execution) {
+    }
+}
@@ -23,9 +23,11 @@
 package org.dalesbred.query;
 
 import org.dalesbred.annotation.SQL;
+import org.dalesbred.datatype.InList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
 
+import java.util.Collection;
 import java.util.List;
 
 import static org.dalesbred.internal.utils.CollectionUtils.mapToList;
@@ -37,13 +39,49 @@ final class NamedParameterSql {
 
     private final @NotNull List<String> parameterNames;
 
-    NamedParameterSql(@NotNull @SQL String sql, @NotNull List<String> parameterNames) {
+    /** Offsets of the placeholders in sql */
+    private final @NotNull List<Integer> placeholderOffsets;
+
+    NamedParameterSql(@NotNull @SQL String sql, @NotNull List<String> parameterNames, @NotNull List<Integer> placeholderOffsets) {
         this.sql = sql;
         this.parameterNames = parameterNames;
+        this.placeholderOffsets = placeholderOffsets;
     }
 
     public @NotNull SqlQuery toQuery(@NotNull VariableResolver variableResolver) {
-        return SqlQuery.query(sql, resolveParameterValues(variableResolver));
+        List<?> values = resolveParameterValues(variableResolver);
+
+        for (Object value : values)
+            if (value instanceof InList)
+                return expandInLists(values);
+
+        return SqlQuery.query(sql, values);
+    }
+
+    /**
+     * Replaces the placeholders of {@link InList} parameters with a list of placeholders, padded to
+     * the size of the bucket so that the SQL is shared between lists of similar size.
+     *
+     * @see QueryBuilder#appendBucketedPlaceholders(Collection, int)
+     */
+    private @NotNull SqlQuery expandInLists(@NotNull List<?> values) {
+        QueryBuilder builder = new QueryBuilder();
+        int offset = 0;
+        for (int i = 0; i < values.size(); i++) {
+            int placeholderOffset = placeholderOffsets.get(i);
+            builder.append(sql.substring(offset, placeholderOffset));
+            offset = placeholderOffset + 1;
+
+            Object value = values.get(i);
+            if (value instanceof InList) {
+                InList inList = (InList) value;
+                builder.appendBucketedPlaceholders(inList.getValues(), inList.getMaxSize());
+            } else {
+                builder.append(QueryBuilder.PLACEHOLDER, value);
+            }
+        }
+        builder.append(sql.substring(offset));
+        return builder.build();
     }
 
     private @NotNull List<?> resolveParameterValues(@NotNull VariableResolver variableResolver) {
@@ -43,6 +43,7 @@ final class NamedParameterSqlParser {
     private final @NotNull Lexer lexer;
     private final StringBuilder sqlBuilder;
     private final List<String> parameterNames = new ArrayList<>();
+    private final List<Integer> placeholderOffsets = new ArrayList<>();
 
     private NamedParameterSqlParser(@SQL @NotNull String sql) {
         this.lexer = new Lexer(sql);
@@ -55,7 +56,7 @@ final class NamedParameterSqlParser {
         while (parser.lexer.hasMore())
             parser.parseNext();
 
-        return new NamedParameterSql(parser.sqlBuilder.toString(), parser.parameterNames);
+        return new NamedParameterSql(parser.sqlBuilder.toString(), parser.parameterNames, parser.placeholderOffsets);
     }
 
     private void parseNext() {
@@ -67,6 +68,7 @@ final class NamedParameterSqlParser {
             sqlBuilder.append(readUntil("*/"));
 
         } else if (lexer.lookingAt(":")) {
+            placeholderOffsets.add(sqlBuilder.length());
             sqlBuilder.append('?');
             parameterNames.add(parseName());
 
@@ -22,6 +22,8 @@
 
 package org.dalesbred.query;
 
+import org.dalesbred.datatype.SqlArray;
+import org.dalesbred.dialect.Dialect;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -44,6 +46,9 @@ public final class QueryBuilder {
     /** Placeholder to be used in queries for values */
     public static final String PLACEHOLDER = "?";
 
+    /** Size of the largest bucket used by {@link #appendBucketedPlaceholders(Collection)} */
+    public static final int MAX_PLACEHOLDER_BUCKET = 1024;
+
     /** The SQL query gathered so far */
     private final StringBuilder query = new StringBuilder(100);
 
@@ -126,6 +131,76 @@ public final class QueryBuilder {
         return this;
     }
 
+    /**
+     * Adds placeholders for all elements of collection and then adds the values of collection itself,
+     * padding both to the next power of two by repeating the last value. This way the SQL is shared
+     * between collections of similar size, improving the hit rate of statement caches. Collections
+     * larger than {@link #MAX_PLACEHOLDER_BUCKET} are padded to a multiple of it.
+     *
+     * <p>Padding is only safe where duplicate values don't change the result, e.g. in {@code IN}-lists.
+     *
+     * @throws IllegalArgumentException if the collection is empty
+     */
+    public @NotNull QueryBuilder appendBucketedPlaceholders(@NotNull Collection<?> args) {
+        return appendBucketedPlaceholders(args, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds bucketed placeholders like {@link #appendBucketedPlaceholders(Collection)}, but pads the
+     * collection to at most {@code maxSize} placeholders, so that a collection fitting the size limit
+     * of the database is not padded beyond it.
+     *
+     * @throws IllegalArgumentException if the collection is empty
+     */
+    public @NotNull QueryBuilder appendBucketedPlaceholders(@NotNull Collection<?> args, int maxSize) {
+        if (args.isEmpty()) throw new IllegalArgumentException("can't create placeholders for empty collection");
+
+        int size = Math.max(args.size(), Math.min(placeholderBucket(args.size()), maxSize));
+        appendPlaceholders(size);
+        addArguments(args);
+
+        Object last = arguments.get(arguments.size() - 1);
+        for (int i = args.size(); i < size; i++)
+            arguments.add(last);
+
+        return this;
+    }
+
+    /**
+     * Returns the size of the bucket that given amount of placeholders is padded to.
+     */
+    static int placeholderBucket(int count) {
+        if (count > MAX_PLACEHOLDER_BUCKET)
+            return (count + MAX_PLACEHOLDER_BUCKET - 1) / MAX_PLACEHOLDER_BUCKET * MAX_PLACEHOLDER_BUCKET;
+
+        return count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /**
+     * Appends a predicate testing whether the preceding expression is one of given values, e.g.
+     * {@code builder.append("where id ").appendIn(dialect, SqlArray.ints(ids))}.
+     *
+     * <p>If the dialect supports it, the values are bound as a single array parameter, so the SQL is
+     * the same regardless of the amount of values. This lets the database reuse the plan of the
+     * statement. Otherwise the values are bound as separate parameters of {@code IN (?,?,...)}.
+     *
+     * @throws IllegalArgumentException if there are no values
+     * @see Dialect#arrayMembershipPredicate(String)
+     */
+    public @NotNull QueryBuilder appendIn(@NotNull Dialect dialect, @NotNull SqlArray values) {
+        if (values.getValues().isEmpty())
+            throw new IllegalArgumentException("no values for IN-predicate");
+
+        String predicate = dialect.arrayMembershipPredicate(values.getType());
+        if (predicate != null)
+            return append(predicate, values);
+
+        query.append("IN (");
+        appendPlaceholders(values.getValues());
+        query.append(')');
+        return this;
+    }
+
     /**
      * Is the query string empty?
      */
@@ -28,13 +28,12 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
 import java.sql.ResultSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.time.Duration;
+import java.util.*;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -50,6 +49,12 @@ public final class SqlQuery implements Serializable {
 
     private @Nullable FetchDirection fetchDirection;
 
+    private @Nullable Duration queryTimeout;
+
+    private @Nullable Integer maxRows;
+
+    private @Nullable Set<String> cacheDependencies;
+
     private static final long serialVersionUID = 1;
 
     private SqlQuery(@NotNull @SQL String sql, @NotNull List<?> args) {
@@ -155,6 +160,70 @@ public final class SqlQuery implements Serializable {
         this.fetchDirection = direction;
     }
 
+    /**
+     * Returns the query timeout of this query.
+     */
+    public @Nullable Duration getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * A non-null timeout will be set as the query timeout for the statements executed from this query,
+     * overriding the default timeout of the database. JDBC supports only timeouts of whole seconds, so
+     * the timeout is rounded up to the next second.
+     *
+     * @param timeout query timeout or null
+     * @throws IllegalArgumentException if timeout is not positive
+     * @see java.sql.Statement#setQueryTimeout(int)
+     */
+    public void setQueryTimeout(@Nullable Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero()))
+            throw new IllegalArgumentException("Illegal query timeout " + timeout + ". Timeout must be null or positive");
+        this.queryTimeout = timeout;
+    }
+
+    /**
+     * Returns the maximum amount of rows that this query will return.
+     */
+    public @Nullable Integer getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * A non-null value will be set as the maximum amount of rows for the statements executed from this query,
+     * overriding the default of the database. Excess rows are silently dropped. Zero means that there is no limit.
+     *
+     * @param maxRows maximum amount of rows or null
+     * @throws IllegalArgumentException if maxRows is < 0
+     * @see java.sql.Statement#setMaxRows(int)
+     */
+    public void setMaxRows(@Nullable Integer maxRows) {
+        if (maxRows != null && maxRows < 0)
+            throw new IllegalArgumentException("Illegal max rows " + maxRows + ". Max rows must be null or >= 0");
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Returns the tables that the cached results of this query depend on, or null if results of this query
+     * are not cached.
+     */
+    public @Nullable Set<String> getCacheDependencies() {
+        return cacheDependencies;
+    }
+
+    /**
+     * A non-null value marks the results of this query as cacheable by the {@link org.dalesbred.cache.ResultCache}
+     * of the database. Cached results are invalidated when statements executed through the database modify any of
+     * given tables. Empty set means that results are only invalidated when they expire. Since cached results are
+     * shared, only lists, maps and single results of immutable types are cached.
+     *
+     * @param tables names of tables that the results depend on, or null to disable caching
+     * @see org.dalesbred.Database#setResultCache(org.dalesbred.cache.ResultCache)
+     */
+    public void setCacheDependencies(@Nullable Set<String> tables) {
+        this.cacheDependencies = tables != null ? unmodifiableSet(new LinkedHashSet<>(tables)) : null;
+    }
+
     @Override
     public @NotNull String toString() {
         StringBuilder sb = new StringBuilder(10 + sql.length() + 10 * args.size());
@@ -24,6 +24,7 @@ package org.dalesbred.transaction;
 
 import org.dalesbred.dialect.Dialect;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Optional;
 
@@ -31,34 +32,45 @@ public abstract class AbstractTransactionManager implements TransactionManager {
 
     protected abstract @NotNull Optional<DefaultTransaction> getActiveTransaction();
 
+    /**
+     * Executes callback in a new transaction that must be finished by given deadline. When the transaction
+     * is retried, the same deadline is passed to every attempt.
+     */
     protected abstract <T> T withNewTransaction(@NotNull TransactionCallback<T> callback,
                                                 @NotNull Dialect dialect,
-                                                @NotNull Isolation isolation);
+                                                @NotNull TransactionSettings settings,
+                                                @Nullable Deadline deadline);
 
     protected abstract <T> T withSuspendedTransaction(@NotNull TransactionCallback<T> callback,
-                                                      @NotNull Isolation isolation,
+                                                      @NotNull TransactionSettings settings,
                                                       @NotNull Dialect dialect);
 
     @Override
     public <T> T withTransaction(@NotNull TransactionSettings settings, @NotNull TransactionCallback<T> callback, @NotNull Dialect dialect) {
         Propagation propagation = settings.getPropagation();
-        Isolation isolation = settings.getIsolation();
 
         DefaultTransaction existingTransaction = getActiveTransaction().orElse(null);
 
         if (existingTransaction != null) {
             if (propagation == Propagation.REQUIRES_NEW)
-                return withSuspendedTransaction(callback, isolation, dialect);
+                return withSuspendedTransaction(callback, settings, dialect);
             else if (propagation == Propagation.NESTED)
-                return existingTransaction.nested(callback, dialect);
+                return existingTransaction.nested(callback, dialect, Deadline.afterTimeout(settings.getTimeout()));
             else
-                return existingTransaction.join(callback, dialect);
+                return existingTransaction.join(callback, dialect, Deadline.afterTimeout(settings.getTimeout()));
 
         } else {
             if (propagation == Propagation.MANDATORY)
                 throw new NoActiveTransactionException("Transaction propagation was MANDATORY, but there was no existing transaction.");
 
-            return withNewTransaction(callback, dialect, isolation);
+            // Start the clock before acquiring the connection so that waiting for the pool counts as well.
+            Deadline deadline = Deadline.afterTimeout(settings.getTimeout());
+
+            RetryPolicy retryPolicy = settings.getRetryPolicy();
+            if (retryPolicy != null)
+                return retryPolicy.execute(() -> withNewTransaction(callback, dialect, settings, deadline), deadline);
+            else
+                return withNewTransaction(callback, dialect, settings, deadline);
         }
     }
 
@@ -69,6 +81,15 @@ public abstract class AbstractTransactionManager implements TransactionManager {
         return transaction.join(callback, dialect);
     }
 
+    @Override
+    public void afterCompletion(@NotNull Runnable action) {
+        DefaultTransaction transaction = getActiveTransaction().orElse(null);
+        if (transaction != null)
+            transaction.afterCompletion(action);
+        else
+            action.run();
+    }
+
     @Override
     public boolean hasActiveTransaction() {
         return getActiveTransaction().isPresent();
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The transaction context of {@link DefaultTransactionManager} as bound to a {@link ContextCarrier}.
+ * The contents are private to the transaction manager: carriers only store and restore instances.
+ */
+public final class CarriedContext {
+
+    /**
+     * The active transaction, or null if the transactions of the enclosing context are suspended
+     */
+    final @Nullable DefaultTransaction transaction;
+
+    /**
+     * Whether the context holds a permit from the concurrency limiter of the transaction manager
+     */
+    final boolean holdsPermit;
+
+    CarriedContext(@Nullable DefaultTransaction transaction, boolean holdsPermit) {
+        this.transaction = transaction;
+        this.holdsPermit = holdsPermit;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Limits the amount of concurrent transactions of {@link DefaultTransactionManager}. Transactions that
+ * can't start immediately wait in a bounded queue before acquiring a connection, which keeps excess
+ * threads away from the connection pool under overload. Waiting transactions are admitted in order of
+ * their {@link TransactionPriority}, and in FIFO order within the same priority. Transactions are rejected
+ * with {@link ConcurrencyLimitExceededException} if the queue is full or if they wait longer than the
+ * maximum wait time or their own timeout.
+ *
+ * @see DefaultTransactionManager#setConcurrencyLimiter(ConcurrencyLimiter)
+ */
+public final class ConcurrencyLimiter {
+
+    private final int maxConcurrency;
+
+    private final int maxQueueSize;
+
+    private final @NotNull Duration maxWait;
+
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+
+    private final @NotNull Map<TransactionPriority, ArrayDeque<Waiter>> queues = new EnumMap<>(TransactionPriority.class);
+
+    /** Amount of permits held, guarded by lock */
+    private int active = 0;
+
+    /** Amount of waiters in all queues, guarded by lock */
+    private int queued = 0;
+
+    private final @NotNull LongAdder acquired = new LongAdder();
+
+    private final @NotNull LongAdder rejected = new LongAdder();
+
+    private final @NotNull LongAdder totalWaitNanos = new LongAdder();
+
+    private final @NotNull LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    private ConcurrencyLimiter(@NotNull Builder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+        this.maxQueueSize = builder.maxQueueSize;
+        this.maxWait = builder.maxWait;
+        for (TransactionPriority priority : TransactionPriority.values())
+            queues.put(priority, new ArrayDeque<>());
+    }
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Waits for a permit for a transaction of given priority.
+     *
+     * @param timeout maximum time to wait, or null. If both this and the configured maximum wait apply, the shorter one is used.
+     * @throws ConcurrencyLimitExceededException if the queue is full or waiting times out
+     */
+    void acquire(@NotNull TransactionPriority priority, @Nullable Duration timeout) {
+        long startTime = System.nanoTime();
+        long remaining = maxWait.toNanos();
+        if (timeout != null)
+            remaining = Math.min(remaining, timeout.toNanos());
+
+        lock.lock();
+        try {
+            if (active < maxConcurrency && queued == 0) {
+                active++;
+                acquired.increment();
+                return;
+            }
+
+            if (queued >= maxQueueSize) {
+                rejected.increment();
+                throw new ConcurrencyLimitExceededException("Transaction queue is full (" + maxQueueSize + " waiting transactions)");
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queues.get(priority).addLast(waiter);
+            queued++;
+
+            while (!waiter.granted) {
+                if (remaining <= 0) {
+                    abandon(waiter, priority);
+                    throw new ConcurrencyLimitExceededException("Timed out waiting for transaction permit after " + Duration.ofNanos(System.nanoTime() - startTime));
+                }
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        // Too late to abandon the permit, so keep it and let the caller see the interrupt later
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    abandon(waiter, priority);
+                    Thread.currentThread().interrupt();
+                    throw new ConcurrencyLimitExceededException("Interrupted while waiting for transaction permit");
+                }
+            }
+
+            long waitNanos = System.nanoTime() - startTime;
+            acquired.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void abandon(@NotNull Waiter waiter, @NotNull TransactionPriority priority) {
+        queues.get(priority).remove(waiter);
+        queued--;
+        rejected.increment();
+    }
+
+    /**
+     * Releases a permit acquired with {@link #acquire(TransactionPriority, Duration)}, handing it to
+     * the next waiting transaction if there is one.
+     */
+    void release() {
+        lock.lock();
+        try {
+            for (ArrayDeque<Waiter> queue : queues.values()) {
+                Waiter next = queue.pollFirst();
+                if (next != null) {
+                    queued--;
+                    next.granted = true;
+                    next.condition.signal();
+                    return;
+                }
+            }
+            active--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of transactions currently holding a permit.
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of transactions currently waiting for a permit.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of transactions that have been admitted.
+     */
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * Returns the amount of transactions that have been rejected because the queue was full or they timed out.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the total time that admitted transactions have waited for permits.
+     */
+    public @NotNull Duration getTotalWaitTime() {
+        return Duration.ofNanos(totalWaitNanos.sum());
+    }
+
+    /**
+     * Returns the longest time that an admitted transaction has waited for a permit.
+     */
+    public @NotNull Duration getMaxWaitTime() {
+        return Duration.ofNanos(maxWaitNanos.get());
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "ConcurrencyLimiter[maxConcurrency=" + maxConcurrency + ", maxQueueSize=" + maxQueueSize + ", maxWait=" + maxWait + ']';
+    }
+
+    private static final class Waiter {
+
+        private final @NotNull Condition condition;
+
+        /** Has the permit been handed to this waiter, guarded by lock */
+        private boolean granted = false;
+
+        Waiter(@NotNull Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    public static final class Builder {
+
+        private int maxConcurrency = 10;
+
+        private int maxQueueSize = 100;
+
+        private @NotNull Duration maxWait = Duration.ofSeconds(30);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum amount of concurrent transactions. The default is 10.
+         */
+        public @NotNull Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0)
+                throw new IllegalArgumentException("maxConcurrency must be positive, but was " + maxConcurrency);
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of transactions waiting for a permit. The default is 100.
+         */
+        public @NotNull Builder maxQueueSize(int maxQueueSize) {
+            if (maxQueueSize < 0)
+                throw new IllegalArgumentException("maxQueueSize must not be negative, but was " + maxQueueSize);
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time that a transaction waits for a permit. The default is 30 seconds.
+         */
+        public @NotNull Builder maxWait(@NotNull Duration maxWait) {
+            if (maxWait.isNegative())
+                throw new IllegalArgumentException("maxWait must not be negative, but was " + maxWait);
+            this.maxWait = requireNonNull(maxWait);
+            return this;
+        }
+
+        public @NotNull ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
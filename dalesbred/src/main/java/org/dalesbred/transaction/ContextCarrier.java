@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * Carries the active transaction of {@link DefaultTransactionManager}. Values are bound only for the dynamic
+ * extent of {@link #callWith(Object, Supplier)}, which allows implementations based on scoped values as well as
+ * thread-locals. Three implementations are provided: {@link #threadLocal()}, {@link #explicit()} and
+ * {@link #scoped()}.
+ * <p>
+ * Only the transaction is carried. The state that {@link org.dalesbred.Database} keeps for a single statement,
+ * like the JDBC objects to free after execution, stays on the executing thread, since statements are executed
+ * synchronously. State that outlives a statement, like buffered updates and the query reported by
+ * {@link org.dalesbred.TransactionWatchdog}, follows the transaction only when the task is wrapped with
+ * {@link org.dalesbred.Database#propagate(Supplier)} instead of {@link #propagate(Supplier)}.
+ *
+ * @see DefaultTransactionManager#DefaultTransactionManager(org.dalesbred.connection.ConnectionProvider, ContextCarrier)
+ */
+public interface ContextCarrier<T> {
+
+    /**
+     * Returns the currently bound value, or null if there is none.
+     */
+    @Nullable T get();
+
+    /**
+     * Executes given action with value bound to this carrier, restoring the previous value afterwards.
+     */
+    <R> R callWith(@Nullable T value, @NotNull Supplier<R> action);
+
+    /**
+     * Captures the value currently bound to this carrier and returns an action that executes given action
+     * with the captured value bound. This can be used for running a task on another thread within the
+     * context of the current thread. Since transactions share a single connection, the returned action
+     * must not be executed concurrently with other code using the same context.
+     */
+    default @NotNull <R> Supplier<R> propagate(@NotNull Supplier<R> action) {
+        T value = get();
+        return () -> callWith(value, action);
+    }
+
+    /**
+     * Returns a carrier that binds values to the current thread. This is the default.
+     */
+    static @NotNull <T> ContextCarrier<T> threadLocal() {
+        return new ThreadLocalContextCarrier<>();
+    }
+
+    /**
+     * Returns a carrier for a single flow of execution, which passes the context between threads only
+     * explicitly: the bound value is visible only to the thread that bound it, and while an action returned
+     * by {@link #propagate(Supplier)} runs, only to the thread executing it. Using the carrier from other
+     * threads while a value is bound throws {@link IllegalStateException}, so each concurrent flow needs
+     * a transaction manager of its own.
+     */
+    static @NotNull <T> ContextCarrier<T> explicit() {
+        return new ExplicitContextCarrier<>();
+    }
+
+    /**
+     * Returns a carrier based on {@code java.lang.ScopedValue}, which doesn't pin the carrier threads of
+     * virtual threads when a transaction blocks.
+     *
+     * @throws UnsupportedOperationException if scoped values are not available on this JVM
+     */
+    static @NotNull <T> ContextCarrier<T> scoped() {
+        return new ScopedValueContextCarrier<>();
+    }
+}
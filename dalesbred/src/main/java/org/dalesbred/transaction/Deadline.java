@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * A point in time by which a transaction should be finished.
+ */
+final class Deadline {
+
+    /** The deadline as {@link System#nanoTime()} */
+    private final long nanoTime;
+
+    private Deadline(long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns a deadline that is given timeout from now, or null if timeout is null.
+     */
+    static @Nullable Deadline afterTimeout(@Nullable Duration timeout) {
+        return timeout != null ? new Deadline(System.nanoTime() + timeout.toNanos()) : null;
+    }
+
+    /**
+     * Returns the earlier of given deadlines, treating null as a deadline that never arrives.
+     */
+    static @Nullable Deadline earlier(@Nullable Deadline d1, @Nullable Deadline d2) {
+        if (d1 == null) return d2;
+        if (d2 == null) return d1;
+        return (d1.nanoTime - d2.nanoTime) <= 0 ? d1 : d2;
+    }
+
+    /**
+     * Returns the time remaining before this deadline. Negative if the deadline has passed.
+     */
+    @NotNull Duration remaining() {
+        return Duration.ofNanos(nanoTime - System.nanoTime());
+    }
+}
@@ -25,12 +25,15 @@ package org.dalesbred.transaction;
 import org.dalesbred.dialect.Dialect;
 import org.dalesbred.internal.utils.Throwables;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Savepoint;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
 
@@ -38,25 +41,59 @@ final class DefaultTransaction {
 
     private final @NotNull Connection connection;
 
+    /** Deadline of the whole transaction, or null */
+    private final @Nullable Deadline deadline;
+
+    /** Tracker for the lifecycle of the transaction, or null if nobody is listening */
+    private final @Nullable TransactionExecutionTracker tracker;
+
+    /** Actions to execute after the transaction has completed */
+    private final @NotNull Set<Runnable> completionActions = new LinkedHashSet<>();
+
     private static final @NotNull Logger log = LoggerFactory.getLogger(DefaultTransaction.class);
 
     DefaultTransaction(@NotNull Connection connection) {
+        this(connection, null);
+    }
+
+    DefaultTransaction(@NotNull Connection connection, @Nullable Deadline deadline) {
+        this(connection, deadline, null);
+    }
+
+    DefaultTransaction(@NotNull Connection connection, @Nullable Deadline deadline, @Nullable TransactionExecutionTracker tracker) {
         this.connection = requireNonNull(connection);
+        this.deadline = deadline;
+        this.tracker = tracker;
     }
 
     <T> T execute(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect) {
+        try {
+            return executeAndComplete(callback, dialect);
+        } finally {
+            runCompletionActions();
+        }
+    }
+
+    private <T> T executeAndComplete(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect) {
         try {
             try {
-                TransactionContext ctx = new DefaultTransactionContext(connection);
-                T value = callback.execute(ctx);
+                TransactionContext ctx = new DefaultTransactionContext(connection, deadline);
+                T value;
+                long callbackStartTime = System.nanoTime();
+                try {
+                    value = callback.execute(ctx);
+                } finally {
+                    if (tracker != null)
+                        tracker.callbackExecuted(callbackStartTime);
+                }
                 if (ctx.isRollbackOnly())
-                    connection.rollback();
+                    rollback();
                 else
-                    connection.commit();
+                    commit();
                 return value;
 
             } catch (Exception e) {
-                connection.rollback();
+                rollback();
                 log.warn("rolled back transaction because of exception: {}", e, e);
                 throw Throwables.propagate(e, SQLException.class);
             }
@@ -65,20 +102,22 @@ final class DefaultTransaction {
         }
     }
 
-    <T> T nested(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect) {
+    <T> T nested(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect, @Nullable Deadline nestedDeadline) {
         try {
             Savepoint savepoint = connection.setSavepoint();
+            if (tracker != null)
+                tracker.savepointCreated();
             try {
-                TransactionContext ctx = new DefaultTransactionContext(connection);
+                TransactionContext ctx = new DefaultTransactionContext(connection, Deadline.earlier(deadline, nestedDeadline));
                 T value = callback.execute(ctx);
                 if (ctx.isRollbackOnly())
-                    connection.rollback(savepoint);
+                    rollbackToSavepoint(savepoint);
                 else
                     connection.releaseSavepoint(savepoint);
                 return value;
 
             } catch (Exception e) {
-                connection.rollback(savepoint);
+                rollbackToSavepoint(savepoint);
                 log.warn("rolled back nested transaction because of exception: {}", e, e);
                 throw Throwables.propagate(e, SQLException.class);
             }
@@ -87,9 +126,48 @@ final class DefaultTransaction {
         }
     }
 
+    void afterCompletion(@NotNull Runnable action) {
+        completionActions.add(requireNonNull(action));
+    }
+
+    private void runCompletionActions() {
+        for (Runnable action : completionActions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("completion action " + action + " threw exception", e);
+            }
+        }
+        completionActions.clear();
+    }
+
+    private void commit() throws SQLException {
+        long startTime = System.nanoTime();
+        connection.commit();
+        if (tracker != null)
+            tracker.committed(startTime);
+    }
+
+    private void rollback() throws SQLException {
+        long startTime = System.nanoTime();
+        connection.rollback();
+        if (tracker != null)
+            tracker.rolledBack(startTime);
+    }
+
+    private void rollbackToSavepoint(@NotNull Savepoint savepoint) throws SQLException {
+        connection.rollback(savepoint);
+        if (tracker != null)
+            tracker.savepointRolledBack();
+    }
+
     <T> T join(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect) {
+        return join(callback, dialect, null);
+    }
+
+    <T> T join(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect, @Nullable Deadline joinDeadline) {
         try {
-            return callback.execute(new DefaultTransactionContext(connection));
+            return callback.execute(new DefaultTransactionContext(connection, Deadline.earlier(deadline, joinDeadline)));
         } catch (SQLException e) {
             throw dialect.convertException(e);
         }
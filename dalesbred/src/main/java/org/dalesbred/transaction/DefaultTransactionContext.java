@@ -23,18 +23,23 @@
 package org.dalesbred.transaction;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
+import java.time.Duration;
+import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
 
 final class DefaultTransactionContext implements TransactionContext {
 
     private final @NotNull Connection connection;
+    private final @Nullable Deadline deadline;
     private boolean rollbackOnly = false;
 
-    DefaultTransactionContext(@NotNull Connection connection) {
+    DefaultTransactionContext(@NotNull Connection connection, @Nullable Deadline deadline) {
         this.connection = requireNonNull(connection);
+        this.deadline = deadline;
     }
 
     /**
@@ -57,4 +62,9 @@ final class DefaultTransactionContext implements TransactionContext {
     public boolean isRollbackOnly() {
         return rollbackOnly;
     }
+
+    @Override
+    public @NotNull Optional<Duration> getRemainingTime() {
+        return deadline != null ? Optional.of(deadline.remaining()) : Optional.empty();
+    }
 }
@@ -24,11 +24,15 @@ package org.dalesbred.transaction;
 
 import org.dalesbred.connection.ConnectionProvider;
 import org.dalesbred.dialect.Dialect;
+import org.dalesbred.monitoring.TransactionListener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
@@ -38,59 +42,148 @@ import static java.util.Objects.requireNonNull;
 public final class DefaultTransactionManager extends AbstractTransactionManager {
 
     /**
-     * The current active transaction of this thread, or null
+     * Carries the context of the current flow, or null
      */
-    private final @NotNull ThreadLocal<DefaultTransaction> activeTransaction = new ThreadLocal<>();
+    private final @NotNull ContextCarrier<CarriedContext> activeTransaction;
 
     private final @NotNull ConnectionProvider connectionProvider;
 
+    /**
+     * Limits the amount of concurrent transactions, if set
+     */
+    private volatile @Nullable ConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Listeners notified about the lifecycle of transactions
+     */
+    private final @NotNull CopyOnWriteArrayList<TransactionListener> transactionListeners = new CopyOnWriteArrayList<>();
+
     public DefaultTransactionManager(@NotNull ConnectionProvider connectionProvider) {
+        this(connectionProvider, ContextCarrier.threadLocal());
+    }
+
+    /**
+     * Constructs a transaction manager that uses given carrier for tracking the active transaction.
+     *
+     * @see ContextCarrier#threadLocal()
+     * @see ContextCarrier#explicit()
+     * @see ContextCarrier#scoped()
+     */
+    public DefaultTransactionManager(@NotNull ConnectionProvider connectionProvider, @NotNull ContextCarrier<CarriedContext> carrier) {
         this.connectionProvider = requireNonNull(connectionProvider);
+        this.activeTransaction = requireNonNull(carrier);
     }
 
     @Override
     protected <T> T withNewTransaction(@NotNull TransactionCallback<T> callback,
                                        @NotNull Dialect dialect,
-                                       @NotNull Isolation isolation) {
-        Connection connection = openConnection(isolation, dialect);
+                                       @NotNull TransactionSettings settings,
+                                       @Nullable Deadline deadline) {
+        // A context holding a permit keeps it for new transactions started within it (e.g. REQUIRES_NEW),
+        // otherwise they would wait for the permit held by their own caller.
+        ConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null || holdsPermit())
+            return executeNewTransaction(callback, dialect, settings, deadline, limiter != null);
+
+        limiter.acquire(settings.getPriority(), deadline != null ? deadline.remaining() : null);
+        try {
+            return executeNewTransaction(callback, dialect, settings, deadline, true);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private boolean holdsPermit() {
+        CarriedContext context = activeTransaction.get();
+        return context != null && context.holdsPermit;
+    }
+
+    private <T> T executeNewTransaction(@NotNull TransactionCallback<T> callback,
+                                        @NotNull Dialect dialect,
+                                        @NotNull TransactionSettings settings,
+                                        @Nullable Deadline deadline,
+                                        boolean holdsPermit) {
+        TransactionExecutionTracker tracker = transactionListeners.isEmpty() ? null : new TransactionExecutionTracker(transactionListeners);
+        Connection connection = openConnection(settings, dialect);
         try {
-            DefaultTransaction newTransaction = new DefaultTransaction(connection);
-            activeTransaction.set(newTransaction);
-            return newTransaction.execute(callback, dialect);
+            if (tracker != null)
+                tracker.acquired();
+            DefaultTransaction newTransaction = new DefaultTransaction(connection, deadline, tracker);
+            return activeTransaction.callWith(new CarriedContext(newTransaction, holdsPermit), () -> newTransaction.execute(callback, dialect));
         } finally {
-            activeTransaction.set(null);
-            releaseConnection(connection, dialect);
+            // Listeners are notified about completion only if they were notified about the beginning
+            try {
+                releaseConnection(connection, settings, dialect);
+            } finally {
+                if (tracker != null)
+                    tracker.released();
+            }
         }
     }
 
+    /**
+     * Registers a listener to be notified about the lifecycle of physical transactions.
+     */
+    public void addTransactionListener(@NotNull TransactionListener listener) {
+        transactionListeners.add(requireNonNull(listener));
+    }
+
+    /**
+     * Removes a listener previously registered with {@link #addTransactionListener(TransactionListener)}.
+     */
+    public void removeTransactionListener(@NotNull TransactionListener listener) {
+        transactionListeners.remove(listener);
+    }
+
+    /**
+     * Returns the limiter for concurrent transactions, or null if the amount of transactions is not limited.
+     */
+    public @Nullable ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Sets the limiter for concurrent transactions. New transactions wait for a permit from the limiter
+     * before acquiring a connection. Null disables limiting, which is the default.
+     * <p>
+     * The permit is held by the outermost transaction: new transactions started within it, like those with
+     * {@link Propagation#REQUIRES_NEW}, use the same permit. Transactions started on other threads, including
+     * the tasks of {@link org.dalesbred.Database#parallelRead}, need permits of their own.
+     */
+    public void setConcurrencyLimiter(@Nullable ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
     @Override
     protected <T> T withSuspendedTransaction(@NotNull TransactionCallback<T> callback,
-                                             @NotNull Isolation isolation,
+                                             @NotNull TransactionSettings settings,
                                              @NotNull Dialect dialect) {
-        DefaultTransaction suspended = getActiveTransaction().orElse(null);
-        try {
-            activeTransaction.set(null);
+        TransactionSettings newSettings = settings.copy();
+        newSettings.setPropagation(Propagation.REQUIRED);
+        return activeTransaction.callWith(new CarriedContext(null, holdsPermit()), () -> withTransaction(newSettings, callback, dialect));
+    }
 
-            TransactionSettings settings = new TransactionSettings();
-            settings.setPropagation(Propagation.REQUIRED);
-            settings.setIsolation(isolation);
-            return withTransaction(settings, callback, dialect);
-        } finally {
-            activeTransaction.set(suspended);
-        }
+    @Override
+    public @NotNull <T> Supplier<T> propagate(@NotNull Supplier<T> task) {
+        return activeTransaction.propagate(task);
     }
 
     @Override
     protected @NotNull Optional<DefaultTransaction> getActiveTransaction() {
-        return Optional.ofNullable(activeTransaction.get());
+        CarriedContext context = activeTransaction.get();
+        return Optional.ofNullable(context != null ? context.transaction : null);
     }
 
-    private @NotNull Connection openConnection(@NotNull Isolation isolation, @NotNull Dialect dialect) {
+    private @NotNull Connection openConnection(@NotNull TransactionSettings settings, @NotNull Dialect dialect) {
         try {
-            Connection connection = connectionProvider.getConnection();
+            Isolation isolation = settings.getIsolation();
+
+            Connection connection = connectionProvider.getConnection(settings.isReadOnly());
             connection.setAutoCommit(false);
             if (isolation != Isolation.DEFAULT)
                 connection.setTransactionIsolation(isolation.getJdbcLevel());
+            if (settings.isReadOnly())
+                connection.setReadOnly(true);
 
             return connection;
         } catch (SQLException e) {
@@ -98,9 +191,15 @@ public final class DefaultTransactionManager extends AbstractTransactionManager
         }
     }
 
-    private void releaseConnection(@NotNull Connection connection, @NotNull Dialect dialect) {
+    private void releaseConnection(@NotNull Connection connection, @NotNull TransactionSettings settings, @NotNull Dialect dialect) {
         try {
-            connectionProvider.releaseConnection(connection);
+            // Pooled connections are reused by other transactions, so don't leak the read-only flag to them.
+            try {
+                if (settings.isReadOnly())
+                    connection.setReadOnly(false);
+            } finally {
+                connectionProvider.releaseConnection(connection);
+            }
         } catch (SQLException e) {
             throw dialect.convertException(e);
         }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Carrier for a single flow of execution that may move between threads. The bound value is owned by the thread
+ * that bound it, and it's handed over to another thread only explicitly with {@link #propagate(Supplier)}.
+ * Using the carrier from any other thread while a value is bound fails, instead of silently sharing the value
+ * between independent flows.
+ */
+final class ExplicitContextCarrier<T> implements ContextCarrier<T> {
+
+    private final @NotNull AtomicReference<Binding<T>> binding = new AtomicReference<>();
+
+    @Override
+    public @Nullable T get() {
+        Binding<T> current = binding.get();
+        if (current == null)
+            return null;
+
+        current.checkOwner();
+        return current.value;
+    }
+
+    @Override
+    public <R> R callWith(@Nullable T value, @NotNull Supplier<R> action) {
+        Binding<T> previous = binding.get();
+        if (previous != null)
+            previous.checkOwner();
+
+        return callWith(previous, new Binding<>(value), action);
+    }
+
+    @Override
+    public @NotNull <R> Supplier<R> propagate(@NotNull Supplier<R> action) {
+        Binding<T> captured = binding.get();
+        if (captured == null)
+            return action;
+
+        captured.checkOwner();
+        return () -> callWith(captured, new Binding<>(captured.value), action);
+    }
+
+    private <R> R callWith(@Nullable Binding<T> expected, @NotNull Binding<T> newBinding, @NotNull Supplier<R> action) {
+        if (!binding.compareAndSet(expected, newBinding))
+            throw new IllegalStateException("context has changed: the carrier is used by several flows concurrently, or the context was propagated after it ended");
+
+        try {
+            return action.get();
+        } finally {
+            binding.set(expected);
+        }
+    }
+
+    private static final class Binding<T> {
+
+        private final @Nullable T value;
+
+        private final @NotNull Thread owner = Thread.currentThread();
+
+        Binding(@Nullable T value) {
+            this.value = value;
+        }
+
+        void checkOwner() {
+            if (owner != Thread.currentThread())
+                throw new IllegalStateException("context is owned by " + owner + ", use propagate() to hand it over to " + Thread.currentThread());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.dalesbred.Database;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Policy for automatically retrying transactions that fail because of concurrent updates.
+ * Retries are performed only for outermost transactions: a transaction that joins an existing
+ * transaction can't be retried on its own.
+ * <p>
+ * By default only {@link TransactionSerializationException}s are retried. Retries are delayed
+ * using exponential backoff with random jitter so that competing transactions don't collide
+ * again immediately.
+ *
+ * @see TransactionSettings#setRetryPolicy(RetryPolicy)
+ * @see Database#withTransaction(TransactionSettings, TransactionCallback)
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+
+    private final @NotNull Duration initialBackoff;
+
+    private final @NotNull Duration maxBackoff;
+
+    private final boolean jitter;
+
+    private final @NotNull List<Class<? extends Throwable>> retryableExceptions;
+
+    private final @NotNull RetryStatistics statistics = new RetryStatistics();
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private RetryPolicy(@NotNull Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.jitter = builder.jitter;
+        this.retryableExceptions = unmodifiableList(new ArrayList<>(builder.retryableExceptions));
+    }
+
+    /**
+     * Returns a builder for constructing retry policies.
+     */
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the maximum amount of times the transaction is attempted, including the first attempt.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns true if given exception should cause the transaction to be retried.
+     */
+    public boolean isRetryable(@NotNull Throwable exception) {
+        for (Class<? extends Throwable> type : retryableExceptions)
+            if (type.isInstance(exception))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the delay to wait before given retry. The first retry is number 1.
+     */
+    public @NotNull Duration getBackoff(int retry) {
+        if (retry < 1) throw new IllegalArgumentException("retry must be positive, but was: " + retry);
+
+        // Shift at most 30 times to avoid overflow, the max backoff will have kicked in long before that anyway.
+        long exponential = initialBackoff.toNanos() << Math.min(retry - 1, 30);
+        long nanos = (exponential < 0) ? maxBackoff.toNanos() : Math.min(exponential, maxBackoff.toNanos());
+
+        if (jitter && nanos > 0)
+            nanos = ThreadLocalRandom.current().nextLong(nanos + 1);
+
+        return Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Executes given action, retrying it according to this policy. Transaction managers use this
+     * to retry whole transactions, it must not be used to retry operations inside a transaction.
+     */
+    public <T> T execute(@NotNull Supplier<T> action) {
+        return execute(action, null);
+    }
+
+    /**
+     * Executes given action like {@link #execute(Supplier)}, but stops retrying when given timeout runs out.
+     * The timeout covers all attempts and the delays between them: if the time remaining is shorter than
+     * the next backoff, the last failure is thrown without waiting. The action receives the time remaining,
+     * or null if there is no timeout.
+     */
+    public <T> T execute(@Nullable Duration timeout, @NotNull Function<Duration, T> action) {
+        Deadline deadline = Deadline.afterTimeout(timeout);
+        return execute(() -> action.apply(deadline != null ? deadline.remaining() : null), deadline);
+    }
+
+    <T> T execute(@NotNull Supplier<T> action, @Nullable Deadline deadline) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = action.get();
+                if (attempt > 1)
+                    statistics.recordRecovery();
+                return result;
+
+            } catch (RuntimeException e) {
+                if (!isRetryable(e))
+                    throw e;
+
+                if (attempt >= maxAttempts) {
+                    statistics.recordExhaustion();
+                    throw e;
+                }
+
+                Duration backoff = getBackoff(attempt);
+                if (deadline != null && deadline.remaining().compareTo(backoff) <= 0) {
+                    log.debug("not retrying transaction after attempt {}/{} failed, timeout would expire before the next attempt", attempt, maxAttempts);
+                    statistics.recordExhaustion();
+                    throw e;
+                }
+
+                log.debug("retrying transaction in {} ms after attempt {}/{} failed: {}", backoff.toMillis(), attempt, maxAttempts, e.toString());
+                statistics.recordRetry();
+                sleep(backoff, e);
+            }
+        }
+    }
+
+    private static void sleep(@NotNull Duration duration, @NotNull RuntimeException failure) {
+        try {
+            Thread.sleep(duration.toMillis(), (int) (duration.toNanos() % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.addSuppressed(e);
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the statistics of transactions executed with this policy.
+     */
+    public @NotNull RetryStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "RetryPolicy [maxAttempts=" + maxAttempts + ", initialBackoff=" + initialBackoff + ", maxBackoff=" + maxBackoff + ", jitter=" + jitter + ", retryOn=" + retryableExceptions + ']';
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}s.
+     */
+    public static final class Builder {
+
+        private int maxAttempts = 3;
+
+        private @NotNull Duration initialBackoff = Duration.ofMillis(10);
+
+        private @NotNull Duration maxBackoff = Duration.ofSeconds(1);
+
+        private boolean jitter = true;
+
+        private @NotNull List<Class<? extends Throwable>> retryableExceptions = singletonList(TransactionSerializationException.class);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum amount of times the transaction is attempted, including the first attempt. Default is 3.
+         */
+        public @NotNull Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be positive, but was: " + maxAttempts);
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before first retry and the maximum delay between retries. The delay is
+         * doubled for each retry until the maximum is reached. Default is 10 ms initially and 1 second at most.
+         */
+        public @NotNull Builder backoff(@NotNull Duration initialBackoff, @NotNull Duration maxBackoff) {
+            if (initialBackoff.isNegative()) throw new IllegalArgumentException("negative initialBackoff: " + initialBackoff);
+            if (maxBackoff.compareTo(initialBackoff) < 0) throw new IllegalArgumentException("maxBackoff " + maxBackoff + " is less than initialBackoff " + initialBackoff);
+
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Should the backoff be randomized? Default is true.
+         */
+        public @NotNull Builder jitter(boolean jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets the exceptions that cause the transaction to be retried. Default is {@link TransactionSerializationException}.
+         */
+        @SafeVarargs
+        public final @NotNull Builder retryOn(@NotNull Class<? extends Throwable>... exceptionTypes) {
+            if (exceptionTypes.length == 0) throw new IllegalArgumentException("no exception types");
+            this.retryableExceptions = asList(exceptionTypes);
+            return this;
+        }
+
+        public @NotNull RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of transactions executed with a {@link RetryPolicy}.
+ */
+public final class RetryStatistics {
+
+    private final @NotNull LongAdder retries = new LongAdder();
+
+    private final @NotNull LongAdder recoveredTransactions = new LongAdder();
+
+    private final @NotNull LongAdder exhaustedTransactions = new LongAdder();
+
+    RetryStatistics() {
+    }
+
+    /**
+     * Returns the amount of retries performed, i.e. attempts after the first one.
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the amount of transactions that succeeded after at least one retry.
+     */
+    public long getRecoveredTransactions() {
+        return recoveredTransactions.sum();
+    }
+
+    /**
+     * Returns the amount of transactions that failed with retryable exception even after all attempts,
+     * or when their timeout did not leave time for another attempt.
+     */
+    public long getExhaustedTransactions() {
+        return exhaustedTransactions.sum();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordRecovery() {
+        recoveredTransactions.increment();
+    }
+
+    void recordExhaustion() {
+        exhaustedTransactions.increment();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "RetryStatistics [retries=" + getRetries() + ", recoveredTransactions=" + getRecoveredTransactions() + ", exhaustedTransactions=" + getExhaustedTransactions() + ']';
+    }
+}
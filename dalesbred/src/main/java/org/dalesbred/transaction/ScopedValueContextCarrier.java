@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+/**
+ * Carrier based on {@code java.lang.ScopedValue}, accessed reflectively so that the library runs on older JVMs.
+ * Scoped values are not bound to the carrier thread of a virtual thread, so blocking in a transaction does not
+ * pin it.
+ */
+final class ScopedValueContextCarrier<T> implements ContextCarrier<T> {
+
+    private static final @Nullable MethodHandle NEW_INSTANCE;
+    private static final @Nullable MethodHandle OR_ELSE;
+    private static final @Nullable MethodHandle WHERE;
+    private static final @Nullable MethodHandle RUN;
+
+    static {
+        MethodHandle newInstance = null, orElse = null, where = null, run = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> scopedValue = Class.forName("java.lang.ScopedValue");
+            Class<?> carrier = Class.forName("java.lang.ScopedValue$Carrier");
+            newInstance = lookup.findStatic(scopedValue, "newInstance", MethodType.methodType(scopedValue));
+            orElse = lookup.findVirtual(scopedValue, "orElse", MethodType.methodType(Object.class, Object.class));
+            where = lookup.findStatic(scopedValue, "where", MethodType.methodType(carrier, scopedValue, Object.class));
+            run = lookup.findVirtual(carrier, "run", MethodType.methodType(void.class, Runnable.class));
+        } catch (ReflectiveOperationException | LinkageError ignored) {
+            // Not available on this JVM
+        }
+        NEW_INSTANCE = newInstance;
+        OR_ELSE = orElse;
+        WHERE = where;
+        RUN = run;
+    }
+
+    private final @NotNull Object value;
+
+    ScopedValueContextCarrier() {
+        if (NEW_INSTANCE == null)
+            throw new UnsupportedOperationException("java.lang.ScopedValue is not available on this JVM");
+        this.value = invoke(NEW_INSTANCE);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable T get() {
+        return (T) invoke(OR_ELSE, value, null);
+    }
+
+    @Override
+    public <R> R callWith(@Nullable T newValue, @NotNull Supplier<R> action) {
+        // Carrier.run is the only way to execute an action that has the same signature in all versions of the API.
+        Object[] result = new Object[1];
+        invoke(RUN, invoke(WHERE, value, newValue), (Runnable) () -> result[0] = action.get());
+
+        @SuppressWarnings("unchecked")
+        R r = (R) result[0];
+        return r;
+    }
+
+    private static Object invoke(@Nullable MethodHandle method, Object... args) {
+        try {
+            return method.invokeWithArguments(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
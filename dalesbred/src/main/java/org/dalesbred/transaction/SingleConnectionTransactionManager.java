@@ -26,10 +26,12 @@ import org.dalesbred.Database;
 import org.dalesbred.DatabaseException;
 import org.dalesbred.dialect.Dialect;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
@@ -58,23 +60,40 @@ public final class SingleConnectionTransactionManager extends AbstractTransactio
         currentTransaction = insideForeignTransaction ? Optional.of(new DefaultTransaction(connection)) : Optional.empty();
     }
 
+    /**
+     * Returns the task as such, since the transaction is not bound to threads.
+     */
+    @Override
+    public @NotNull <T> Supplier<T> propagate(@NotNull Supplier<T> task) {
+        return task;
+    }
+
     @Override
     protected @NotNull Optional<DefaultTransaction> getActiveTransaction() {
         return currentTransaction;
     }
 
     @Override
-    protected <T> T withNewTransaction(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect, @NotNull Isolation isolation) {
+    protected <T> T withNewTransaction(@NotNull TransactionCallback<T> callback, @NotNull Dialect dialect, @NotNull TransactionSettings settings, @Nullable Deadline deadline) {
         assert !currentTransaction.isPresent();
 
+        Isolation isolation = settings.getIsolation();
+        boolean readOnly = settings.isReadOnly();
         try {
             connection.setAutoCommit(false);
             if (isolation != Isolation.DEFAULT)
                 connection.setTransactionIsolation(isolation.getJdbcLevel());
+            if (readOnly)
+                connection.setReadOnly(true);
 
-            DefaultTransaction newTransaction = new DefaultTransaction(connection);
-            currentTransaction = Optional.of(newTransaction);
-            return newTransaction.execute(callback, dialect);
+            try {
+                DefaultTransaction newTransaction = new DefaultTransaction(connection, deadline);
+                currentTransaction = Optional.of(newTransaction);
+                return newTransaction.execute(callback, dialect);
+            } finally {
+                if (readOnly)
+                    connection.setReadOnly(false);
+            }
         } catch (SQLException e) {
             throw dialect.convertException(e);
         } finally {
@@ -83,7 +102,7 @@ public final class SingleConnectionTransactionManager extends AbstractTransactio
     }
 
     @Override
-    protected <T> T withSuspendedTransaction(@NotNull TransactionCallback<T> callback, @NotNull Isolation isolation, @NotNull Dialect dialect) {
+    protected <T> T withSuspendedTransaction(@NotNull TransactionCallback<T> callback, @NotNull TransactionSettings settings, @NotNull Dialect dialect) {
         throw new DatabaseException("SingleConnectionTransactionManager does not support Suspended transactions.");
     }
 }
@@ -25,6 +25,8 @@ package org.dalesbred.transaction;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
+import java.time.Duration;
+import java.util.Optional;
 
 /**
  * Provides transactions with access to the context.
@@ -43,4 +45,14 @@ public interface TransactionContext {
     void setRollbackOnly();
 
     boolean isRollbackOnly();
+
+    /**
+     * Returns the time remaining before the deadline of this transaction, or empty if the
+     * transaction has no deadline. The returned duration is negative if the deadline has passed.
+     *
+     * @see TransactionSettings#setTimeout(Duration)
+     */
+    default @NotNull Optional<Duration> getRemainingTime() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction;
+
+import org.dalesbred.monitoring.TransactionExecution;
+import org.dalesbred.monitoring.TransactionListener;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Tracks the phases of a single physical transaction and notifies registered {@link TransactionListener}s about them.
+ */
+final class TransactionExecutionTracker implements TransactionExecution {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionExecutionTracker.class);
+
+    private final @NotNull List<TransactionListener> listeners;
+
+    private final @NotNull Thread thread = Thread.currentThread();
+
+    private final long startTime = nanoTime();
+
+    private volatile long acquiredTime;
+
+    private volatile long releasedTime;
+
+    private long acquireNanos;
+
+    private long callbackNanos;
+
+    private long completionNanos;
+
+    private boolean committed;
+
+    private boolean rolledBack;
+
+    private int savepoints;
+
+    private int rolledBackSavepoints;
+
+    TransactionExecutionTracker(@NotNull List<TransactionListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    void acquired() {
+        acquiredTime = nanoTime();
+        acquireNanos = acquiredTime - startTime;
+        notifyListeners(listener -> listener.afterBegin(this));
+    }
+
+    void callbackExecuted(long callbackStartTime) {
+        callbackNanos = nanoTime() - callbackStartTime;
+    }
+
+    void committed(long commitStartTime) {
+        completionNanos = nanoTime() - commitStartTime;
+        committed = true;
+    }
+
+    void rolledBack(long rollbackStartTime) {
+        completionNanos = nanoTime() - rollbackStartTime;
+        rolledBack = true;
+    }
+
+    void savepointCreated() {
+        savepoints++;
+    }
+
+    void savepointRolledBack() {
+        rolledBackSavepoints++;
+    }
+
+    void released() {
+        releasedTime = nanoTime();
+        notifyListeners(listener -> listener.afterCompletion(this));
+    }
+
+    private void notifyListeners(@NotNull Consumer<TransactionListener> callback) {
+        for (TransactionListener listener : listeners) {
+            try {
+                callback.accept(listener);
+            } catch (RuntimeException e) {
+                log.warn("TransactionListener " + listener + " threw exception", e);
+            }
+        }
+    }
+
+    @Override
+    public @NotNull Thread getThread() {
+        return thread;
+    }
+
+    @Override
+    public long getAcquireNanos() {
+        return acquireNanos;
+    }
+
+    @Override
+    public long getCallbackNanos() {
+        return callbackNanos;
+    }
+
+    @Override
+    public long getCompletionNanos() {
+        return completionNanos;
+    }
+
+    @Override
+    public long getHoldNanos() {
+        long acquired = acquiredTime;
+        if (acquired == 0)
+            return 0;
+        long released = releasedTime;
+        return (released != 0 ? released : nanoTime()) - acquired;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public boolean isRolledBack() {
+        return rolledBack;
+    }
+
+    @Override
+    public int getSavepointCount() {
+        return savepoints;
+    }
+
+    @Override
+    public int getRolledBackSavepointCount() {
+        return rolledBackSavepoints;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "TransactionExecution[thread=" + thread.getName() + ", holdNanos=" + getHoldNanos() + ']';
+    }
+}
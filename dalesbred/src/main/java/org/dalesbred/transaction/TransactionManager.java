@@ -25,6 +25,8 @@ package org.dalesbred.transaction;
 import org.dalesbred.dialect.Dialect;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.function.Supplier;
+
 /**
  * Abstract the mechanism in which transactions are handled.
  */
@@ -44,4 +46,27 @@ public interface TransactionManager {
      * Returns true if the code is executing inside transaction.
      */
     boolean hasActiveTransaction();
+
+    /**
+     * Registers an action to be executed after the current physical transaction has completed, whether it was
+     * committed or rolled back. An action equal to an already registered one is executed only once. If there is
+     * no active transaction, the action is executed immediately, which is also the default implementation.
+     */
+    default void afterCompletion(@NotNull Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Captures the transaction context of the caller and returns a task that executes given task within it,
+     * typically on another thread. The returned task must not be executed concurrently with other code using
+     * the same context, since they would share a connection.
+     * <p>
+     * The default implementation returns the task as such if there is no active transaction and throws
+     * {@link UnsupportedOperationException} otherwise, since the context can't be handed over.
+     */
+    default @NotNull <T> Supplier<T> propagate(@NotNull Supplier<T> task) {
+        if (hasActiveTransaction())
+            throw new UnsupportedOperationException("transaction context of " + getClass().getName() + " can't be propagated");
+        return task;
+    }
 }
@@ -24,6 +24,9 @@ package org.dalesbred.transaction;
 
 import org.dalesbred.Database;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
 
 import static java.util.Objects.requireNonNull;
 
@@ -38,6 +41,16 @@ public final class TransactionSettings {
 
     private @NotNull Isolation isolation = Isolation.DEFAULT;
 
+    private boolean readOnly = false;
+
+    private @Nullable Duration timeout;
+
+    private @Nullable RetryPolicy retryPolicy;
+
+    private int updateBatchSize = 0;
+
+    private @NotNull TransactionPriority priority = TransactionPriority.INTERACTIVE;
+
     public @NotNull Propagation getPropagation() {
         return propagation;
     }
@@ -60,8 +73,107 @@ public final class TransactionSettings {
         this.isolation = isolation;
     }
 
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Marks the transaction as read-only. This is a hint that allows the database to optimize
+     * the transaction and the connection provider to route it to a read replica.
+     *
+     * @see java.sql.Connection#setReadOnly(boolean)
+     * @see org.dalesbred.connection.ConnectionProvider#getConnection(boolean)
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public @Nullable Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time in which the transaction must complete. The remaining time is used as the query
+     * timeout of each statement executed in the transaction, and statements are not executed at all
+     * after the deadline has passed. For joined and nested transactions, the earlier of the
+     * deadlines is used.
+     *
+     * @param timeout positive timeout or null for no deadline
+     * @throws IllegalArgumentException if timeout is not positive
+     * @see TransactionTimeoutException
+     */
+    public void setTimeout(@Nullable Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero()))
+            throw new IllegalArgumentException("Illegal timeout " + timeout + ". Timeout must be null or positive");
+        this.timeout = timeout;
+    }
+
+    public @Nullable RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the policy for retrying the transaction if it fails because of concurrent updates.
+     * Only transactions that start a new physical transaction are retried: if the transaction joins
+     * an existing transaction or is nested inside one, the policy is ignored. Note that the whole
+     * callback is executed again on retry, so it should not have side effects outside the database.
+     *
+     * @param retryPolicy policy to use or null to disable retries
+     */
+    public void setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public int getUpdateBatchSize() {
+        return updateBatchSize;
+    }
+
+    /**
+     * Enables buffering of updates executed in the transaction. When enabled, consecutive calls to
+     * {@link org.dalesbred.Database#update(org.dalesbred.query.SqlQuery)} with identical SQL are buffered
+     * and executed as JDBC batches of at most given size. The buffer is flushed when the SQL changes, before
+     * any other statement is executed and before the transaction callback returns. Buffered updates return
+     * {@link java.sql.Statement#SUCCESS_NO_INFO} instead of the amount of affected rows, and their errors
+     * are reported when the buffer is flushed.
+     *
+     * @param updateBatchSize maximum size of batches, or 0 to disable buffering
+     * @throws IllegalArgumentException if size is negative
+     */
+    public void setUpdateBatchSize(int updateBatchSize) {
+        if (updateBatchSize < 0)
+            throw new IllegalArgumentException("negative updateBatchSize: " + updateBatchSize);
+        this.updateBatchSize = updateBatchSize;
+    }
+
+    public @NotNull TransactionPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of the transaction when waiting for a permit from a {@link ConcurrencyLimiter}.
+     * The default is {@link TransactionPriority#INTERACTIVE}.
+     */
+    public void setPriority(@NotNull TransactionPriority priority) {
+        this.priority = requireNonNull(priority);
+    }
+
+    /**
+     * Returns a copy of these settings.
+     */
+    @NotNull TransactionSettings copy() {
+        TransactionSettings copy = new TransactionSettings();
+        copy.propagation = propagation;
+        copy.isolation = isolation;
+        copy.readOnly = readOnly;
+        copy.timeout = timeout;
+        copy.retryPolicy = retryPolicy;
+        copy.updateBatchSize = updateBatchSize;
+        copy.priority = priority;
+        return copy;
+    }
+
     @Override
     public @NotNull String toString() {
-        return "[propagation=" + propagation + ", isolation=" + isolation + ']';
+        return "[propagation=" + propagation + ", isolation=" + isolation + ", readOnly=" + readOnly + ", timeout=" + timeout + ']';
     }
 }
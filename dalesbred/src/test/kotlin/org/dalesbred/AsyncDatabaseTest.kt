@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
+import kotlin.test.assertTrue
+
+class AsyncDatabaseTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    private val async = db.async().threads(1).queueCapacity(1).build()
+
+    @After
+    fun closeAsync() {
+        async.close()
+    }
+
+    @Test
+    fun queriesAreExecutedAsynchronously() {
+        db.update("drop table if exists async_test")
+        db.update("create table async_test (id int primary key)")
+
+        assertEquals(1, async.update("insert into async_test (id) values (?)", 1).get(10, TimeUnit.SECONDS))
+        assertEquals(listOf(1), async.findAll(Int::class.java, "select id from async_test").get(10, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun transactionsAreBoundToWorkerThread() {
+        val callerThread = Thread.currentThread()
+
+        val threadName = async.withTransaction { _ ->
+            assertTrue(db.hasActiveTransaction())
+            assertNotEquals(callerThread, Thread.currentThread())
+            Thread.currentThread().name
+        }.get(10, TimeUnit.SECONDS)
+
+        assertTrue(threadName.startsWith("dalesbred-async-"))
+        assertTrue(!db.hasActiveTransaction())
+    }
+
+    @Test
+    fun failuresCompleteFutureExceptionally() {
+        val future = async.findUnique(Int::class.java, "select * from non_existing_table")
+
+        val e = assertFailsWith<ExecutionException> { future.get(10, TimeUnit.SECONDS) }
+        assertTrue(e.cause is DatabaseException)
+    }
+
+    @Test
+    fun tasksAreRejectedWhenQueueIsFull() {
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+
+        val running = async.execute { _ -> started.countDown(); release.await() }
+        started.await(10, TimeUnit.SECONDS)
+        val queued = async.execute { _ -> 42 }
+        val rejected = async.execute { _ -> 43 }
+
+        assertEquals(1, async.queuedTaskCount)
+        val e = assertFailsWith<ExecutionException> { rejected.get(10, TimeUnit.SECONDS) }
+        assertTrue(e.cause is RejectedExecutionException)
+
+        release.countDown()
+        running.get(10, TimeUnit.SECONDS)
+        assertEquals(42, queued.get(10, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun invalidSettingsAreRejected() {
+        assertFailsWith<IllegalArgumentException> { AsyncDatabase.builder(db).threads(0) }
+        assertFailsWith<IllegalArgumentException> { AsyncDatabase.builder(db).queueCapacity(0) }
+    }
+}
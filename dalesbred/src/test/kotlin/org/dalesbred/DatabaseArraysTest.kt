@@ -93,6 +93,12 @@ class DatabaseArraysTest {
         assertArrayEquals(arrayOf("foo", "bar"), db.findUnique(Array<String>::class.java, "select string_array from array_test"))
     }
 
+    @Test
+    fun bindPrimitiveArrays() {
+        assertEquals(listOf(2, 3), db.findAll(Int::class.java, "select x from generate_series(1, 5) x where x = ANY(?)", SqlArray.ints(2, 3, 42)))
+        assertEquals(listOf(4L), db.findAll(Long::class.java, "select x from generate_series(1, 5) x where x = ANY(?)", SqlArray.longs(4, 42)))
+    }
+
     class ListContainer {
         lateinit var intList: List<Int>
         lateinit var stringList: List<String>
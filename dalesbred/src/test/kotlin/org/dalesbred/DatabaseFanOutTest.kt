@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
+
+class DatabaseFanOutTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @Test
+    fun tasksWithoutTransactionAreExecutedConcurrently() {
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val caller = Thread.currentThread()
+            val tasks = (1..4).map { i -> Supplier { assertNotEquals(caller, Thread.currentThread()); db.findUniqueInt("values (cast(? as int))", i) } }
+
+            assertEquals(listOf(1, 2, 3, 4), db.fanOut(executor, tasks))
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun tasksWithinTransactionAreExecutedInCurrentTransaction() {
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            db.withTransaction { tx ->
+                val tasks = (1..3).map { _ -> Supplier { db.withTransaction { t -> t.connection === tx.connection } } }
+
+                assertEquals(listOf(true, true, true), db.fanOut(executor, tasks))
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun firstFailureIsThrownAfterAllTasksHaveCompleted() {
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val completed = AtomicInteger()
+            val tasks = listOf(
+                    Supplier<Int> { throw IllegalStateException("first") },
+                    Supplier<Int> { Thread.sleep(50); completed.incrementAndGet() })
+
+            val e = assertFailsWith<IllegalStateException> { db.fanOut(executor, tasks) }
+            assertEquals("first", e.message)
+            assertEquals(1, completed.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+}
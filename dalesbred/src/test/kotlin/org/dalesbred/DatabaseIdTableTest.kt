@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.dialect.H2Dialect
+import org.dalesbred.dialect.HsqldbDialect
+import org.dalesbred.dialect.MySQLDialect
+import org.dalesbred.dialect.OracleDialect
+import org.dalesbred.dialect.PostgreSQLDialect
+import org.dalesbred.dialect.SQLServerDialect
+import org.dalesbred.transaction.Propagation
+import org.dalesbred.transaction.SingleConnectionTransactionManager
+import org.junit.Rule
+import org.junit.Test
+import java.math.BigDecimal
+import java.sql.DriverManager
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+class DatabaseIdTableTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    @Test
+    fun queriesCanJoinAgainstIdTable() {
+        db.update("drop table if exists id_table_test")
+        db.update("create table id_table_test (id int primary key, name varchar(10))")
+        for (id in 1..10)
+            db.update("insert into id_table_test values (?, ?)", id, "name$id")
+
+        val ids = (2..2500 step 2).toList()
+        val names = db.withIdTable(ids, "wanted_ids", "int") {
+            db.findAll(String::class.java, "select t.name from id_table_test t join wanted_ids w on t.id = w.id order by t.id")
+        }
+
+        assertEquals(listOf("name2", "name4", "name6", "name8", "name10"), names)
+    }
+
+    @Test
+    fun tableIsEmptiedBeforeReuse() {
+        db.withIdTable(listOf(1, 2, 3), "reused_ids", "int") {
+            assertEquals(3, db.findUniqueInt("select count(*) from reused_ids"))
+        }
+
+        db.withIdTable(listOf(4), "reused_ids", "int") {
+            assertEquals(listOf(4), db.findAll(Int::class.java, "select id from reused_ids"))
+        }
+    }
+
+    @Test
+    fun tableIsEmptiedBeforeReuseWhenCallbackFails() {
+        assertFailsWith<IllegalStateException> {
+            db.withIdTable(listOf(1, 2, 3), "failed_ids", "int") {
+                throw IllegalStateException()
+            }
+        }
+
+        db.withIdTable(listOf(4), "failed_ids", "int") {
+            assertEquals(listOf(4), db.findAll(Int::class.java, "select id from failed_ids"))
+        }
+    }
+
+    @Test
+    fun tableIsKeptUntilTheEndOfTheTransaction() {
+        db.withTransaction(Propagation.NESTED) { _ ->
+            db.withIdTable(listOf(1, 2, 3), "kept_ids", "int") { }
+        }
+
+        assertEquals(3, db.findUniqueInt("select count(*) from kept_ids"))
+    }
+
+    @Test
+    fun rowsAreDeletedWhenTheTransactionEnds() {
+        val connection = DriverManager.getConnection("jdbc:hsqldb:mem:id-tables", "sa", "")
+        try {
+            val singleConnectionDb = Database(SingleConnectionTransactionManager(connection, false), HsqldbDialect())
+
+            singleConnectionDb.withIdTable(listOf(1, 2, 3), "session_ids", "int") { }
+
+            assertEquals(0, singleConnectionDb.findUniqueInt("select count(*) from session_ids"))
+        } finally {
+            connection.close()
+        }
+    }
+
+    @Test
+    fun invalidTableName() {
+        assertFailsWith<IllegalArgumentException> {
+            db.withIdTable(listOf(1), "ids; drop table foo", "int") { }
+        }
+    }
+
+    @Test
+    fun invalidIdType() {
+        assertFailsWith<IllegalArgumentException> {
+            db.withIdTable(listOf(1), "wanted_ids", "int primary key); drop table foo; --") { }
+        }
+    }
+
+    @Test
+    fun idTypesWithPrecision() {
+        db.withIdTable(listOf("a"), "varchar_ids", "varchar(36)") {
+            assertEquals(listOf("a"), db.findAll(String::class.java, "select id from varchar_ids"))
+        }
+        db.withIdTable(listOf(BigDecimal("1.5")), "numeric_ids", "numeric(10, 2)") {
+            assertEquals(1, db.findUniqueInt("select count(*) from numeric_ids where id = 1.5"))
+        }
+    }
+
+    @Test
+    fun tablesAreCleanedUpByTheDatabaseWhenTransactionEnds() {
+        assertEquals("create temporary table if not exists wanted_ids (id bigint primary key) on commit drop",
+                PostgreSQLDialect().createTemporaryIdTableSql("wanted_ids", "bigint"))
+        assertNull(PostgreSQLDialect().dropTemporaryIdTableSql("wanted_ids"))
+        assertEquals("declare local temporary table if not exists wanted_ids (id bigint primary key) on commit delete rows",
+                HsqldbDialect().createTemporaryIdTableSql("wanted_ids", "bigint"))
+        assertNull(HsqldbDialect().dropTemporaryIdTableSql("wanted_ids"))
+        assertNull(H2Dialect().dropTemporaryIdTableSql("wanted_ids"))
+    }
+
+    @Test
+    fun oracleDoesNotSupportIdTables() {
+        val oracleDb = Database(TestDatabaseProvider.createInMemoryHSQLConnectionProvider(), OracleDialect())
+
+        assertFailsWith<UnsupportedOperationException> {
+            oracleDb.withIdTable(listOf(1), "wanted_ids", "int") { }
+        }
+    }
+
+    @Test
+    fun sqlServerIdTablesAreLocalTemporaryTables() {
+        val dialect = SQLServerDialect()
+
+        assertEquals("create table #wanted_ids (id int primary key)", dialect.createTemporaryIdTableSql("#wanted_ids", "int"))
+        assertFailsWith<IllegalArgumentException> { dialect.createTemporaryIdTableSql("wanted_ids", "int") }
+    }
+
+    @Test
+    fun mySqlDropsIdTablesWithoutImplicitCommit() {
+        assertEquals("drop temporary table wanted_ids", MySQLDialect().dropTemporaryIdTableSql("wanted_ids"))
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.dialect.DefaultDialect
+import org.dalesbred.monitoring.QueryExecution
+import org.dalesbred.monitoring.QueryListener
+import org.junit.Rule
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class DatabaseInListChunkingTest {
+
+    private val db = Database(TestDatabaseProvider.createInMemoryHSQLConnectionProvider(), SmallInListDialect)
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    @Test
+    fun chunksAreExecutedSeparatelyAndResultsMerged() {
+        db.update("drop table if exists chunk_test")
+        db.update("create temporary table chunk_test (id int primary key, name varchar(10))")
+        for (id in 1..10)
+            db.update("insert into chunk_test values (?, ?)", id, "name$id")
+
+        val names = db.findAllInChunks(String::class.java, "select name from chunk_test where id in (:ids) and id <> :excluded",
+                mapOf("ids" to (1..9).toList(), "excluded" to 5), "ids")
+
+        assertEquals((1..9).filter { it != 5 }.map { "name$it" }, names.sorted())
+    }
+
+    @Test
+    fun chunksUseFullMaximumSize() {
+        val queries = mutableListOf<String>()
+        db.addQueryListener(object : QueryListener {
+            override fun afterExecution(execution: QueryExecution) {
+                queries += execution.query.sql
+            }
+        })
+
+        db.findAllInChunks(Int::class.java, "select 1 from (values (0)) where 1 in (:ids)", mapOf("ids" to (1..8).toList()), "ids")
+
+        assertEquals(listOf(3, 3, 2), queries.map { sql -> sql.count { it == '?' } })
+    }
+
+    @Test
+    fun emptyCollectionProducesEmptyResult() {
+        assertEquals(emptyList<Int>(), db.findAllInChunks(Int::class.java, "select 1 from (values (0)) where 1 in (:ids)",
+                mapOf("ids" to emptyList<Int>()), "ids"))
+    }
+
+    @Test
+    fun chunkedParameterMustBeCollection() {
+        assertFailsWith<IllegalArgumentException> {
+            db.findAllInChunks(Int::class.java, "select 1 from (values (0)) where 1 in (:ids)", mapOf("ids" to 1), "ids")
+        }
+    }
+
+    private object SmallInListDialect : DefaultDialect() {
+        override fun getMaxInListSize() = 3
+    }
+}
@@ -22,12 +22,25 @@
 
 package org.dalesbred
 
+import org.dalesbred.datatype.InputStreamWithSize
+import org.dalesbred.datatype.ReaderWithSize
+import org.dalesbred.query.SqlQuery
+import org.dalesbred.result.EmptyResultException
 import org.junit.Assert.assertArrayEquals
 import org.junit.Rule
 import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.IOException
 import java.io.InputStream
+import java.io.OutputStream
 import java.io.Reader
+import java.io.StringWriter
+import java.nio.channels.Channels
+import java.nio.file.Files
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
 
 class DatabaseLargeObjectsTest {
 
@@ -93,4 +106,135 @@ class DatabaseLargeObjectsTest {
             assertArrayEquals(originalData, stream.readBytes())
         }
     }
+
+    @Test
+    fun streamBlobToOutputStream() {
+        db.update("drop table if exists blob_test")
+        db.update("create temporary table blob_test (id int, blob_data blob)")
+
+        val originalData = ByteArray(200_000) { it.toByte() }
+        db.update("insert into blob_test values (1, ?)", originalData.inputStream())
+
+        val out = ByteArrayOutputStream()
+        val count = db.streamBlob(SqlQuery.query("select blob_data from blob_test where id=1"), out)
+
+        assertEquals(originalData.size.toLong(), count)
+        assertArrayEquals(originalData, out.toByteArray())
+    }
+
+    @Test
+    fun streamBlobToChannel() {
+        db.update("drop table if exists blob_test")
+        db.update("create temporary table blob_test (id int, blob_data blob)")
+
+        val originalData = ByteArray(200_000) { it.toByte() }
+        db.update("insert into blob_test values (1, ?)", originalData.inputStream())
+
+        val out = ByteArrayOutputStream()
+        Channels.newChannel(out).use { channel ->
+            db.streamBlob(SqlQuery.query("select blob_data from blob_test where id=1"), channel)
+        }
+
+        assertArrayEquals(originalData, out.toByteArray())
+    }
+
+    @Test
+    fun copyBufferIsReusedUnlessAlreadyInUse() {
+        val query = SqlQuery.query("values (cast (? as varbinary(10)))", byteArrayOf(1, 2, 3))
+        val buffers = mutableListOf<ByteArray>()
+        val nested = ByteArrayOutputStream()
+
+        val recording = object : OutputStream() {
+            override fun write(b: Int) = throw UnsupportedOperationException()
+
+            override fun write(b: ByteArray, off: Int, len: Int) {
+                buffers += b
+                if (buffers.size == 2)
+                    db.streamBlob(query, this)
+                else if (buffers.size == 3)
+                    nested.write(b, off, len)
+            }
+        }
+
+        db.streamBlob(query, recording)
+        db.streamBlob(query, recording)
+
+        assertEquals(3, buffers.size)
+        assertSame(buffers[0], buffers[1])
+        assertNotSame(buffers[1], buffers[2])
+        assertArrayEquals(byteArrayOf(1, 2, 3), nested.toByteArray())
+    }
+
+    @Test
+    fun streamNonBlobBinaryValue() {
+        val out = ByteArrayOutputStream()
+        db.streamBlob(SqlQuery.query("values (cast (? as varbinary(10)))", byteArrayOf(1, 2, 3)), out)
+
+        assertArrayEquals(byteArrayOf(1, 2, 3), out.toByteArray())
+    }
+
+    @Test
+    fun streamNullBlob() {
+        assertEquals(-1, db.streamBlob(SqlQuery.query("values (cast (null as blob))"), ByteArrayOutputStream()))
+    }
+
+    @Test
+    fun streamClobToWriter() {
+        val writer = StringWriter()
+        val count = db.streamClob(SqlQuery.query("values (cast ('foobar' as clob))"), writer)
+
+        assertEquals(6, count)
+        assertEquals("foobar", writer.toString())
+    }
+
+    @Test
+    fun streamingRequiresSingleRow() {
+        assertFailsWith<EmptyResultException> {
+            db.streamClob(SqlQuery.query("select cast ('foo' as clob) from (values (1)) where 1 = 0"), StringWriter())
+        }
+    }
+
+    @Test
+    fun streamBlobFromFile() {
+        db.update("drop table if exists blob_test")
+        db.update("create temporary table blob_test (id int, blob_data blob)")
+
+        val originalData = ByteArray(200_000) { it.toByte() }
+        val file = Files.createTempFile("blob", ".bin")
+        try {
+            Files.write(file, originalData)
+
+            val stream = InputStreamWithSize.ofPath(file)
+            assertEquals(originalData.size.toLong(), stream.size)
+
+            db.update("insert into blob_test values (1, ?)", stream)
+
+            assertArrayEquals(originalData, db.findUnique(ByteArray::class.java, "select blob_data from blob_test where id=1"))
+            assertFailsWith<IOException> { stream.read() }
+        } finally {
+            Files.delete(file)
+        }
+    }
+
+    @Test
+    fun streamClobFromFile() {
+        db.update("drop table if exists clob_test")
+        db.update("create temporary table clob_test (id int, clob_data clob)")
+
+        val originalData = "f\u00f6\u00f6b\u00e4r"
+        val file = Files.createTempFile("clob", ".txt")
+        try {
+            Files.write(file, originalData.toByteArray(Charsets.UTF_8))
+
+            val reader = ReaderWithSize.ofPath(file, Charsets.UTF_8)
+            assertEquals(originalData.length.toLong(), reader.size)
+
+            db.update("insert into clob_test values (1, ?)", reader)
+
+            assertEquals(originalData, db.findUnique(String::class.java, "select clob_data from clob_test where id=1"))
+            assertFailsWith<IOException> { reader.read() }
+        } finally {
+            Files.delete(file)
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.connection.DriverManagerConnectionProvider
+import org.dalesbred.connection.RoutingConnectionProvider
+import org.dalesbred.dialect.Dialect
+import org.dalesbred.dialect.HsqldbDialect
+import org.dalesbred.transaction.TransactionCallback
+import org.dalesbred.transaction.TransactionSettings
+import org.junit.After
+import org.junit.Test
+import java.sql.Connection
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class DatabaseParallelReadTest {
+
+    private val executor = Executors.newFixedThreadPool(3)
+
+    @After
+    fun shutdownExecutor() {
+        executor.shutdown()
+    }
+
+    @Test
+    fun tasksAreExecutedConcurrentlyInReadOnlyTransactions() {
+        val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+        val latch = CountDownLatch(3)
+
+        val tasks = (1..3).map { i ->
+            TransactionCallback { tx ->
+                assertTrue(tx.connection.isReadOnly)
+                assertEquals(Connection.TRANSACTION_READ_COMMITTED, tx.connection.transactionIsolation)
+
+                // Every task waits for the others, so this completes only if they run concurrently
+                latch.countDown()
+                assertTrue(latch.await(10, TimeUnit.SECONDS))
+                db.findUniqueInt("values (cast(? as int))", i)
+            }
+        }
+
+        assertEquals(listOf(1, 2, 3), db.parallelRead(executor, tasks))
+    }
+
+    @Test
+    fun tasksShareSnapshotOfParentOnPostgreSQL() {
+        val db = TestDatabaseProvider.createPostgreSQLDatabase()
+        db.update("drop table if exists parallel_read_test")
+        db.update("create table parallel_read_test (id int primary key)")
+        try {
+            val started = CountDownLatch(3)
+            val inserted = CountDownLatch(1)
+
+            // Commit a row from another connection after all tasks have imported the snapshot
+            val inserter = Thread {
+                if (started.await(10, TimeUnit.SECONDS)) {
+                    db.update("insert into parallel_read_test (id) values (1)")
+                    inserted.countDown()
+                }
+            }
+            inserter.start()
+
+            val results = db.parallelRead(executor, (1..3).map { _ ->
+                TransactionCallback { _ ->
+                    started.countDown()
+                    assertTrue(inserted.await(10, TimeUnit.SECONDS))
+                    Pair(db.findUnique(String::class.java, "select txid_current_snapshot()::text"),
+                            db.findUniqueInt("select count(*) from parallel_read_test"))
+                }
+            })
+            inserter.join()
+
+            assertEquals(1, results.map { it.first }.distinct().size)
+            assertEquals(listOf(0, 0, 0), results.map { it.second })
+            assertEquals(1, db.findUniqueInt("select count(*) from parallel_read_test"))
+        } finally {
+            db.update("drop table if exists parallel_read_test")
+        }
+    }
+
+    @Test
+    fun tasksImportingSnapshotAreNotRoutedToReplicas() {
+        val dialect = SnapshotRecordingDialect()
+        val db = createRoutingDatabase(dialect)
+
+        val urls = db.parallelRead(executor, (1..3).map { _ ->
+            TransactionCallback { tx ->
+                assertFalse(tx.connection.isReadOnly)
+                tx.connection.metaData.url
+            }
+        })
+
+        assertEquals(List(3) { PRIMARY_URL }, urls)
+        assertEquals(listOf(PRIMARY_URL), dialect.exportUrls)
+        assertEquals(3, dialect.importCount.get())
+    }
+
+    @Test
+    fun snapshotIsExportedOnPrimaryWhenCurrentTransactionIsReadOnly() {
+        val dialect = SnapshotRecordingDialect()
+        val db = createRoutingDatabase(dialect)
+        val readOnly = TransactionSettings().apply { isReadOnly = true }
+
+        val urls = db.withTransaction(readOnly) { tx ->
+            assertEquals(REPLICA_URL, tx.connection.metaData.url)
+            db.parallelRead(executor, listOf(TransactionCallback { taskTx -> taskTx.connection.metaData.url }))
+        }
+
+        assertEquals(listOf(PRIMARY_URL), urls)
+        assertEquals(listOf(PRIMARY_URL), dialect.exportUrls)
+    }
+
+    private fun createRoutingDatabase(dialect: Dialect): Database =
+            Database(RoutingConnectionProvider(
+                    DriverManagerConnectionProvider(PRIMARY_URL, "sa", ""),
+                    listOf(DriverManagerConnectionProvider(REPLICA_URL, "sa", ""))), dialect)
+
+    /**
+     * Pretends to support snapshots so that routing can be tested without PostgreSQL.
+     */
+    private class SnapshotRecordingDialect : HsqldbDialect() {
+        val exportUrls = mutableListOf<String>()
+        val importCount = AtomicInteger()
+
+        override fun supportsSnapshotExport() = true
+
+        override fun exportSnapshot(connection: Connection): String {
+            exportUrls += connection.metaData.url
+            return "snapshot"
+        }
+
+        override fun importSnapshot(connection: Connection, snapshotId: String) {
+            importCount.incrementAndGet()
+        }
+    }
+
+    companion object {
+        private const val PRIMARY_URL = "jdbc:hsqldb:mem:parallel_read_primary"
+        private const val REPLICA_URL = "jdbc:hsqldb:mem:parallel_read_replica"
+    }
+}
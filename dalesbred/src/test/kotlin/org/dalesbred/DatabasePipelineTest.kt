@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.query.SqlQuery.query
+import org.dalesbred.result.EmptyResultException
+import org.junit.Rule
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class DatabasePipelineTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    @Test
+    fun queriesAreExecutedSeparatelyWithoutMultiStatementSupport() {
+        val pipeline = db.pipeline()
+        val numbers = pipeline.findAll(Int::class.java, query("select * from (values (1), (2), (3)) t"))
+        val name = pipeline.findUnique(String::class.java, query("values (cast(? as varchar(10)))", "foo"))
+        val count = pipeline.add({ rs -> rs.next(); rs.getInt(1) }, query("values (42)"))
+        pipeline.execute()
+
+        assertEquals(listOf(1, 2, 3), numbers.get())
+        assertEquals("foo", name.get())
+        assertEquals(42, count.get())
+    }
+
+    @Test
+    fun resultsAreNotAvailableBeforeExecution() {
+        val pipeline = db.pipeline()
+        val result = pipeline.findAll(Int::class.java, query("values (1)"))
+
+        assertFailsWith<IllegalStateException> { result.get() }
+    }
+
+    @Test
+    fun pipelineCanBeExecutedOnlyOnce() {
+        val pipeline = db.pipeline()
+        pipeline.findAll(Int::class.java, query("values (1)"))
+        pipeline.execute()
+
+        assertFailsWith<IllegalStateException> { pipeline.execute() }
+        assertFailsWith<IllegalStateException> { pipeline.findAll(Int::class.java, query("values (1)")) }
+    }
+
+    @Test
+    fun failuresOfProcessorsAreThrownFromExecute() {
+        val pipeline = db.pipeline()
+        pipeline.findUnique(Int::class.java, query("select * from (values (1)) t where 1 = 0"))
+
+        assertFailsWith<EmptyResultException> { pipeline.execute() }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.monitoring.QueryExecution
+import org.dalesbred.monitoring.QueryListener
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class DatabaseQueryCoalescingTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    private val executions = AtomicInteger()
+
+    init {
+        db.addQueryListener(object : QueryListener {
+            override fun beforeExecution(execution: QueryExecution) {
+                executions.incrementAndGet()
+            }
+        })
+    }
+
+    @Test
+    fun identicalQueriesAreExecutedOnceWhenCoalescingIsEnabled() {
+        db.isQueryCoalescingEnabled = true
+
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        db.addQueryListener(object : QueryListener {
+            override fun beforeExecution(execution: QueryExecution) {
+                started.countDown()
+                release.await()
+            }
+        })
+
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val futures = (1..4).map { i ->
+                executor.submit<List<Int>> {
+                    if (i > 1) started.await()
+                    db.findAll(Int::class.java, "select x from (values (1), (2)) t(x) where x > ?", 0)
+                }
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS))
+            awaitFollowers(3)
+            release.countDown()
+
+            val results = futures.map { it.get(10, TimeUnit.SECONDS) }
+            for (result in results)
+                assertEquals(listOf(1, 2), result)
+            assertEquals(results.size, results.map { System.identityHashCode(it) }.distinct().size, "callers share a list")
+            (results[0] as MutableList<Int>).add(3)
+            assertEquals(listOf(1, 2), results[1])
+            assertEquals(1, executions.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test(timeout = 10000)
+    fun queriesInTransactionsAreNotCoalesced() {
+        db.isQueryCoalescingEnabled = true
+
+        val testThread = Thread.currentThread()
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        db.addQueryListener(object : QueryListener {
+            override fun beforeExecution(execution: QueryExecution) {
+                if (Thread.currentThread() != testThread) {
+                    started.countDown()
+                    release.await()
+                }
+            }
+        })
+
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            val outside = executor.submit<List<Int>> { db.findAll(Int::class.java, "values (1)") }
+            assertTrue(started.await(10, TimeUnit.SECONDS))
+
+            // Would wait for the blocked query of the other thread if it were coalesced
+            assertEquals(listOf(1), db.withTransaction { _ -> db.findAll(Int::class.java, "values (1)") })
+
+            release.countDown()
+            assertEquals(listOf(1), outside.get(10, TimeUnit.SECONDS))
+            assertEquals(2, executions.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test(timeout = 10000)
+    fun queriesWithMutableResultsAreNotCoalesced() {
+        db.isQueryCoalescingEnabled = true
+
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        db.addQueryListener(object : QueryListener {
+            override fun beforeExecution(execution: QueryExecution) {
+                started.countDown()
+                release.await(10, TimeUnit.SECONDS)
+            }
+        })
+
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val first = executor.submit<List<Row>> { db.findAll(Row::class.java, "values (1)") }
+            assertTrue(started.await(10, TimeUnit.SECONDS))
+            val second = executor.submit<List<Row>> { db.findAll(Row::class.java, "values (1)") }
+            while (executions.get() < 2) Thread.sleep(1)
+            release.countDown()
+
+            assertEquals(1, first.get(10, TimeUnit.SECONDS).single().x)
+            assertEquals(1, second.get(10, TimeUnit.SECONDS).single().x)
+            assertEquals(2, executions.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    class Row(var x: Int)
+
+    @Test
+    fun queriesAreNotCoalescedByDefault() {
+        assertEquals(1, db.findUniqueInt("values (1)"))
+        assertEquals(1, db.findUniqueInt("values (1)"))
+        assertEquals(2, executions.get())
+    }
+
+    private fun awaitFollowers(count: Int) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+        while (Thread.getAllStackTraces().values.count { trace -> trace.any { it.methodName == "await" && it.className.endsWith("SingleFlight") } } < count) {
+            assertTrue(System.nanoTime() < deadline, "followers did not start waiting")
+            Thread.sleep(1)
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.query.SqlQuery
+import org.dalesbred.testutils.withSuppressedLogging
+import org.dalesbred.transaction.Propagation
+import org.dalesbred.transaction.TransactionSettings
+import org.dalesbred.transaction.TransactionTimeoutException
+import org.junit.Rule
+import org.junit.Test
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class DatabaseQueryLimitsTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    @Test
+    fun maxRowsLimitsTheResults() {
+        val query = SqlQuery.query("select * from (values (1), (2), (3)) t")
+        query.maxRows = 2
+
+        assertEquals(listOf(1, 2), db.findAll(Int::class.java, query))
+    }
+
+    @Test
+    fun defaultMaxRowsIsUsedForQueriesWithoutLimit() {
+        db.defaultMaxRows = 1
+        try {
+            assertEquals(listOf(1), db.findAll(Int::class.java, "select * from (values (1), (2), (3)) t"))
+
+            val query = SqlQuery.query("select * from (values (1), (2), (3)) t")
+            query.maxRows = 0
+            assertEquals(listOf(1, 2, 3), db.findAll(Int::class.java, query))
+        } finally {
+            db.defaultMaxRows = null
+        }
+    }
+
+    @Test
+    fun queriesCanBeExecutedWithTimeouts() {
+        db.defaultQueryTimeout = Duration.ofSeconds(5)
+        try {
+            val query = SqlQuery.query("select * from (values (1)) t")
+            query.queryTimeout = Duration.ofMillis(1500)
+
+            assertEquals(1, db.findUniqueInt(query))
+            assertEquals(1, db.findUniqueInt("select * from (values (1)) t"))
+        } finally {
+            db.defaultQueryTimeout = null
+        }
+    }
+
+    @Test
+    fun illegalDefaults() {
+        assertFailsWith<IllegalArgumentException> { db.defaultQueryTimeout = Duration.ofSeconds(-1) }
+        assertFailsWith<IllegalArgumentException> { db.defaultMaxRows = -1 }
+    }
+
+    @Test
+    fun transactionsWithoutTimeoutHaveNoDeadline() {
+        db.withVoidTransaction { tx ->
+            assertFalse(tx.remainingTime.isPresent)
+        }
+    }
+
+    @Test
+    fun transactionTimeoutIsExposedAsRemainingTime() {
+        db.withVoidTransaction(settingsWithTimeout(Duration.ofMinutes(1), Propagation.REQUIRES_NEW)) { tx ->
+            val remaining = tx.remainingTime.get()
+            assertTrue(remaining <= Duration.ofMinutes(1) && remaining > Duration.ZERO)
+
+            db.withVoidTransaction(settingsWithTimeout(Duration.ofSeconds(10), Propagation.REQUIRED)) { joined ->
+                assertTrue(joined.remainingTime.get() <= Duration.ofSeconds(10))
+            }
+
+            db.withVoidTransaction(settingsWithTimeout(Duration.ofHours(1), Propagation.NESTED)) { nested ->
+                assertTrue(nested.remainingTime.get() <= Duration.ofMinutes(1))
+            }
+        }
+    }
+
+    @Test
+    fun statementsAreNotExecutedAfterDeadline() {
+        withSuppressedLogging {
+            assertFailsWith<TransactionTimeoutException> {
+                db.withVoidTransaction(settingsWithTimeout(Duration.ofMillis(1), Propagation.REQUIRES_NEW)) {
+                    Thread.sleep(10)
+                    db.findUniqueInt("select * from (values (1)) t")
+                }
+            }
+        }
+    }
+
+    private fun settingsWithTimeout(timeout: Duration, propagation: Propagation) = TransactionSettings().apply {
+        this.timeout = timeout
+        this.propagation = propagation
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.monitoring.QueryExecution
+import org.dalesbred.monitoring.QueryListener
+import org.dalesbred.testutils.withSuppressedLogging
+import org.junit.Rule
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class DatabaseQueryListenerTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    @Test
+    fun listenerIsNotifiedAboutPhasesOfQuery() {
+        val listener = RecordingListener()
+        db.addQueryListener(listener)
+
+        assertEquals(listOf(1, 2, 3), db.findAll(Int::class.java, "select * from (values (1), (2), (3)) t"))
+
+        assertEquals(listOf("before", "after", "processed"), listener.events)
+        val execution = listener.executions.single()
+        assertEquals(QueryExecution.Type.QUERY, execution.type)
+        assertEquals(3, execution.returnedRows)
+        assertEquals(1, execution.batchSize)
+        assertTrue(execution.totalNanos >= execution.executeNanos + execution.processNanos)
+    }
+
+    @Test
+    fun updatesReportAffectedRows() {
+        db.update("drop table if exists listener_test")
+        db.update("create table listener_test (id int)")
+
+        val listener = RecordingListener()
+        db.addQueryListener(listener)
+
+        db.updateBatch("insert into listener_test (id) values (?)", listOf(listOf(1), listOf(2), listOf(3)))
+        db.update("update listener_test set id = id + 1 where id > 1")
+
+        val (batch, update) = listener.executions
+        assertEquals(QueryExecution.Type.BATCH_UPDATE, batch.type)
+        assertEquals(3, batch.batchSize)
+        assertEquals(3, batch.affectedRows)
+        assertEquals(QueryExecution.Type.UPDATE, update.type)
+        assertEquals(2, update.affectedRows)
+        assertEquals(0, update.returnedRows)
+    }
+
+    @Test
+    fun failuresAreReported() {
+        val listener = RecordingListener()
+        db.addQueryListener(listener)
+
+        withSuppressedLogging {
+            assertFailsWith<DatabaseException> {
+                db.findUniqueInt("select * from nonexistent_table")
+            }
+        }
+
+        assertEquals(listOf("error"), listener.events)
+    }
+
+    @Test
+    fun exceptionsThrownByListenersAreIgnored() {
+        db.addQueryListener(object : QueryListener {
+            override fun beforeExecution(execution: QueryExecution) {
+                throw RuntimeException("failing listener")
+            }
+        })
+
+        withSuppressedLogging {
+            assertEquals(42, db.findUniqueInt("values (42)"))
+        }
+    }
+
+    @Test
+    fun removedListenersAreNotNotified() {
+        val listener = RecordingListener()
+        db.addQueryListener(listener)
+        db.removeQueryListener(listener)
+
+        db.findUniqueInt("values (42)")
+
+        assertEquals(emptyList<String>(), listener.events)
+    }
+
+    private class RecordingListener : QueryListener {
+        val events = mutableListOf<String>()
+        val executions = mutableListOf<QueryExecution>()
+
+        override fun beforeExecution(execution: QueryExecution) {
+            events += "before"
+        }
+
+        override fun afterExecution(execution: QueryExecution) {
+            events += "after"
+        }
+
+        override fun afterResultProcessing(execution: QueryExecution) {
+            events += "processed"
+            executions += execution
+        }
+
+        override fun onError(execution: QueryExecution, exception: Throwable) {
+            events += "error"
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.connection.ConnectionProvider
+import org.dalesbred.transaction.TransactionSettings
+import org.junit.Test
+import java.sql.Connection
+import java.sql.DriverManager
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class DatabaseReadOnlyTransactionTest {
+
+    private val connectionProvider = RecordingConnectionProvider()
+    private val db = Database(connectionProvider)
+
+    @Test
+    fun readOnlyTransactionsUseReadOnlyConnections() {
+        db.withVoidTransaction(readOnlySettings()) { tx ->
+            assertTrue(tx.connection.isReadOnly)
+        }
+    }
+
+    @Test
+    fun readOnlyFlagIsResetBeforeReleasingConnection() {
+        db.withVoidTransaction(readOnlySettings()) { }
+
+        assertFalse(connectionProvider.releasedAsReadOnly!!)
+    }
+
+    @Test
+    fun transactionsAreReadWriteByDefault() {
+        db.withVoidTransaction { tx ->
+            assertFalse(tx.connection.isReadOnly)
+        }
+    }
+
+    private fun readOnlySettings() = TransactionSettings().apply {
+        isReadOnly = true
+    }
+
+    private class RecordingConnectionProvider : ConnectionProvider {
+        var releasedAsReadOnly: Boolean? = null
+
+        override fun getConnection(): Connection =
+                DriverManager.getConnection("jdbc:hsqldb:.", "sa", "")
+
+        override fun releaseConnection(connection: Connection) {
+            releasedAsReadOnly = connection.isReadOnly
+            connection.close()
+        }
+    }
+}
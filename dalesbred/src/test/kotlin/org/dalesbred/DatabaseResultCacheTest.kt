@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.cache.ResultCache
+import org.dalesbred.query.SqlQuery
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class DatabaseResultCacheTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    private val cache = ResultCache.builder().maximumSize(10).build()
+
+    @Before
+    fun setup() {
+        db.update("drop table if exists cached_item")
+        db.update("create table cached_item (id int primary key, name varchar(20))")
+        db.update("insert into cached_item values (1, 'foo'), (2, 'bar')")
+        db.resultCache = cache
+    }
+
+    @Test
+    fun resultsOfCacheableQueriesAreCached() {
+        assertEquals(listOf("bar", "foo"), db.findAll(String::class.java, namesQuery()))
+        db.withVoidTransaction { tx ->
+            tx.connection.createStatement().use { it.executeUpdate("delete from cached_item") }
+        }
+
+        assertEquals(listOf("bar", "foo"), db.findAll(String::class.java, namesQuery()))
+        assertEquals(1, cache.hitCount)
+    }
+
+    @Test
+    fun queriesWithoutDependenciesAreNotCached() {
+        db.findAll(String::class.java, "select name from cached_item")
+        db.findAll(String::class.java, "select name from cached_item")
+
+        assertEquals(0, cache.size())
+    }
+
+    @Test
+    fun differentResultTypesAreCachedSeparately() {
+        val query = SqlQuery.query("select count(*) from cached_item")
+        query.cacheDependencies = setOf("cached_item")
+
+        assertEquals(2, db.findUniqueInt(query))
+        assertEquals(2L, db.findUniqueLong(query))
+        assertEquals(listOf(2), db.findAll(Int::class.java, query))
+        assertEquals(3, cache.size())
+    }
+
+    @Test
+    fun updatesInvalidateDependentResults() {
+        assertEquals(listOf("bar", "foo"), db.findAll(String::class.java, namesQuery()))
+
+        db.update("insert into cached_item values (3, 'baz')")
+
+        assertEquals(listOf("bar", "baz", "foo"), db.findAll(String::class.java, namesQuery()))
+    }
+
+    @Test
+    fun batchUpdatesInvalidateDependentResults() {
+        assertEquals(listOf("bar", "foo"), db.findAll(String::class.java, namesQuery()))
+
+        db.updateBatch("delete from cached_item where id = ?", listOf(listOf(1)))
+
+        assertEquals(listOf("bar"), db.findAll(String::class.java, namesQuery()))
+    }
+
+    @Test
+    fun updatesInTransactionInvalidateResultsLoadedBeforeCommit() {
+        assertEquals(listOf("bar", "foo"), db.findAll(String::class.java, namesQuery()))
+
+        db.withVoidTransaction {
+            db.update("delete from cached_item where id = 1")
+
+            val concurrentResult = CompletableFuture.supplyAsync { db.findAll(String::class.java, namesQuery()) }
+            assertEquals(listOf("bar", "foo"), concurrentResult.get(10, TimeUnit.SECONDS))
+        }
+
+        assertEquals(listOf("bar"), db.findAll(String::class.java, namesQuery()))
+    }
+
+    @Test
+    fun temporaryIdTablesDoNotInvalidateResults() {
+        db.findAll(String::class.java, namesQuery())
+
+        db.withIdTable(listOf(1, 2), "wanted_ids", "int") { _ -> }
+
+        assertEquals(1, cache.size())
+        assertEquals(0, cache.invalidationCount)
+    }
+
+    @Test
+    fun cacheIsBypassedInTransactions() {
+        db.withVoidTransaction {
+            db.findAll(String::class.java, namesQuery())
+        }
+
+        assertEquals(0, cache.size())
+    }
+
+    @Test
+    fun onlyImmutableUniqueResultsAreCached() {
+        val query = SqlQuery.query("select id, name from cached_item where id = 1")
+        query.cacheDependencies = setOf("cached_item")
+
+        assertEquals("foo", db.findUnique(Item::class.java, query).name)
+        assertEquals("foo", db.findOptional(Item::class.java, query).get().name)
+        assertEquals(1, db.findTable(query).rowCount)
+        assertEquals(0, cache.size())
+
+        assertEquals(1, db.findUnique(Int::class.javaObjectType, SqlQuery.query("select id from cached_item where id = 1").apply { cacheDependencies = setOf("cached_item") }))
+        assertEquals(1, cache.size())
+    }
+
+    @Test
+    fun cachedResultsAreImmutable() {
+        val query = SqlQuery.query("select id, name from cached_item")
+        query.cacheDependencies = setOf("cached_item")
+
+        val list = db.findAll(String::class.java, namesQuery())
+        val map = db.findMap(Int::class.javaObjectType, String::class.java, query)
+
+        assertFailsWith<UnsupportedOperationException> { (list as MutableList<String>).add("baz") }
+        assertFailsWith<UnsupportedOperationException> { (map as MutableMap<Int, String>)[3] = "baz" }
+    }
+
+    class Item(val id: Int, var name: String)
+
+    private fun namesQuery(): SqlQuery {
+        val query = SqlQuery.query("select name from cached_item order by name")
+        query.cacheDependencies = setOf("cached_item")
+        return query
+    }
+}
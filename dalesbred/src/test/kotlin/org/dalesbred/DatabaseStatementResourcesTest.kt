@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.connection.ConnectionProvider
+import org.dalesbred.dialect.HsqldbDialect
+import org.dalesbred.internal.jdbc.StatementResources
+import org.junit.Test
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.mock
+import java.sql.Array
+import java.sql.Connection
+import kotlin.test.assertEquals
+
+class DatabaseStatementResourcesTest {
+
+    private val events = mutableListOf<String>()
+
+    private val connectionProvider = object : ConnectionProvider {
+        private val delegate = TestDatabaseProvider.createInMemoryHSQLConnectionProvider()
+
+        override fun getConnection(): Connection = delegate.connection
+
+        override fun releaseConnection(connection: Connection) {
+            events += "release"
+            delegate.releaseConnection(connection)
+        }
+    }
+
+    private val db = Database(connectionProvider, ResourceRegisteringDialect(events))
+
+    @Test
+    fun resourcesAreFreedBeforeImplicitTransactionReleasesConnection() {
+        db.findUniqueInt("values (cast(? as int))", FreedValue(42))
+
+        assertEquals(listOf("free", "release"), events)
+    }
+
+    @Test
+    fun resourcesAreFreedAfterEachStatementOfTransaction() {
+        db.withVoidTransaction {
+            db.findUniqueInt("values (cast(? as int))", FreedValue(1))
+            assertEquals(listOf("free"), events)
+        }
+
+        assertEquals(listOf("free", "release"), events)
+    }
+
+    private class FreedValue(val value: Int)
+
+    private class ResourceRegisteringDialect(events: MutableList<String>) : HsqldbDialect() {
+        init {
+            registerArgumentSetter(FreedValue::class.java) { ps, index, value ->
+                val array = mock(Array::class.java)
+                doAnswer { events += "free"; null }.`when`(array).free()
+                StatementResources.freeAfterExecution(array)
+                ps.setInt(index, value.value)
+            }
+        }
+    }
+}
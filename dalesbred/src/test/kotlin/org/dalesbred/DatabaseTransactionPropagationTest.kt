@@ -22,7 +22,9 @@
 
 package org.dalesbred
 
+import org.dalesbred.dialect.HsqldbDialect
 import org.dalesbred.testutils.withSuppressedLogging
+import org.dalesbred.transaction.DefaultTransactionManager
 import org.dalesbred.transaction.Propagation.*
 import org.junit.Test
 import kotlin.test.assertEquals
@@ -50,6 +52,26 @@ class DatabaseTransactionPropagationTest {
         assertEquals("ok", result)
     }
 
+    @Test
+    fun completionActionsAreExecutedOnceAfterPhysicalTransaction() {
+        val transactionManager = DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider())
+        val db = Database(transactionManager, HsqldbDialect())
+        val executed = mutableListOf<String>()
+        val action = object : Runnable {
+            override fun run() { executed += "action" }
+            override fun equals(other: Any?) = other === this || other?.javaClass == javaClass
+            override fun hashCode() = 0
+        }
+
+        db.withTransaction { _ ->
+            db.withTransaction(NESTED) { _ -> transactionManager.afterCompletion(action) }
+            transactionManager.afterCompletion(action)
+            assertEquals(emptyList<String>(), executed)
+        }
+
+        assertEquals(listOf("action"), executed)
+    }
+
     @Test
     fun nestedTransactions() {
         db.update("drop table if exists test_table")
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.testutils.withSuppressedLogging
+import org.dalesbred.transaction.RetryPolicy
+import org.dalesbred.transaction.TransactionSerializationException
+import org.dalesbred.transaction.TransactionSettings
+import org.junit.Test
+import java.sql.SQLException
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class DatabaseTransactionRetryTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    private val policy = RetryPolicy.builder()
+            .maxAttempts(3)
+            .backoff(Duration.ofMillis(1), Duration.ofMillis(5))
+            .build()
+
+    private val settings = TransactionSettings().apply { retryPolicy = policy }
+
+    @Test
+    fun serializationFailuresAreRetried() {
+        withSuppressedLogging {
+            var attempts = 0
+            val result = db.withTransaction(settings) {
+                attempts++
+                if (attempts < 3)
+                    throw serializationFailure()
+                "ok"
+            }
+
+            assertEquals("ok", result)
+            assertEquals(3, attempts)
+            assertEquals(2, policy.statistics.retries)
+            assertEquals(1, policy.statistics.recoveredTransactions)
+        }
+    }
+
+    @Test
+    fun failureIsThrownWhenAttemptsAreExhausted() {
+        withSuppressedLogging {
+            var attempts = 0
+            assertFailsWith<TransactionSerializationException> {
+                db.withTransaction(settings) {
+                    attempts++
+                    throw serializationFailure()
+                }
+            }
+
+            assertEquals(3, attempts)
+            assertEquals(1, policy.statistics.exhaustedTransactions)
+        }
+    }
+
+    @Test
+    fun otherExceptionsAreNotRetried() {
+        withSuppressedLogging {
+            var attempts = 0
+            assertFailsWith<IllegalStateException> {
+                db.withTransaction(settings) {
+                    attempts++
+                    throw IllegalStateException()
+                }
+            }
+
+            assertEquals(1, attempts)
+        }
+    }
+
+    @Test
+    fun joinedTransactionsAreNotRetried() {
+        withSuppressedLogging {
+            var attempts = 0
+            assertFailsWith<TransactionSerializationException> {
+                db.withTransaction {
+                    db.withTransaction(settings) {
+                        attempts++
+                        throw serializationFailure()
+                    }
+                }
+            }
+
+            assertEquals(1, attempts)
+            assertEquals(0, policy.statistics.retries)
+        }
+    }
+
+    @Test
+    fun timeoutCoversAllAttempts() {
+        val slowPolicy = RetryPolicy.builder()
+                .maxAttempts(5)
+                .backoff(Duration.ofMillis(120), Duration.ofMillis(120))
+                .jitter(false)
+                .build()
+        val timedSettings = TransactionSettings().apply {
+            retryPolicy = slowPolicy
+            timeout = Duration.ofMillis(200)
+        }
+
+        withSuppressedLogging {
+            var attempts = 0
+            assertFailsWith<TransactionSerializationException> {
+                db.withTransaction(timedSettings) {
+                    attempts++
+                    throw serializationFailure()
+                }
+            }
+
+            assertEquals(2, attempts)
+            assertEquals(1, slowPolicy.statistics.exhaustedTransactions)
+        }
+    }
+
+    private fun serializationFailure() = TransactionSerializationException(SQLException("serialization failure", "40001"))
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.monitoring.QueryExecution
+import org.dalesbred.monitoring.QueryListener
+import org.dalesbred.testutils.withSuppressedLogging
+import org.dalesbred.transaction.Propagation
+import org.dalesbred.transaction.TransactionSettings
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import java.sql.Statement
+import java.util.concurrent.Executors
+import java.util.function.Supplier
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class DatabaseUpdateBufferingTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    private val executions = mutableListOf<QueryExecution>()
+
+    @Before
+    fun createTable() {
+        db.update("drop table if exists buffering_test")
+        db.update("create table buffering_test (id int primary key, name varchar(10))")
+
+        db.addQueryListener(object : QueryListener {
+            override fun afterExecution(execution: QueryExecution) {
+                executions += execution
+            }
+        })
+    }
+
+    @Test
+    fun consecutiveUpdatesAreExecutedAsBatch() {
+        db.withTransaction(bufferingSettings(100)) {
+            for (id in 1..3)
+                assertEquals(Statement.SUCCESS_NO_INFO, db.update("insert into buffering_test (id) values (?)", id))
+
+            assertEquals(3, db.findUniqueInt("select count(*) from buffering_test"))
+        }
+
+        val (batch, query) = executions
+        assertEquals(QueryExecution.Type.BATCH_UPDATE, batch.type)
+        assertEquals(3, batch.batchSize)
+        assertEquals(QueryExecution.Type.QUERY, query.type)
+    }
+
+    @Test(timeout = 10000)
+    fun propagatedTasksShareTheBufferOfTheTransaction() {
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            db.withTransaction(bufferingSettings(100)) {
+                db.update("insert into buffering_test (id) values (?)", 1)
+
+                val task = db.propagate(Supplier {
+                    val count = db.findUniqueInt("select count(*) from buffering_test")
+                    assertEquals(Statement.SUCCESS_NO_INFO, db.update("insert into buffering_test (id) values (?)", 2))
+                    count
+                })
+
+                assertEquals(1, executor.submit<Int> { task.get() }.get())
+                assertEquals(2, db.findUniqueInt("select count(*) from buffering_test"))
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun bufferIsFlushedWhenSqlChanges() {
+        db.withTransaction(bufferingSettings(100)) {
+            db.update("insert into buffering_test (id) values (?)", 1)
+            db.update("insert into buffering_test (id) values (?)", 2)
+            db.update("update buffering_test set id = id + 10 where id = ?", 1)
+        }
+
+        assertEquals(listOf(2, 1), executions.map { it.batchSize })
+        assertEquals(listOf(2, 11), db.findAll(Int::class.java, "select id from buffering_test order by id"))
+    }
+
+    @Test
+    fun bufferIsFlushedWhenFull() {
+        db.withTransaction(bufferingSettings(2)) {
+            for (id in 1..5)
+                db.update("insert into buffering_test (id) values (?)", id)
+        }
+
+        assertEquals(listOf(2, 2, 1), executions.map { it.batchSize })
+    }
+
+    @Test
+    fun uniqueUpdatesAreNotBuffered() {
+        db.update("insert into buffering_test (id) values (1)")
+
+        db.withTransaction(bufferingSettings(100)) {
+            db.updateUnique("update buffering_test set id = 2 where id = 1")
+        }
+
+        assertEquals(QueryExecution.Type.UPDATE, executions.last().type)
+    }
+
+    @Test
+    fun errorsAreReportedForOriginatingUpdate() {
+        withSuppressedLogging {
+            val exception = assertFailsWith<DatabaseSQLException> {
+                db.withTransaction(bufferingSettings(100)) {
+                    db.update("insert into buffering_test (id, name) values (?, ?)", 1, "foo")
+                    db.update("insert into buffering_test (id, name) values (?, ?)", 2, "bar")
+                    db.update("insert into buffering_test (id, name) values (?, ?)", 1, "baz")
+                    db.update("insert into buffering_test (id, name) values (?, ?)", 3, "quux")
+                }
+            }
+
+            assertEquals(listOf<Any?>(1, "baz"), exception.query?.arguments)
+        }
+    }
+
+    @Test
+    fun nestedTransactionFlushesSharedBufferBeforeItEnds() {
+        db.withTransaction(bufferingSettings(100)) {
+            db.update("insert into buffering_test (id) values (?)", 1)
+            db.withTransaction(Propagation.NESTED) {
+                db.update("insert into buffering_test (id) values (?)", 2)
+            }
+            db.update("insert into buffering_test (id) values (?)", 3)
+        }
+
+        assertEquals(listOf(1, 1, 1), executions.map { it.batchSize })
+        assertEquals(listOf(1, 2, 3), db.findAll(Int::class.java, "select id from buffering_test order by id"))
+    }
+
+    @Test
+    fun failingNestedTransactionDiscardsItsBufferedUpdates() {
+        withSuppressedLogging {
+            db.withTransaction(bufferingSettings(100)) {
+                db.update("insert into buffering_test (id) values (?)", 1)
+                assertFailsWith<IllegalStateException> {
+                    db.withTransaction(Propagation.NESTED) {
+                        db.update("insert into buffering_test (id) values (?)", 2)
+                        throw IllegalStateException("rollback")
+                    }
+                }
+                db.update("insert into buffering_test (id) values (?)", 3)
+            }
+        }
+
+        assertEquals(listOf(1, 3), db.findAll(Int::class.java, "select id from buffering_test order by id"))
+    }
+
+    @Test
+    fun updatesAreNotBufferedByDefault() {
+        db.withTransaction(TransactionSettings()) {
+            assertEquals(1, db.update("insert into buffering_test (id) values (?)", 1))
+        }
+    }
+
+    private fun bufferingSettings(size: Int) = TransactionSettings().apply { updateBatchSize = size }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.junit.Rule
+import org.junit.Test
+import kotlin.test.assertEquals
+
+class DatabaseUpdateReturningTest {
+
+    private val db = TestDatabaseProvider.createPostgreSQLDatabase()
+
+    @get:Rule val rule = TransactionalTestsRule(db)
+
+    @Test
+    fun updateReturningMapsReturnedRows() {
+        createTable()
+
+        val rows = db.updateReturning(Row::class.java, "insert into returning_test (name) values (?), (?) returning id, name, status", "foo", "bar")
+
+        assertEquals(listOf("foo", "bar"), rows.map { it.name })
+        assertEquals(listOf("new", "new"), rows.map { it.status })
+        assertEquals(2, rows.map { it.id }.distinct().size)
+    }
+
+    @Test
+    fun updateBatchReturningMapsRowsOfAllItems() {
+        createTable()
+
+        val rows = db.updateBatchReturning(Row::class.java, "insert into returning_test (name) values (?) returning id, name, status",
+                listOf(listOf("foo"), listOf("bar"), listOf("baz")))
+
+        assertEquals(listOf("foo", "bar", "baz"), rows.map { it.name })
+        assertEquals(listOf("new", "new", "new"), rows.map { it.status })
+    }
+
+    private fun createTable() {
+        db.update("drop table if exists returning_test")
+        db.update("create temporary table returning_test (id serial primary key, name varchar(10) not null, status varchar(10) not null default 'new')")
+    }
+
+    class Row(val id: Int, val name: String, val status: String)
+}
@@ -22,13 +22,19 @@
 
 package org.dalesbred
 
+import org.dalesbred.query.SqlQuery
 import org.intellij.lang.annotations.Language
 import org.junit.Rule
 import org.junit.Test
 import org.w3c.dom.Document
+import java.io.StringReader
+import java.io.StringWriter
 import javax.xml.parsers.DocumentBuilderFactory
+import javax.xml.transform.stream.StreamResult
+import javax.xml.transform.stream.StreamSource
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
 
 class DatabaseXMLTest {
 
@@ -49,6 +55,18 @@ class DatabaseXMLTest {
         assertEquals("bar", root.textContent)
     }
 
+    @Test
+    fun streamingXmlSourcesAndResults() {
+        db.update("drop table if exists xml_test")
+        db.update("create temporary table xml_test (xml_document xml)")
+
+        db.update("insert into xml_test (xml_document) values (?)", StreamSource(StringReader("<foo>bar</foo>")))
+
+        val writer = StringWriter()
+        assertTrue(db.streamXml(SqlQuery.query("select xml_document from xml_test"), StreamResult(writer)))
+        assertTrue(writer.toString().endsWith("<foo>bar</foo>"))
+    }
+
     private fun xmlDocument(@Language("XML") xml: String) =
             DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(xml.byteInputStream())
 }
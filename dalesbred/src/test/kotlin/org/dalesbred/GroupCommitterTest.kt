@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.connection.ConnectionProvider
+import org.dalesbred.dialect.HsqldbDialect
+import org.dalesbred.testutils.withSuppressedLogging
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.sql.Connection
+import java.sql.SQLException
+import java.time.Duration
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class GroupCommitterTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    private val committer = GroupCommitter.builder(db).maxGroupSize(10).maxDelay(Duration.ofSeconds(10)).build()
+
+    @Before
+    fun createTable() {
+        db.update("drop table if exists group_commit_test")
+        db.update("create table group_commit_test (id int primary key)")
+    }
+
+    @After
+    fun closeCommitter() {
+        committer.close()
+    }
+
+    @Test
+    fun fullGroupIsCommittedInSingleTransaction() {
+        val futures = (1..10).map { id -> committer.submit { _ -> db.update("insert into group_commit_test (id) values (?)", id) } }
+
+        for (future in futures)
+            assertEquals(1, future.get(10, TimeUnit.SECONDS))
+
+        assertEquals(1, committer.committedGroupCount)
+        assertEquals(10, db.findUniqueInt("select count(*) from group_commit_test"))
+    }
+
+    @Test
+    fun failingCallbackRollsBackOnlyItsOwnChanges() {
+        withSuppressedLogging {
+            val futures = listOf(1, 2, 1, 3).map { id -> committer.submit { _ -> db.update("insert into group_commit_test (id) values (?)", id) } }
+            committer.close()
+
+            assertEquals(1, futures[0].get(10, TimeUnit.SECONDS))
+            assertEquals(1, futures[1].get(10, TimeUnit.SECONDS))
+            val e = assertFailsWith<ExecutionException> { futures[2].get(10, TimeUnit.SECONDS) }
+            assertTrue(e.cause is DatabaseException)
+            assertEquals(1, futures[3].get(10, TimeUnit.SECONDS))
+
+            assertEquals(listOf(1, 2, 3), db.findAll(Int::class.java, "select id from group_commit_test order by id"))
+        }
+    }
+
+    @Test
+    fun failureToOpenTransactionFailsAllCallbacksOfGroup() {
+        val failingProvider = object : ConnectionProvider {
+            override fun getConnection(): Connection = throw SQLException("no connection")
+            override fun releaseConnection(connection: Connection) {}
+        }
+
+        withSuppressedLogging {
+            GroupCommitter.builder(Database(failingProvider, HsqldbDialect())).maxGroupSize(3).build().use { failingCommitter ->
+                val futures = (1..3).map { failingCommitter.submit { _ -> it } }
+
+                for (future in futures) {
+                    val e = assertFailsWith<ExecutionException> { future.get(10, TimeUnit.SECONDS) }
+                    assertTrue(e.cause is DatabaseException)
+                }
+                assertEquals(0, failingCommitter.committedGroupCount)
+            }
+        }
+    }
+
+    @Test
+    fun errorThrownByCallbackFailsAllCallbacksOfGroup() {
+        withSuppressedLogging {
+            val futures = listOf(
+                    committer.submit { _ -> db.update("insert into group_commit_test (id) values (1)") },
+                    committer.submit<Int> { _ -> throw AssertionError("failed") },
+                    committer.submit { _ -> db.update("insert into group_commit_test (id) values (2)") })
+            committer.close()
+
+            for (future in futures) {
+                val e = assertFailsWith<ExecutionException> { future.get(10, TimeUnit.SECONDS) }
+                assertTrue(e.cause is AssertionError)
+            }
+            assertEquals(0, committer.committedGroupCount)
+        }
+    }
+
+    @Test
+    fun closingCommitsPendingCallbacksAndRejectsNewOnes() {
+        val future = committer.submit { _ -> db.update("insert into group_commit_test (id) values (1)") }
+        committer.close()
+
+        assertEquals(1, future.get(10, TimeUnit.SECONDS))
+        val e = assertFailsWith<ExecutionException> { committer.submit { _ -> 1 }.get(10, TimeUnit.SECONDS) }
+        assertTrue(e.cause is RejectedExecutionException)
+    }
+}
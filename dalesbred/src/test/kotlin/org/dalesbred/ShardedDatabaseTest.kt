@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.connection.DriverManagerConnectionProvider
+import org.dalesbred.dialect.HsqldbDialect
+import org.junit.After
+import org.junit.Test
+import java.time.Duration
+import java.util.Currency
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class ShardedDatabaseTest {
+
+    private val sharded = ShardedDatabase.builder<Int>()
+            .dialect(HsqldbDialect())
+            .addShard(DriverManagerConnectionProvider("jdbc:hsqldb:mem:shard0", "sa", ""))
+            .addShard(DriverManagerConnectionProvider("jdbc:hsqldb:mem:shard1", "sa", ""))
+            .addShard(DriverManagerConnectionProvider("jdbc:hsqldb:mem:shard2", "sa", ""))
+            .shardFunction { id -> id % 3 }
+            .build()
+
+    @After
+    fun close() {
+        sharded.close()
+    }
+
+    @Test
+    fun keysAreRoutedToShards() {
+        createTables()
+
+        assertSame(sharded.shards[1], sharded.shardFor(4))
+        assertEquals(listOf(1, 4, 7), sharded.shardFor(1).findAll(Int::class.java, "select id from sharded_test order by id"))
+    }
+
+    @Test
+    fun scatterGatherConcatenatesResultsOfShards() {
+        createTables()
+
+        val ids = sharded.findAll(Int::class.java, "select id from sharded_test order by id")
+
+        assertEquals(listOf(0, 3, 6, 9, 1, 4, 7, 2, 5, 8), ids)
+    }
+
+    @Test
+    fun orderedScatterGatherMergesSortedResults() {
+        createTables()
+
+        val ids = sharded.findAllOrdered(Int::class.java, Comparator.reverseOrder(), "select id from sharded_test order by id desc")
+
+        assertEquals((9 downTo 0).toList(), ids)
+    }
+
+    @Test
+    fun mergeKeepsOrderOfShardsForEqualElements() {
+        val merged = ShardedDatabase.mergeSorted(listOf(listOf("a1", "b1"), listOf(), listOf("a2", "c2")), compareBy<String> { it[0] })
+
+        assertEquals(listOf("a1", "a2", "b1", "c2"), merged)
+    }
+
+    @Test
+    fun typeConversionsAreSharedBetweenShards() {
+        sharded.typeConversionRegistry.registerConversionFromDatabase(String::class.java, Currency::class.java) { Currency.getInstance(it) }
+
+        val results = sharded.scatter { db -> db.findUnique(Currency::class.java, "values ('EUR')") }
+
+        assertEquals(List(3) { Currency.getInstance("EUR") }, results)
+    }
+
+    @Test
+    fun slowShardTimesOut() {
+        val timed = ShardedDatabase.builder<Int>()
+                .addShard(sharded.shards[0])
+                .addShard(sharded.shards[1])
+                .shardTimeout(Duration.ofMillis(50))
+                .build()
+        val release = CountDownLatch(1)
+        try {
+            assertFailsWith<ShardTimeoutException> {
+                timed.scatter { db -> if (db === sharded.shards[1]) release.await(10, TimeUnit.SECONDS); 1 }
+            }
+        } finally {
+            release.countDown()
+            timed.close()
+        }
+    }
+
+    @Test
+    fun shardTimeoutIsUsedAsDeadlineOfQueries() {
+        val timed = ShardedDatabase.builder<Int>()
+                .addShard(sharded.shards[0])
+                .addShard(sharded.shards[1])
+                .shardTimeout(Duration.ofSeconds(30))
+                .build()
+        try {
+            val remainingTimes = timed.scatter { db -> db.withTransaction { tx -> tx.remainingTime.get() } }
+
+            for (remaining in remainingTimes)
+                assertTrue(remaining <= Duration.ofSeconds(30) && remaining > Duration.ZERO)
+        } finally {
+            timed.close()
+        }
+    }
+
+    private fun createTables() {
+        for (db in sharded.shards) {
+            db.update("drop table if exists sharded_test")
+            db.update("create table sharded_test (id int primary key)")
+        }
+        for (id in 0..9)
+            sharded.shardFor(id).update("insert into sharded_test (id) values (?)", id)
+    }
+}
@@ -22,9 +22,11 @@
 
 package org.dalesbred
 
+import org.dalesbred.datatype.InList
 import org.dalesbred.query.SqlQuery
 import org.junit.Test
 import java.lang.IllegalArgumentException
+import java.time.Duration
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
 import kotlin.test.assertNotEquals
@@ -76,6 +78,36 @@ class SqlQueryTest {
         assertEquals(listOf("bar"), query.arguments)
     }
 
+    @Test
+    fun namedQueryWithInListParameter() {
+        val query = SqlQuery.namedQuery("select * from foo where id in (:ids) and name = :name",
+                mapOf("ids" to InList.of(listOf(1, 2, 3)), "name" to "bar"))
+
+        assertEquals("select * from foo where id in (?,?,?,?) and name = ?", query.sql)
+        assertEquals(listOf(1, 2, 3, 3, "bar"), query.arguments)
+    }
+
+    @Test
+    fun namedQueryBindsCollectionParameterAsSingleArgument() {
+        val ids = listOf(1, 2, 3)
+        val query = SqlQuery.namedQuery("select * from foo where id = any(:ids)", mapOf("ids" to ids))
+
+        assertEquals("select * from foo where id = any(?)", query.sql)
+        assertEquals(listOf(ids), query.arguments)
+    }
+
+    @Test
+    fun namedQueryWithEmptyCollectionParameter() {
+        val query = SqlQuery.namedQuery("select * from foo where id = any(:ids)", mapOf("ids" to emptyList<Int>()))
+
+        assertEquals(listOf(emptyList<Int>()), query.arguments)
+    }
+
+    @Test
+    fun emptyInListIsRejected() {
+        assertFailsWith<IllegalArgumentException> { InList.of(emptyList<Int>()) }
+    }
+
     @Test
     fun `illegal fetch size`() {
         val query = SqlQuery.query("select * from foo")
@@ -84,5 +116,21 @@ class SqlQueryTest {
         }
     }
 
+    @Test
+    fun `illegal query timeout`() {
+        val query = SqlQuery.query("select * from foo")
+        assertFailsWith<IllegalArgumentException> {
+            query.queryTimeout = Duration.ZERO
+        }
+    }
+
+    @Test
+    fun `illegal max rows`() {
+        val query = SqlQuery.query("select * from foo")
+        assertFailsWith<IllegalArgumentException> {
+            query.maxRows = -1
+        }
+    }
+
     class ExampleNamed(val name: String)
 }
@@ -37,6 +37,6 @@ class TransactionSettingsTest {
             isolation = Isolation.REPEATABLE_READ
         }
 
-        assertEquals("[propagation=REQUIRED, isolation=REPEATABLE_READ]", settings.toString())
+        assertEquals("[propagation=REQUIRED, isolation=REPEATABLE_READ, readOnly=false, timeout=null]", settings.toString())
     }
 }
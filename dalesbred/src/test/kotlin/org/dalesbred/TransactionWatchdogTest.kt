@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred
+
+import org.dalesbred.dialect.HsqldbDialect
+import org.dalesbred.monitoring.TransactionExecution
+import org.dalesbred.query.SqlQuery
+import org.dalesbred.transaction.DefaultTransactionManager
+import org.junit.After
+import org.junit.Test
+import java.time.Duration
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+class TransactionWatchdogTest {
+
+    private val reported = mutableListOf<Pair<TransactionExecution, SqlQuery?>>()
+
+    private val watchdog = TransactionWatchdog.builder()
+            .threshold(Duration.ofMillis(1))
+            .checkInterval(Duration.ofHours(1))
+            .handler { execution, query -> reported += execution to query }
+            .build()
+
+    private val transactionManager = DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider())
+
+    private val db = Database(transactionManager, HsqldbDialect())
+
+    init {
+        transactionManager.addTransactionListener(watchdog)
+    }
+
+    @After
+    fun closeWatchdog() {
+        watchdog.close()
+    }
+
+    @Test
+    fun longTransactionIsReportedOnceWithLastQuery() {
+        val query = SqlQuery.query("values (1)")
+
+        db.withTransaction { _ ->
+            db.findUniqueInt(query)
+            Thread.sleep(5)
+
+            watchdog.check()
+            watchdog.check()
+            assertEquals(1, watchdog.activeTransactionCount)
+        }
+
+        assertEquals(0, watchdog.activeTransactionCount)
+        val (_, reportedQuery) = reported.single()
+        assertSame(query, reportedQuery)
+    }
+
+    @Test
+    fun queriesOfPropagatedTasksAreReported() {
+        val query = SqlQuery.query("values (1)")
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            db.withTransaction { _ ->
+                val task = db.propagate(Supplier { db.findUniqueInt(query) })
+                executor.submit<Int> { task.get() }.get(10, TimeUnit.SECONDS)
+                Thread.sleep(5)
+                watchdog.check()
+            }
+        } finally {
+            executor.shutdown()
+        }
+
+        assertSame(query, reported.single().second)
+    }
+
+    @Test
+    fun queriesOfPreviousTransactionsAreNotReported() {
+        db.findUniqueInt("values (1)")
+
+        db.withTransaction { _ ->
+            Thread.sleep(5)
+            watchdog.check()
+        }
+
+        assertNull(reported.single().second)
+    }
+
+    @Test
+    fun lastQueryIsNotRetainedAfterWatchedTransaction() {
+        db.withTransaction { _ -> db.findUniqueInt("values (1)") }
+
+        assertNull(DebugContext.getQueryHolder().query)
+    }
+
+    @Test
+    fun lastQueryIsNotRetainedWithoutWatchdog() {
+        val unwatched = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+        unwatched.withTransaction { _ -> unwatched.findUniqueInt("values (1)") }
+        unwatched.findUniqueInt("values (1)")
+
+        assertNull(DebugContext.getQueryHolder().query)
+    }
+
+    @Test
+    fun shortTransactionsAreNotReported() {
+        db.withTransaction { _ -> db.findUniqueInt("values (1)") }
+        watchdog.check()
+
+        assertEquals(0, reported.size)
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.cache
+
+import org.junit.Test
+import java.time.Duration
+import kotlin.test.assertEquals
+
+class ResultCacheTest {
+
+    @Test
+    fun valuesAreLoadedOnlyOnce() {
+        val cache = ResultCache.builder().build()
+        var loads = 0
+
+        repeat(3) {
+            assertEquals("value", cache.get("key", setOf("foo")) { loads++; "value" })
+        }
+
+        assertEquals(1, loads)
+        assertEquals(2, cache.hitCount)
+        assertEquals(1, cache.missCount)
+        assertEquals(2.0 / 3, cache.hitRate)
+    }
+
+    @Test
+    fun nullValuesAreCached() {
+        val cache = ResultCache.builder().build()
+        var loads = 0
+
+        repeat(2) {
+            cache.get<String?>("key", emptySet()) { loads++; null }
+        }
+
+        assertEquals(1, loads)
+    }
+
+    @Test
+    fun leastRecentlyUsedValuesAreEvicted() {
+        val cache = ResultCache.builder().maximumSize(2).build()
+
+        cache.get("a", emptySet()) { 1 }
+        cache.get("b", emptySet()) { 2 }
+        cache.get("a", emptySet()) { 1 }
+        cache.get("c", emptySet()) { 3 }
+
+        assertEquals(2, cache.size())
+        assertEquals(1, cache.evictionCount)
+        assertEquals(1, cache.get("a", emptySet()) { -1 })
+        assertEquals(-2, cache.get("b", emptySet()) { -2 })
+    }
+
+    @Test
+    fun expiredValuesAreReloaded() {
+        val cache = ResultCache.builder().timeToLive(Duration.ofMillis(1)).build()
+
+        cache.get("key", emptySet()) { 1 }
+        Thread.sleep(5)
+
+        assertEquals(2, cache.get("key", emptySet()) { 2 })
+    }
+
+    @Test
+    fun invalidationRemovesDependentValues() {
+        val cache = ResultCache.builder().build()
+        cache.get("a", setOf("Foo")) { 1 }
+        cache.get("b", setOf("bar")) { 2 }
+
+        cache.invalidate("public.\"FOO\"")
+
+        assertEquals(-1, cache.get("a", emptySet()) { -1 })
+        assertEquals(2, cache.get("b", emptySet()) { -2 })
+        assertEquals(1, cache.invalidationCount)
+    }
+
+    @Test
+    fun invalidationForStatementsDetectsModifiedTable() {
+        val cache = ResultCache.builder().build()
+
+        for (sql in listOf("insert into foo (x) values (1)", " UPDATE foo set x = 1", "delete from schema.foo", "merge into foo using ...", "truncate table foo")) {
+            cache.get("a", setOf("foo")) { 1 }
+            cache.get("b", setOf("bar")) { 2 }
+
+            cache.invalidateForStatement(sql)
+
+            assertEquals(1, cache.size(), sql)
+        }
+    }
+
+    @Test
+    fun unknownStatementsInvalidateEverything() {
+        val cache = ResultCache.builder().build()
+        cache.get("a", setOf("foo")) { 1 }
+
+        cache.invalidateForStatement("create table baz (id int)")
+
+        assertEquals(0, cache.size())
+    }
+
+    @Test
+    fun valuesLoadedDuringInvalidationAreNotCached() {
+        val cache = ResultCache.builder().build()
+
+        cache.get("key", setOf("foo")) { cache.invalidate("foo"); 1 }
+
+        assertEquals(0, cache.size())
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.connection
+
+import org.dalesbred.connection.RoutingConnectionProvider.Balancing.LEAST_OUTSTANDING
+import org.dalesbred.connection.RoutingConnectionProvider.Balancing.ROUND_ROBIN
+import org.junit.Test
+import org.mockito.Mockito.mock
+import java.sql.Connection
+import kotlin.test.assertEquals
+
+class RoutingConnectionProviderTest {
+
+    private val primary = CountingProvider()
+    private val replica1 = CountingProvider()
+    private val replica2 = CountingProvider()
+
+    @Test
+    fun readWriteConnectionsComeFromPrimary() {
+        val provider = RoutingConnectionProvider(primary, listOf(replica1, replica2))
+
+        provider.releaseConnection(provider.getConnection(false))
+        provider.releaseConnection(provider.connection)
+
+        assertEquals(2, primary.opened)
+        assertEquals(2, primary.released)
+        assertEquals(0, replica1.opened + replica2.opened)
+    }
+
+    @Test
+    fun readOnlyConnectionsAreBalancedRoundRobin() {
+        val provider = RoutingConnectionProvider(primary, listOf(replica1, replica2), ROUND_ROBIN)
+
+        repeat(4) {
+            provider.releaseConnection(provider.getConnection(true))
+        }
+
+        assertEquals(0, primary.opened)
+        assertEquals(2, replica1.opened)
+        assertEquals(2, replica2.opened)
+        assertEquals(2, replica1.released)
+        assertEquals(2, replica2.released)
+    }
+
+    @Test
+    fun leastOutstandingPrefersIdleReplicas() {
+        val provider = RoutingConnectionProvider(primary, listOf(replica1, replica2), LEAST_OUTSTANDING)
+
+        val first = provider.getConnection(true)
+        provider.getConnection(true)
+        provider.releaseConnection(first)
+
+        // One replica has a connection open, the other is idle, so the next ones should go to the idle one
+        val busy = if (replica1.released == 0) replica1 else replica2
+        val idle = if (busy === replica1) replica2 else replica1
+
+        provider.getConnection(true)
+        assertEquals(1, busy.opened)
+        assertEquals(2, idle.opened)
+    }
+
+    @Test
+    fun readOnlyConnectionsUsePrimaryWhenThereAreNoReplicas() {
+        val provider = RoutingConnectionProvider(primary, emptyList())
+
+        provider.releaseConnection(provider.getConnection(true))
+
+        assertEquals(1, primary.opened)
+        assertEquals(1, primary.released)
+    }
+
+    private class CountingProvider : ConnectionProvider {
+        var opened = 0
+        var released = 0
+
+        override fun getConnection(): Connection {
+            opened++
+            return mock(Connection::class.java)
+        }
+
+        override fun releaseConnection(connection: Connection) {
+            released++
+        }
+    }
+}
@@ -24,8 +24,11 @@ package org.dalesbred.dialect
 
 import org.dalesbred.Database
 import org.dalesbred.TransactionalTestsRule
+import org.dalesbred.datatype.SqlArray
+import org.dalesbred.query.QueryBuilder
 import org.junit.Rule
 import org.junit.Test
+import kotlin.test.assertEquals
 import kotlin.test.assertTrue
 
 class H2DialectTest {
@@ -42,4 +45,20 @@ class H2DialectTest {
             assertTrue { dialect is H2Dialect }
         }
     }
+
+    @Test
+    fun inPredicateWithArray() {
+        val query = QueryBuilder("select x from system_range(1, 10) where x ").appendIn(db.dialect, SqlArray.longs(2, 5, 42)).build()
+
+        assertEquals(listOf(2L, 5L), db.findAll(Long::class.java, query))
+    }
+
+    @Test
+    fun idTable() {
+        val result = db.withIdTable(listOf(2L, 5L, 42L), "wanted_ids", "bigint") {
+            db.findAll(Long::class.java, "select x from system_range(1, 10) join wanted_ids on x = id order by x")
+        }
+
+        assertEquals(listOf(2L, 5L), result)
+    }
 }
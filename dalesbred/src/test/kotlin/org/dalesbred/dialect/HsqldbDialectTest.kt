@@ -24,6 +24,8 @@ package org.dalesbred.dialect
 
 import org.dalesbred.Database
 import org.dalesbred.TransactionalTestsRule
+import org.dalesbred.datatype.SqlArray
+import org.dalesbred.query.QueryBuilder
 import org.junit.Rule
 import org.junit.Test
 
@@ -69,6 +71,19 @@ class HsqldbDialectTest {
         assertEquals(Mood.HAPPY, movie.mood)
     }
 
+    @Test
+    fun inPredicateWithArray() {
+        db.update("drop table if exists in_test")
+        db.update("create temporary table in_test (id int, name varchar(20))")
+        db.update("insert into in_test values (1, 'foo'), (2, 'bar'), (3, 'baz')")
+
+        val byIds = QueryBuilder("select name from in_test where id ").appendIn(db.dialect, SqlArray.ints(1, 3)).append(" order by id").build()
+        val byNames = QueryBuilder("select id from in_test where name ").appendIn(db.dialect, SqlArray.varchars("bar", "baz")).append(" order by id").build()
+
+        assertEquals(listOf("foo", "baz"), db.findAll(String::class.java, byIds))
+        assertEquals(listOf(2, 3), db.findAll(Int::class.java, byNames))
+    }
+
     enum class Mood {
         SAD,
         HAPPY
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.dialect
+
+import org.dalesbred.datatype.SqlArray
+import org.junit.Test
+import org.mockito.ArgumentCaptor
+import org.mockito.ArgumentMatchers.any
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.ArgumentMatchers.eq
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.verify
+import org.postgresql.core.BaseConnection
+import org.postgresql.core.Oid
+import org.postgresql.core.TypeInfo
+import java.sql.Array
+import java.sql.PreparedStatement
+import kotlin.test.assertEquals
+
+class PostgreSQLArrayBindingTest {
+
+    private val dialect = PostgreSQLDialect()
+
+    private val connection = mock(BaseConnection::class.java)
+
+    private val ps = mock(PreparedStatement::class.java)
+
+    init {
+        val typeInfo = mock(TypeInfo::class.java)
+        `when`(typeInfo.getPGArrayType("integer")).thenReturn(Oid.INT4_ARRAY)
+        `when`(typeInfo.getPGArrayType("bigint")).thenReturn(Oid.INT8_ARRAY)
+        `when`(connection.typeInfo).thenReturn(typeInfo)
+        `when`(connection.isWrapperFor(BaseConnection::class.java)).thenReturn(true)
+        `when`(connection.unwrap(BaseConnection::class.java)).thenReturn(connection)
+        `when`(ps.connection).thenReturn(connection)
+    }
+
+    @Test
+    fun primitiveArraysAreBoundWithoutBoxing() {
+        dialect.bindArgument(ps, 1, SqlArray.ints(1, -2, 3))
+        dialect.bindArgument(ps, 2, SqlArray.longs(Long.MAX_VALUE))
+        dialect.bindArgument(ps, 3, SqlArray.ints())
+
+        assertEquals(listOf("{1,-2,3}", "{${Long.MAX_VALUE}}", "{}"), (1..3).map { boundArray(it).toString() })
+        verify(connection, never()).createArrayOf(anyString(), any())
+    }
+
+    @Test
+    fun otherArraysAreCreatedByDriver() {
+        val array = mock(Array::class.java)
+        `when`(connection.createArrayOf("varchar", arrayOf<Any>("foo"))).thenReturn(array)
+
+        dialect.bindArgument(ps, 1, SqlArray.varchars("foo"))
+
+        verify(ps).setArray(1, array)
+    }
+
+    private fun boundArray(index: Int): Array {
+        val captor = ArgumentCaptor.forClass(Array::class.java)
+        verify(ps).setArray(eq(index), captor.capture())
+        return captor.value
+    }
+}
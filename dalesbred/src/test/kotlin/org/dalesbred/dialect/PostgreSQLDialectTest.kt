@@ -24,6 +24,10 @@ package org.dalesbred.dialect
 
 import org.dalesbred.TestDatabaseProvider
 import org.dalesbred.TransactionalTestsRule
+import org.dalesbred.datatype.SqlArray
+import org.dalesbred.monitoring.QueryExecution
+import org.dalesbred.monitoring.QueryListener
+import org.dalesbred.query.SqlQuery
 import org.junit.Rule
 import org.junit.Test
 import java.util.*
@@ -37,6 +41,41 @@ class PostgreSQLDialectTest {
     @get:Rule
     val rule = TransactionalTestsRule(db)
 
+    @Test
+    fun idTableIsLoadedWithCopy() {
+        val ids = listOf("foo", "tab\there", "back\\slash", "new\nline")
+        val result = db.withIdTable(ids, "wanted_ids", "text") {
+            db.findAll(String::class.java, "select id from wanted_ids order by id")
+        }
+
+        assertEquals(ids.sorted(), result)
+    }
+
+    @Test
+    fun primitiveArrays() {
+        assertEquals(listOf(1, 2, 3), db.findAll(Int::class.java, "select unnest(?) order by 1", SqlArray.ints(3, 1, 2)))
+        assertEquals(listOf(Long.MAX_VALUE), db.findAll(Long::class.java, "select unnest(?)", SqlArray.longs(Long.MAX_VALUE)))
+    }
+
+    @Test
+    fun pipelinedQueriesAreExecutedAsSingleStatement() {
+        val executions = mutableListOf<QueryExecution>()
+        db.addQueryListener(object : QueryListener {
+            override fun afterExecution(execution: QueryExecution) {
+                executions += execution
+            }
+        })
+
+        val pipeline = db.pipeline()
+        val numbers = pipeline.findAll(Int::class.java, SqlQuery.query("select generate_series(1, ?) -- comment", 3))
+        val name = pipeline.findUnique(String::class.java, SqlQuery.query("select ?::text;", "foo"))
+        pipeline.execute()
+
+        assertEquals(listOf(1, 2, 3), numbers.get())
+        assertEquals("foo", name.get())
+        assertEquals(1, executions.size)
+    }
+
     @Test
     fun enumsAsPrimitives() {
         db.update("drop type if exists mood cascade")
@@ -24,6 +24,8 @@ package org.dalesbred.integration.spring
 
 import org.dalesbred.Database
 import org.dalesbred.TestDatabaseProvider
+import org.dalesbred.cache.ResultCache
+import org.dalesbred.query.SqlQuery
 import org.dalesbred.transaction.Propagation
 import org.junit.Test
 import org.springframework.context.annotation.AnnotationConfigApplicationContext
@@ -33,6 +35,8 @@ import org.springframework.jdbc.datasource.DataSourceTransactionManager
 import org.springframework.jdbc.datasource.DataSourceUtils
 import org.springframework.transaction.support.TransactionTemplate
 
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
 import javax.sql.DataSource
 import kotlin.test.assertEquals
 
@@ -68,6 +72,30 @@ class SpringConfigurationTest {
         assertEquals(0, db.findUniqueInt("select count(*) from spring_tx_test"))
     }
 
+    @Test
+    fun resultsAreInvalidatedAfterSpringTransactionCompletes() {
+        val ctx = AnnotationConfigApplicationContext(SimpleConfiguration::class.java)
+        val dataSource = ctx.getBean(DataSource::class.java)
+        val db = ctx.getBean(Database::class.java)
+        val cache = ResultCache.builder().maximumSize(10).build()
+
+        db.update("drop table if exists spring_cache_test")
+        db.update("create table spring_cache_test (id int)")
+        db.resultCache = cache
+        val query = SqlQuery.query("values (1)")
+        query.cacheDependencies = setOf("spring_cache_test")
+
+        TransactionTemplate(DataSourceTransactionManager(dataSource)).execute { _ ->
+            db.update("insert into spring_cache_test (id) values (1)")
+
+            // Another thread caches a result while the transaction is still open
+            CompletableFuture.supplyAsync { db.findUniqueInt(query) }.get(10, TimeUnit.SECONDS)
+            assertEquals(1, cache.size())
+        }
+
+        assertEquals(0, cache.size())
+    }
+
     @Configuration
     open class SimpleConfiguration : DalesbredConfigurationSupport() {
 
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.internal.jdbc
+
+import org.dalesbred.datatype.SqlArray
+import org.dalesbred.datatype.TypedNull
+import org.junit.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.verify
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.io.StringReader
+import java.io.StringWriter
+import java.math.BigDecimal
+import java.sql.*
+import javax.xml.transform.stream.StreamResult
+import javax.xml.transform.stream.StreamSource
+import kotlin.test.assertTrue
+
+class ArgumentBinderTest {
+
+    private val ps = mock(PreparedStatement::class.java)
+
+    private val binder = ArgumentBinder()
+
+    @Test
+    fun commonTypesAreBoundWithTypedSetters() {
+        binder.bind(ps, 1, 42)
+        binder.bind(ps, 2, 42L)
+        binder.bind(ps, 3, "foo")
+        binder.bind(ps, 4, BigDecimal.TEN)
+        binder.bind(ps, 5, Timestamp(0))
+        binder.bind(ps, 6, true)
+
+        verify(ps).setInt(1, 42)
+        verify(ps).setLong(2, 42L)
+        verify(ps).setString(3, "foo")
+        verify(ps).setBigDecimal(4, BigDecimal.TEN)
+        verify(ps).setTimestamp(5, Timestamp(0))
+        verify(ps).setBoolean(6, true)
+    }
+
+    @Test
+    fun typedNullsAreBoundWithSetNull() {
+        binder.bind(ps, 1, TypedNull.of(JDBCType.INTEGER))
+        binder.bind(ps, 2, TypedNull.of(Types.VARCHAR))
+
+        verify(ps).setNull(1, Types.INTEGER)
+        verify(ps).setNull(2, Types.VARCHAR)
+    }
+
+    @Test
+    fun unknownTypesAndNullsAreBoundWithSetObject() {
+        val value = Any()
+        binder.bind(ps, 1, value)
+        binder.bind(ps, 2, null)
+
+        verify(ps).setObject(1, value)
+        verify(ps).setObject(2, null)
+    }
+
+    @Test
+    fun settersAreResolvedForSubclasses() {
+        val stream = ByteArrayInputStream(byteArrayOf(1, 2, 3))
+        binder.bind(ps, 1, stream)
+
+        verify(ps).setBinaryStream(1, stream)
+    }
+
+    @Test(timeout = 30000)
+    fun registeringSettersConcurrentlyWithBindingDoesNotDeadlock() {
+        val values = listOf<Any>(StringBuilder(), java.util.UUID.randomUUID(), Any(), 'c', java.util.Locale.ROOT, java.net.URI("urn:x"))
+        val executor = java.util.concurrent.Executors.newFixedThreadPool(2)
+        try {
+            repeat(200) {
+                val binder = ArgumentBinder()
+                val statement = mock(PreparedStatement::class.java)
+                val binding = executor.submit { for (value in values) binder.bind(statement, 1, value) }
+                val registering = executor.submit { for (value in values) binder.register(value.javaClass) { ps, index, _ -> ps.setNull(index, Types.OTHER) } }
+                binding.get()
+                registering.get()
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun registeredSettersOverrideDefaults() {
+        binder.bind(ps, 1, 1)
+        binder.register(Int::class.javaObjectType) { ps, index, value -> ps.setLong(index, value.toLong()) }
+        binder.register(InputStream::class.java) { ps, index, _ -> ps.setNull(index, Types.BLOB) }
+
+        binder.bind(ps, 2, 2)
+        binder.bind(ps, 3, ByteArrayInputStream(byteArrayOf()))
+
+        verify(ps).setInt(1, 1)
+        verify(ps).setLong(2, 2L)
+        verify(ps).setNull(3, Types.BLOB)
+    }
+
+    @Test
+    fun xmlSourcesAreStreamedToSQLXML() {
+        val connection = mock(Connection::class.java)
+        val sqlxml = mock(SQLXML::class.java)
+        val writer = StringWriter()
+        `when`(ps.connection).thenReturn(connection)
+        `when`(connection.createSQLXML()).thenReturn(sqlxml)
+        `when`(sqlxml.setResult(StreamResult::class.java)).thenReturn(StreamResult(writer))
+
+        binder.bind(ps, 1, StreamSource(StringReader("<foo>bar</foo>")))
+
+        verify(ps).setSQLXML(1, sqlxml)
+        assertTrue(writer.toString().endsWith("<foo>bar</foo>"))
+    }
+
+    @Test
+    fun arraysAreFreedAfterExecution() {
+        val connection = mock(Connection::class.java)
+        val array = mock(java.sql.Array::class.java)
+        `when`(ps.connection).thenReturn(connection)
+        `when`(connection.createArrayOf("integer", arrayOf<Any>(1, 2))).thenReturn(array)
+
+        val enclosing = StatementResources.begin()
+        binder.bind(ps, 1, SqlArray.ints(1, 2))
+        verify(ps).setArray(1, array)
+        verify(array, never()).free()
+
+        StatementResources.end(enclosing)
+        verify(array).free()
+    }
+
+    @Test
+    fun resourcesOfEnclosingStatementAreFreedSeparately() {
+        val outer = mock(SQLXML::class.java)
+        val inner = mock(SQLXML::class.java)
+
+        val enclosing = StatementResources.begin()
+        StatementResources.freeAfterExecution(outer)
+
+        val outerResources = StatementResources.begin()
+        StatementResources.freeAfterExecution(inner)
+        StatementResources.end(outerResources)
+
+        verify(inner).free()
+        verify(outer, never()).free()
+
+        StatementResources.end(enclosing)
+        verify(outer).free()
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.internal.utils
+
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class SingleFlightTest {
+
+    private val singleFlight = SingleFlight<String, Any>()
+
+    @Test
+    fun concurrentCallersShareComputation() {
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val started = CountDownLatch(1)
+            val release = CountDownLatch(1)
+            val computations = AtomicInteger()
+            val result = Any()
+
+            val leader = executor.submit<Any> {
+                singleFlight.execute("key", Supplier {
+                    computations.incrementAndGet()
+                    started.countDown()
+                    release.await()
+                    result
+                })
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS))
+
+            val followers = (1..3).map { executor.submit<Any> { singleFlight.execute("key", Supplier { computations.incrementAndGet(); Any() }) } }
+            awaitFollowers(3)
+            release.countDown()
+
+            assertSame(result, leader.get(10, TimeUnit.SECONDS))
+            for (follower in followers)
+                assertSame(result, follower.get(10, TimeUnit.SECONDS))
+            assertEquals(1, computations.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun computationIsNotRetained() {
+        assertEquals(1, singleFlight.execute("key", Supplier { 1 }))
+        assertEquals(2, singleFlight.execute("key", Supplier { 2 }))
+    }
+
+    @Test
+    fun failuresArePropagatedToAllCallers() {
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val started = CountDownLatch(1)
+            val release = CountDownLatch(1)
+
+            val leader: Future<Any> = executor.submit<Any> {
+                singleFlight.execute("key", Supplier<Any> {
+                    started.countDown()
+                    release.await()
+                    throw IllegalStateException("failed")
+                })
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS))
+            val follower = executor.submit<Any> { singleFlight.execute("key", Supplier { Any() }) }
+            awaitFollowers(1)
+            release.countDown()
+
+            for (future in listOf(leader, follower)) {
+                val e = assertFailsWith<ExecutionException> { future.get(10, TimeUnit.SECONDS) }
+                assertTrue(e.cause is IllegalStateException)
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    /**
+     * Waits until given amount of threads are waiting for a computation in flight.
+     */
+    private fun awaitFollowers(count: Int) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+        while (Thread.getAllStackTraces().values.count { trace -> trace.any { it.className == SingleFlight::class.java.name && it.methodName == "await" } } < count) {
+            assertTrue(System.nanoTime() < deadline, "followers did not start waiting")
+            Thread.sleep(1)
+        }
+    }
+}
@@ -85,4 +85,11 @@ class StringUtilsTest {
     fun `truncate - suffix longer than truncation length`() {
         assertEquals("..", truncate("foobar", 2))
     }
+
+    @Test
+    fun stripTrailingSemicolons() {
+        assertEquals("select 1", stripTrailingSemicolons("select 1"))
+        assertEquals("select 1", stripTrailingSemicolons("select 1; \n"))
+        assertEquals("select ';'", stripTrailingSemicolons("select ';';;"))
+    }
 }
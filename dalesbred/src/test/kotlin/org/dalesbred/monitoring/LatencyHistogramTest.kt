@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class LatencyHistogramTest {
+
+    @Test
+    fun bucketsAreContiguous() {
+        var previousIndex = 0
+        for (micros in 0L..100_000L) {
+            val index = LatencyHistogram.bucketIndex(micros)
+            assertTrue(index == previousIndex || index == previousIndex + 1, "micros $micros")
+            assertTrue(micros <= LatencyHistogram.bucketUpperBound(index), "micros $micros")
+            previousIndex = index
+        }
+    }
+
+    @Test
+    fun relativeErrorIsBounded() {
+        for (micros in listOf(5L, 17L, 1_000L, 123_456L, 9_876_543_210L)) {
+            val upper = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(micros))
+            assertTrue(upper <= micros * 1.25 + 1, "micros $micros, upper $upper")
+        }
+    }
+
+    @Test
+    fun hugeValuesAreRecordedInLastBucket() {
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE))
+    }
+
+    @Test
+    fun recordedValuesAreCounted() {
+        val histogram = LatencyHistogram()
+        histogram.record(1_000)
+        histogram.record(2_000)
+        histogram.record(2_000)
+
+        val counts = histogram.snapshot()
+        assertEquals(3, counts.sum())
+        assertEquals(2, counts[LatencyHistogram.bucketIndex(2)])
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring
+
+import org.dalesbred.DatabaseException
+import org.dalesbred.TestDatabaseProvider
+import org.dalesbred.testutils.withSuppressedLogging
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class QueryStatisticsTest {
+
+    private val db = TestDatabaseProvider.createInMemoryHSQLDatabase()
+
+    @Test
+    fun statisticsAreCollectedPerNormalizedSql() {
+        db.isStatisticsEnabled = true
+
+        db.findAll(Int::class.java, "select * from (values (1), (2)) t")
+        db.findAll(Int::class.java, "select *\n  from (values (1), (2)) t")
+        db.findUniqueInt("values (1)")
+
+        val statistics = db.statistics.getStatement("select * from (values (1), (2)) t").get()
+        assertEquals(2, statistics.calls)
+        assertEquals(4, statistics.returnedRows)
+        assertTrue(statistics.maxTime <= statistics.totalTime)
+        assertTrue(statistics.getPercentile(50.0) <= statistics.maxTime)
+        assertEquals(2, db.statistics.statementCount)
+        assertEquals(3, db.statistics.totalCalls)
+    }
+
+    @Test
+    fun errorsAreCounted() {
+        db.isStatisticsEnabled = true
+
+        withSuppressedLogging {
+            assertFailsWith<DatabaseException> {
+                db.findUniqueInt("select * from nonexistent_table")
+            }
+        }
+
+        assertEquals(1, db.statistics.totalErrors)
+    }
+
+    @Test
+    fun statisticsAreNotCollectedWhenDisabled() {
+        assertFalse(db.isStatisticsEnabled)
+
+        db.findUniqueInt("values (1)")
+
+        assertEquals(0, db.statistics.statementCount)
+    }
+
+    @Test
+    fun amountOfStatementsIsBounded() {
+        val statistics = QueryStatistics(2)
+        db.addQueryListener(statistics)
+
+        db.findUniqueInt("values (1)")
+        db.findUniqueInt("values (2)")
+        db.findUniqueInt("values (3)")
+        db.findUniqueInt("values (4)")
+
+        assertEquals(3, statistics.statementCount)
+        assertEquals(2, statistics.getStatement(QueryStatistics.OTHER_STATEMENTS).get().calls)
+    }
+
+    @Test
+    fun normalizeCollapsesWhitespace() {
+        assertEquals("select x from y where z = ?", QueryStatistics.normalize("  select x\n\tfrom   y\r\n where z = ?  "))
+    }
+
+    @Test
+    fun percentilesOfEmptyStatisticsAreZero() {
+        val statistics = StatementStatistics("sql", 0, 0, 0, 0, 0, 0, 0, LongArray(LatencyHistogram.BUCKET_COUNT))
+
+        assertEquals(Duration.ZERO, statistics.getPercentile(99.0))
+        assertEquals(Duration.ZERO, statistics.meanTime)
+    }
+
+    @Test
+    fun statisticsCanBeRegisteredAsMBean() {
+        val statistics = QueryStatistics()
+        val name = statistics.registerMBean("org.dalesbred:type=QueryStatistics,name=test")
+        try {
+            val server = ManagementFactory.getPlatformMBeanServer()
+            assertEquals(0, server.getAttribute(name, "StatementCount"))
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name)
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.monitoring
+
+import org.dalesbred.Database
+import org.dalesbred.DatabaseException
+import org.dalesbred.TestDatabaseProvider
+import org.dalesbred.connection.ConnectionProvider
+import org.dalesbred.dialect.HsqldbDialect
+import org.dalesbred.testutils.withSuppressedLogging
+import org.dalesbred.transaction.DefaultTransactionManager
+import org.dalesbred.transaction.Propagation
+import org.junit.Test
+import java.sql.Connection
+import java.sql.SQLException
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class TransactionListenerTest {
+
+    private val transactionManager = DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider())
+
+    private val db = Database(transactionManager, HsqldbDialect())
+
+    private val begun = mutableListOf<TransactionExecution>()
+
+    private val completed = mutableListOf<TransactionExecution>()
+
+    private val recordingListener = object : TransactionListener {
+        override fun afterBegin(execution: TransactionExecution) {
+            begun += execution
+        }
+
+        override fun afterCompletion(execution: TransactionExecution) {
+            completed += execution
+        }
+    }
+
+    init {
+        transactionManager.addTransactionListener(recordingListener)
+    }
+
+    @Test
+    fun listenersAreNotNotifiedIfConnectionCanNotBeOpened() {
+        val failingManager = DefaultTransactionManager(object : ConnectionProvider {
+            override fun getConnection(): Connection = throw SQLException("no connection")
+            override fun releaseConnection(connection: Connection) {}
+        })
+        failingManager.addTransactionListener(recordingListener)
+        val failingDb = Database(failingManager, HsqldbDialect())
+
+        withSuppressedLogging {
+            assertFailsWith<DatabaseException> { failingDb.withTransaction { _ -> 1 } }
+        }
+
+        assertEquals(0, begun.size)
+        assertEquals(0, completed.size)
+    }
+
+    @Test
+    fun committedTransactionIsTimed() {
+        db.withTransaction { _ ->
+            assertEquals(1, begun.size)
+            assertTrue(begun[0].holdNanos >= 0)
+            db.findUniqueInt("values (1)")
+        }
+
+        val execution = completed.single()
+        assertSame(begun.single(), execution)
+        assertSame(Thread.currentThread(), execution.thread)
+        assertTrue(execution.isCommitted)
+        assertFalse(execution.isRolledBack)
+        assertTrue(execution.acquireNanos > 0)
+        assertTrue(execution.callbackNanos > 0)
+        assertTrue(execution.completionNanos > 0)
+        assertTrue(execution.holdNanos >= execution.callbackNanos + execution.completionNanos)
+    }
+
+    @Test
+    fun rollbacksAndSavepointsAreCounted() {
+        withSuppressedLogging {
+            assertFailsWith<IllegalStateException> {
+                db.withTransaction { _ ->
+                    db.withTransaction(Propagation.NESTED) { _ -> }
+                    assertFailsWith<IllegalStateException> {
+                        db.withTransaction<Unit>(Propagation.NESTED) { _ -> throw IllegalStateException() }
+                    }
+                    throw IllegalStateException()
+                }
+            }
+        }
+
+        val execution = completed.single()
+        assertFalse(execution.isCommitted)
+        assertTrue(execution.isRolledBack)
+        assertEquals(2, execution.savepointCount)
+        assertEquals(1, execution.rolledBackSavepointCount)
+    }
+
+    @Test
+    fun joinedTransactionsAreNotReportedSeparately() {
+        db.withTransaction { _ ->
+            db.withTransaction { _ -> }
+        }
+
+        assertEquals(1, begun.size)
+        assertEquals(1, completed.size)
+    }
+}
@@ -22,6 +22,9 @@
 
 package org.dalesbred.query
 
+import org.dalesbred.datatype.SqlArray
+import org.dalesbred.dialect.DefaultDialect
+import org.dalesbred.dialect.PostgreSQLDialect
 import org.dalesbred.query.SqlQuery.query
 import org.junit.Test
 import kotlin.test.assertEquals
@@ -83,6 +86,39 @@ class QueryBuilderTest {
         assertEquals(query("select * from document where id in (?,?,?)", 1, 2, 3), query)
     }
 
+    @Test
+    fun bucketedPlaceholdersArePaddedWithLastValue() {
+        val query = QueryBuilder("select * from document where id in (").appendBucketedPlaceholders(listOf(1, 2, 3)).append(")").build()
+
+        assertEquals(query("select * from document where id in (?,?,?,?)", 1, 2, 3, 3), query)
+    }
+
+    @Test
+    fun bucketedPlaceholdersArePaddedAtMostToMaxSize() {
+        val query = QueryBuilder("select * from document where id in (").appendBucketedPlaceholders(listOf(1, 2, 3, 4, 5), 6).append(")").build()
+
+        assertEquals(query("select * from document where id in (?,?,?,?,?,?)", 1, 2, 3, 4, 5, 5), query)
+    }
+
+    @Test
+    fun bucketSizes() {
+        assertEquals(1, QueryBuilder.placeholderBucket(1))
+        assertEquals(2, QueryBuilder.placeholderBucket(2))
+        assertEquals(4, QueryBuilder.placeholderBucket(3))
+        assertEquals(8, QueryBuilder.placeholderBucket(5))
+        assertEquals(1024, QueryBuilder.placeholderBucket(1000))
+        assertEquals(1024, QueryBuilder.placeholderBucket(1024))
+        assertEquals(2048, QueryBuilder.placeholderBucket(1025))
+        assertEquals(3072, QueryBuilder.placeholderBucket(2049))
+    }
+
+    @Test
+    fun bucketedPlaceholdersRequireValues() {
+        assertFailsWith<IllegalArgumentException> {
+            QueryBuilder("select * from document where id in (").appendBucketedPlaceholders(emptyList<Int>())
+        }
+    }
+
     @Test
     fun zeroPlaceholders() {
         assertFailsWith<IllegalArgumentException> {
@@ -118,4 +154,27 @@ class QueryBuilderTest {
 
         assertEquals(query("select * from (select * from foo where bar = ? and baz = ?) where row < ?", 42, "foobar", 10), qb.build())
     }
+
+    @Test
+    fun inPredicateWithArraySupport() {
+        val array = SqlArray.ints(1, 2, 3)
+        val query = QueryBuilder("select * from document where id ").appendIn(PostgreSQLDialect(), array).build()
+
+        assertEquals("select * from document where id = ANY(?)", query.sql)
+        assertEquals(listOf(array), query.arguments)
+    }
+
+    @Test
+    fun inPredicateWithoutArraySupport() {
+        val query = QueryBuilder("select * from document where id ").appendIn(DefaultDialect(), SqlArray.ints(1, 2, 3)).build()
+
+        assertEquals(query("select * from document where id IN (?,?,?)", 1, 2, 3), query)
+    }
+
+    @Test
+    fun inPredicateRequiresValues() {
+        assertFailsWith<IllegalArgumentException> {
+            QueryBuilder("select * from document where id ").appendIn(PostgreSQLDialect(), SqlArray.ints())
+        }
+    }
 }
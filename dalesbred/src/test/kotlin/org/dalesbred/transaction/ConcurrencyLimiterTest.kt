@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction
+
+import org.dalesbred.Database
+import org.dalesbred.TestDatabaseProvider
+import org.dalesbred.dialect.HsqldbDialect
+import org.junit.Test
+import java.time.Duration
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    fun transactionsAreRejectedWhenQueueIsFull() {
+        val limiter = ConcurrencyLimiter.builder().maxConcurrency(1).maxQueueSize(0).build()
+
+        limiter.acquire(TransactionPriority.INTERACTIVE, null)
+        assertFailsWith<ConcurrencyLimitExceededException> { limiter.acquire(TransactionPriority.INTERACTIVE, null) }
+        limiter.release()
+
+        assertEquals(1, limiter.acquiredCount)
+        assertEquals(1, limiter.rejectedCount)
+        assertEquals(0, limiter.activeCount)
+    }
+
+    @Test
+    fun waitingTimesOut() {
+        val limiter = ConcurrencyLimiter.builder().maxConcurrency(1).maxWait(Duration.ofSeconds(10)).build()
+
+        limiter.acquire(TransactionPriority.INTERACTIVE, null)
+        assertFailsWith<ConcurrencyLimitExceededException> { limiter.acquire(TransactionPriority.INTERACTIVE, Duration.ofMillis(10)) }
+
+        assertEquals(0, limiter.queueDepth)
+        assertEquals(1, limiter.rejectedCount)
+    }
+
+    @Test
+    fun interactiveTransactionsAreAdmittedBeforeBatchTransactions() {
+        val limiter = ConcurrencyLimiter.builder().maxConcurrency(1).build()
+        val admitted = Collections.synchronizedList(mutableListOf<TransactionPriority>())
+
+        limiter.acquire(TransactionPriority.INTERACTIVE, null)
+
+        val threads = listOf(TransactionPriority.BATCH, TransactionPriority.BATCH, TransactionPriority.INTERACTIVE).mapIndexed { i, priority ->
+            val t = thread {
+                limiter.acquire(priority, null)
+                admitted += priority
+                limiter.release()
+            }
+            awaitQueueDepth(limiter, i + 1)
+            t
+        }
+
+        limiter.release()
+        for (t in threads)
+            t.join(TimeUnit.SECONDS.toMillis(10))
+
+        assertEquals(listOf(TransactionPriority.INTERACTIVE, TransactionPriority.BATCH, TransactionPriority.BATCH), admitted)
+        assertEquals(0, limiter.activeCount)
+        assertEquals(4, limiter.acquiredCount)
+        assertTrue(limiter.maxWaitTime > Duration.ZERO)
+    }
+
+    @Test
+    fun transactionManagerHoldsPermitDuringTransaction() {
+        val limiter = ConcurrencyLimiter.builder().maxConcurrency(2).build()
+        val transactionManager = DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider())
+        transactionManager.concurrencyLimiter = limiter
+        val db = Database(transactionManager, HsqldbDialect())
+
+        db.withTransaction { _ ->
+            assertEquals(1, limiter.activeCount)
+            db.withTransaction(Propagation.NESTED) { _ -> assertEquals(1, limiter.activeCount) }
+        }
+
+        assertEquals(0, limiter.activeCount)
+        assertEquals(1, limiter.acquiredCount)
+    }
+
+    @Test
+    fun newTransactionsWithinTransactionUseTheSamePermit() {
+        val limiter = ConcurrencyLimiter.builder().maxConcurrency(1).maxWait(Duration.ofMillis(100)).build()
+        val transactionManager = DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider())
+        transactionManager.concurrencyLimiter = limiter
+        val db = Database(transactionManager, HsqldbDialect())
+
+        db.withTransaction { _ ->
+            db.withTransaction(Propagation.REQUIRES_NEW) { _ ->
+                db.withTransaction(Propagation.REQUIRES_NEW) { _ -> assertEquals(1, limiter.activeCount) }
+            }
+        }
+
+        assertEquals(0, limiter.activeCount)
+        assertEquals(1, limiter.acquiredCount)
+        assertEquals(0, limiter.rejectedCount)
+    }
+
+    @Test
+    fun invalidSettingsAreRejected() {
+        assertFailsWith<IllegalArgumentException> { ConcurrencyLimiter.builder().maxConcurrency(0) }
+        assertFailsWith<IllegalArgumentException> { ConcurrencyLimiter.builder().maxQueueSize(-1) }
+        assertFailsWith<IllegalArgumentException> { ConcurrencyLimiter.builder().maxWait(Duration.ofSeconds(-1)) }
+    }
+
+    private fun awaitQueueDepth(limiter: ConcurrencyLimiter, depth: Int) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+        while (limiter.queueDepth < depth) {
+            assertTrue(System.nanoTime() < deadline, "queue did not reach depth $depth")
+            Thread.sleep(1)
+        }
+    }
+}
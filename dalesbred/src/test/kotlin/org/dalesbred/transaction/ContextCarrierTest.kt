@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction
+
+import org.dalesbred.Database
+import org.dalesbred.TestDatabaseProvider
+import org.dalesbred.dialect.HsqldbDialect
+import org.junit.Assume.assumeNoException
+import org.junit.Test
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class ContextCarrierTest {
+
+    @Test
+    fun threadLocalCarrierRestoresPreviousValue() {
+        val carrier = ContextCarrier.threadLocal<String>()
+
+        carrier.callWith("outer", Supplier {
+            assertEquals("inner", carrier.callWith("inner", Supplier { carrier.get() }))
+            assertEquals("outer", carrier.get())
+        })
+        assertNull(carrier.get())
+    }
+
+    @Test
+    fun threadLocalCarrierIsNotVisibleToOtherThreads() {
+        val carrier = ContextCarrier.threadLocal<String>()
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            carrier.callWith("value", Supplier {
+                assertNull(executor.submit<String> { carrier.get() }.get(10, TimeUnit.SECONDS))
+
+                val propagated = carrier.propagate(Supplier { carrier.get() })
+                assertEquals("value", executor.submit<String> { propagated.get() }.get(10, TimeUnit.SECONDS))
+            })
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun explicitCarrierHandsOverContextOnlyWithPropagate() {
+        val carrier = ContextCarrier.explicit<String>()
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            carrier.callWith("value", Supplier {
+                val failure = executor.submit<String> { carrier.get() }
+                assertTrue(assertFailsWith<ExecutionException> { failure.get(10, TimeUnit.SECONDS) }.cause is IllegalStateException)
+
+                val propagated = carrier.propagate(Supplier { carrier.get() })
+                assertEquals("value", executor.submit<String> { propagated.get() }.get(10, TimeUnit.SECONDS))
+                assertEquals("value", carrier.get())
+            })
+            assertNull(executor.submit<String> { carrier.get() }.get(10, TimeUnit.SECONDS))
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun explicitCarrierRejectsConcurrentFlows() {
+        val carrier = ContextCarrier.explicit<String>()
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            carrier.callWith("first", Supplier {
+                val second = executor.submit<String> { carrier.callWith("second", Supplier { carrier.get() }) }
+                assertTrue(assertFailsWith<ExecutionException> { second.get(10, TimeUnit.SECONDS) }.cause is IllegalStateException)
+                assertEquals("first", carrier.get())
+            })
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun scopedCarrierRestoresPreviousValue() {
+        val carrier = try {
+            ContextCarrier.scoped<String>()
+        } catch (e: UnsupportedOperationException) {
+            assumeNoException(e)
+            return
+        }
+
+        carrier.callWith("outer", Supplier {
+            assertEquals("inner", carrier.callWith("inner", Supplier { carrier.get() }))
+            assertEquals("outer", carrier.get())
+        })
+        assertNull(carrier.get())
+    }
+
+    @Test
+    fun transactionIsPropagatedWithExplicitCarrier() {
+        val db = Database(DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider(), ContextCarrier.explicit()), HsqldbDialect())
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            db.withTransaction { _ ->
+                val task = db.propagate(Supplier { db.hasActiveTransaction() && db.findUniqueInt("values (1)") == 1 })
+                assertTrue(executor.submit<Boolean> { task.get() }.get(10, TimeUnit.SECONDS))
+            }
+            assertFalse(db.hasActiveTransaction())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun transactionManagerUsesGivenCarrier() {
+        val carrier = RecordingCarrier()
+        val transactionManager = DefaultTransactionManager(TestDatabaseProvider.createInMemoryHSQLConnectionProvider(), carrier)
+        val db = Database(transactionManager, HsqldbDialect())
+
+        db.withTransaction { _ ->
+            assertTrue(db.hasActiveTransaction())
+            val transaction = carrier.get()
+
+            db.withTransaction(Propagation.REQUIRES_NEW) { _ ->
+                assertTrue(carrier.get() != null)
+                assertTrue(carrier.get() !== transaction)
+            }
+
+            assertSame(transaction, carrier.get())
+        }
+
+        assertFalse(db.hasActiveTransaction())
+        assertNull(carrier.get())
+        assertTrue(carrier.bindings > 0)
+    }
+
+    private class RecordingCarrier : ContextCarrier<CarriedContext> {
+        private val delegate = ContextCarrier.threadLocal<CarriedContext>()
+        var bindings = 0
+
+        override fun get(): CarriedContext? = delegate.get()
+
+        override fun <R> callWith(value: CarriedContext?, action: Supplier<R>): R {
+            bindings++
+            return delegate.callWith(value, action)
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.dalesbred.transaction
+
+import org.junit.Test
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+import java.sql.SQLException
+
+class RetryPolicyTest {
+
+    @Test
+    fun backoffGrowsExponentiallyUpToMaximum() {
+        val policy = RetryPolicy.builder()
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(50))
+                .jitter(false)
+                .build()
+
+        assertEquals(Duration.ofMillis(10), policy.getBackoff(1))
+        assertEquals(Duration.ofMillis(20), policy.getBackoff(2))
+        assertEquals(Duration.ofMillis(40), policy.getBackoff(3))
+        assertEquals(Duration.ofMillis(50), policy.getBackoff(4))
+        assertEquals(Duration.ofMillis(50), policy.getBackoff(100))
+    }
+
+    @Test
+    fun jitterKeepsBackoffWithinBounds() {
+        val policy = RetryPolicy.builder()
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(50))
+                .build()
+
+        repeat(100) {
+            val backoff = policy.getBackoff(2)
+            assertTrue(!backoff.isNegative && backoff <= Duration.ofMillis(20), "unexpected backoff $backoff")
+        }
+    }
+
+    @Test
+    fun serializationFailuresAreRetriedByDefault() {
+        val policy = RetryPolicy.builder().build()
+
+        assertTrue(policy.isRetryable(TransactionSerializationException(SQLException("failure", "40001"))))
+        assertFalse(policy.isRetryable(TransactionRollbackException(SQLException("deadlock", "40P01"))))
+        assertFalse(policy.isRetryable(IllegalStateException()))
+    }
+
+    @Test
+    fun retryableExceptionsCanBeConfigured() {
+        val policy = RetryPolicy.builder().retryOn(TransactionRollbackException::class.java).build()
+
+        assertTrue(policy.isRetryable(TransactionSerializationException(SQLException("failure", "40001"))))
+        assertTrue(policy.isRetryable(TransactionRollbackException(SQLException("deadlock", "40P01"))))
+    }
+
+    @Test
+    fun retriesStopWhenTimeoutWouldExpireDuringBackoff() {
+        val policy = RetryPolicy.builder()
+                .maxAttempts(10)
+                .backoff(Duration.ofSeconds(10), Duration.ofSeconds(10))
+                .jitter(false)
+                .build()
+
+        var attempts = 0
+        val startTime = System.nanoTime()
+        assertFailsWith<TransactionSerializationException> {
+            policy.execute<Unit>(Duration.ofSeconds(1)) { remaining ->
+                attempts++
+                assertTrue(remaining != null && remaining <= Duration.ofSeconds(1))
+                throw TransactionSerializationException(SQLException("failure", "40001"))
+            }
+        }
+
+        assertEquals(1, attempts)
+        assertTrue(Duration.ofNanos(System.nanoTime() - startTime) < Duration.ofSeconds(1))
+        assertEquals(0, policy.statistics.retries)
+        assertEquals(1, policy.statistics.exhaustedTransactions)
+    }
+
+    @Test
+    fun invalidSettings() {
+        assertFailsWith<IllegalArgumentException> { RetryPolicy.builder().maxAttempts(0) }
+        assertFailsWith<IllegalArgumentException> { RetryPolicy.builder().backoff(Duration.ofSeconds(2), Duration.ofSeconds(1)) }
+        assertFailsWith<IllegalArgumentException> { RetryPolicy.builder().build().getBackoff(0) }
+    }
+}
@@ -1,4 +1,5 @@
 rootProject.name = "dalesbred-root"
 include(":dalesbred")
 include(":dalesbred-junit")
+include(":dalesbred-benchmarks")
 include(":website")